@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.vcard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic address books for the benchmarks. The contacts are generated from a fixed seed, so
+ * every run handles the same data.
+ */
+final class AddressBook {
+    enum Alphabet {
+        /** English names, some with characters that vCard 3.0 escapes */
+        ASCII,
+        /** Western European names with accented characters */
+        LATIN1,
+        /** Japanese names with phonetic names, and Chinese and Korean names */
+        CJK
+    }
+
+    static final class Contact {
+        final String displayName;
+        final String phoneticName;
+        final List<String> phoneNumbers = new ArrayList<>();
+
+        Contact(String displayName, String phoneticName) {
+            this.displayName = displayName;
+            this.phoneticName = phoneticName;
+        }
+    }
+
+    private static final long SEED = 42;
+
+    private static final String[] ASCII_GIVEN_NAMES = {"James", "Mary", "Robert", "Patricia",
+            "John", "Jennifer", "Michael", "Linda"};
+    private static final String[] ASCII_FAMILY_NAMES = {"Smith", "Johnson", "Williams",
+            "O'Brien", "Jones; Jr.", "Miller", "Davis, III", "Wilson"};
+    private static final String[] LATIN1_GIVEN_NAMES = {"José", "Zoë", "François", "Søren",
+            "Björn", "Inés", "Håkon", "Renée"};
+    private static final String[] LATIN1_FAMILY_NAMES = {"Müller", "Gonçalves", "Ødegård",
+            "Álvarez", "Núñez", "Lefèvre", "Jørgensen", "Weiß"};
+    private static final String[] CJK_GIVEN_NAMES = {"太郎", "花子", "翔太", "美咲",
+            "伟", "芳", "민준", "서연"};
+    private static final String[] CJK_PHONETIC_GIVEN_NAMES = {"タロウ", "ハナコ", "ショウタ",
+            "ミサキ", null, null, null, null};
+    private static final String[] CJK_FAMILY_NAMES = {"山田", "佐藤", "鈴木", "高橋",
+            "王", "李", "김", "박"};
+    private static final String[] CJK_PHONETIC_FAMILY_NAMES = {"ヤマダ", "サトウ", "スズキ",
+            "タカハシ", null, null, null, null};
+
+    private static final int MAX_PHONES = 4;
+
+    private AddressBook() {
+    }
+
+    static List<Contact> create(Alphabet alphabet, int size) {
+        final Random random = new Random(SEED);
+        final List<Contact> contacts = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            final Contact contact = createContact(alphabet, random);
+            final int phoneCount = 1 + random.nextInt(MAX_PHONES);
+            for (int j = 0; j < phoneCount; j++) {
+                contact.phoneNumbers.add(createPhoneNumber(random));
+            }
+            if (i % 8 == 0) {
+                // The first number again in another format, as left by contact syncs.
+                contact.phoneNumbers.add(contact.phoneNumbers.get(0).replace(' ', '-'));
+            }
+            if (i % 16 == 0) {
+                // Several numbers in one entry, which the encoding splits.
+                contact.phoneNumbers.add(
+                        createPhoneNumber(random) + "\n" + createPhoneNumber(random));
+            }
+            contacts.add(contact);
+        }
+        return contacts;
+    }
+
+    private static Contact createContact(Alphabet alphabet, Random random) {
+        final int given = random.nextInt(8);
+        final int family = random.nextInt(8);
+        switch (alphabet) {
+            case ASCII:
+                return new Contact(
+                        ASCII_GIVEN_NAMES[given] + " " + ASCII_FAMILY_NAMES[family], null);
+            case LATIN1:
+                return new Contact(
+                        LATIN1_GIVEN_NAMES[given] + " " + LATIN1_FAMILY_NAMES[family], null);
+            default:
+                // Japanese given names get Japanese family names with phonetic names.
+                final int index = given / 4 * 4 + family % 4;
+                final String phoneticName = CJK_PHONETIC_GIVEN_NAMES[given] == null ? null
+                        : CJK_PHONETIC_FAMILY_NAMES[index] + " " + CJK_PHONETIC_GIVEN_NAMES[given];
+                return new Contact(CJK_FAMILY_NAMES[index] + CJK_GIVEN_NAMES[given],
+                        phoneticName);
+        }
+    }
+
+    private static String createPhoneNumber(Random random) {
+        final int subscriber = random.nextInt(10000);
+        switch (random.nextInt(5)) {
+            case 0:
+                return String.format("(415) 555-%04d", subscriber);
+            case 1:
+                return String.format("+1 415 555 %04d", subscriber);
+            case 2:
+                return String.format("415.555.%04d", subscriber);
+            case 3:
+                return String.format("+81 90 1234 %04d", subscriber);
+            default:
+                return String.format("555%04d,%d", subscriber, random.nextInt(1000));
+        }
+    }
+}
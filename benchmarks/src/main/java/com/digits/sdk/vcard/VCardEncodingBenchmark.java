@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.vcard;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the Android-free steps of the vCard encoding over synthetic address books: escaping
+ * values, encoding them as UTF-8, and splitting, normalizing and deduplicating phone numbers.
+ * Every invocation handles the whole address book and counts as one operation per contact, so
+ * the reported throughput is contacts per second and gc.alloc.rate.norm of the gc profiler is
+ * bytes allocated per contact.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class VCardEncodingBenchmark {
+    static final int CONTACTS = 1000;
+
+    @Param
+    public AddressBook.Alphabet alphabet;
+
+    private List<AddressBook.Contact> contacts;
+    private final VCardValueScanner v21Scanner = new VCardValueScanner(false, false);
+    private final VCardValueScanner v30Scanner = new VCardValueScanner(true, false);
+    private final StringBuilder builder = new StringBuilder();
+    private final PhoneNumberSet phoneNumbers = new PhoneNumberSet();
+    private byte[] utf8Buffer = new byte[0];
+
+    @Setup
+    public void setUp() {
+        contacts = AddressBook.create(alphabet, CONTACTS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONTACTS)
+    public void escapeValuesV21(Blackhole blackhole) {
+        escapeValues(v21Scanner, blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONTACTS)
+    public void escapeValuesV30(Blackhole blackhole) {
+        escapeValues(v30Scanner, blackhole);
+    }
+
+    private void escapeValues(VCardValueScanner scanner, Blackhole blackhole) {
+        for (int i = 0; i < CONTACTS; i++) {
+            final AddressBook.Contact contact = contacts.get(i);
+            builder.setLength(0);
+            blackhole.consume(scanner.escape(contact.displayName, builder));
+            blackhole.consume(scanner.escape(contact.phoneticName, builder));
+        }
+    }
+
+    /**
+     * Encodes the names and phone numbers of every contact into a reused buffer, like the
+     * contacts upload does with the vCard of each contact.
+     */
+    @Benchmark
+    @OperationsPerInvocation(CONTACTS)
+    public void encodeUtf8(Blackhole blackhole) {
+        for (int i = 0; i < CONTACTS; i++) {
+            final AddressBook.Contact contact = contacts.get(i);
+            builder.setLength(0);
+            builder.append(contact.displayName);
+            if (contact.phoneticName != null) {
+                builder.append(contact.phoneticName);
+            }
+            for (String number : contact.phoneNumbers) {
+                builder.append(number);
+            }
+            final int length = VCardEncodingUtils.getUtf8Length(builder);
+            if (utf8Buffer.length < length) {
+                utf8Buffer = new byte[length];
+            }
+            blackhole.consume(VCardEncodingUtils.encodeUtf8(builder, utf8Buffer, 0));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONTACTS)
+    public void normalizePhoneNumbers(Blackhole blackhole) {
+        for (int i = 0; i < CONTACTS; i++) {
+            for (String entry : contacts.get(i).phoneNumbers) {
+                for (String number : VCardEncodingUtils.splitPhoneNumbers(entry)) {
+                    blackhole.consume(VCardEncodingUtils.normalizePhoneNumber(number));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONTACTS)
+    public void deduplicatePhoneNumbers(Blackhole blackhole) {
+        for (int i = 0; i < CONTACTS; i++) {
+            phoneNumbers.clear();
+            for (String entry : contacts.get(i).phoneNumbers) {
+                for (String number : VCardEncodingUtils.splitPhoneNumbers(entry)) {
+                    blackhole.consume(phoneNumbers.addNormalized(number));
+                }
+            }
+        }
+    }
+}
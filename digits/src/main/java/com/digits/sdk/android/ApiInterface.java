@@ -24,8 +24,10 @@ import retrofit.http.Body;
 import retrofit.http.Field;
 import retrofit.http.FormUrlEncoded;
 import retrofit.http.GET;
+import retrofit.http.Header;
 import retrofit.http.POST;
 import retrofit.http.Query;
+import retrofit.http.Streaming;
 
 public interface ApiInterface {
         @FormUrlEncoded
@@ -75,11 +77,28 @@ public interface ApiInterface {
         @POST("/1.1/contacts/upload.json")
         UploadResponse upload(@Body Vcards vcards);
 
+        @POST("/1.1/contacts/upload.json")
+        UploadResponse upload(@Header("Content-Encoding") String contentEncoding,
+                              @Body VcardsBody vcards);
+
+        @POST("/1.1/contacts/upload_compact.json")
+        UploadResponse uploadCompact(@Header("Content-Encoding") String contentEncoding,
+                                     @Body CompactContactsBody contacts);
+
         @POST("/1.1/contacts/destroy/all.json")
         void deleteAll(@Body String body, Callback<Response> cb);
 
         @GET("/1.1/contacts/users_and_uploaded_by.json")
         void usersAndUploadedBy(@Query("cursor") String cursor,
                                 @Query("count") Integer count, Callback<Contacts> cb);
+
+        @GET("/1.1/contacts/users_and_uploaded_by.json")
+        Contacts usersAndUploadedBy(@Query("cursor") String cursor,
+                                    @Query("count") Integer count);
+
+        @Streaming
+        @GET("/1.1/contacts/users_and_uploaded_by.json")
+        Response streamUsersAndUploadedBy(@Query("cursor") String cursor,
+                                          @Query("count") Integer count);
     }
 
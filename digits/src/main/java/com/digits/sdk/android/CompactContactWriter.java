@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.digits.sdk.android;
+
+import android.provider.ContactsContract.CommonDataKinds.Phone;
+import android.text.TextUtils;
+
+import com.digits.sdk.vcard.ContactDataRow;
+import com.digits.sdk.vcard.PhoneNumberSet;
+import com.digits.sdk.vcard.VCardEncodingUtils;
+import com.digits.sdk.vcard.VCardUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encodes contacts in the compact upload format, a binary alternative to vCard text that is
+ * smaller and cheaper to produce and to parse. A record holds the name of a contact and its
+ * typed phone numbers:
+ * <pre>
+ * record = version:u8 displayName givenName familyName phoneCount:varint phone*
+ * phone  = flags:u8 [type:varint] [label] number
+ * string = byteLength:varint utf8
+ * </pre>
+ * Varints are unsigned LEB128. A missing name is written as an empty string. The phone flags
+ * tell which of the optional fields follow, see {@link #FLAG_HAS_TYPE} and
+ * {@link #FLAG_HAS_LABEL}.
+ * <p>
+ * Like {@link com.digits.sdk.vcard.VCardBuilder}, a writer reuses its buffer from one contact
+ * to the next and is not thread safe.
+ */
+class CompactContactWriter {
+    /** Written first in every record. Incremented whenever the record layout changes. */
+    static final int VERSION = 1;
+    /** The phone has a {@link Phone#TYPE}. */
+    static final int FLAG_HAS_TYPE = 1;
+    /** The phone has a {@link Phone#LABEL}, only written for {@link Phone#TYPE_CUSTOM}. */
+    static final int FLAG_HAS_LABEL = 2;
+    static final int FLAG_PRIMARY = 4;
+
+    private static final int INITIAL_CAPACITY = 256;
+    // Bytes written for a varint in the worst case
+    private static final int MAX_VARINT_BYTES = 5;
+
+    private final boolean normalizesPhoneNumbers;
+    private final List<ContactDataRow> phoneRows = new ArrayList<>();
+    private final List<String> phoneNumbers = new ArrayList<>();
+    private final PhoneNumberSet phoneSet = new PhoneNumberSet();
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * @param normalizesPhoneNumbers whether phone numbers are written in the canonical form of
+     *                               {@link VCardEncodingUtils#normalizePhoneNumber(String)}
+     */
+    CompactContactWriter(boolean normalizesPhoneNumbers) {
+        this.normalizesPhoneNumbers = normalizesPhoneNumbers;
+    }
+
+    /**
+     * Replaces the current record with the record of the given rows of a contact. The name
+     * is taken from the same row as in its vCard. Like in the vCard, an entry holding several
+     * numbers on separate lines is split into one phone per line and duplicate phone numbers
+     * are skipped. When phone numbers are normalized, numbers without digits are skipped too.
+     */
+    CompactContactWriter write(List<ContactDataRow> names, List<ContactDataRow> phones) {
+        size = 0;
+        writeByte(VERSION);
+
+        final ContactDataRow name = VCardUtils.getPrimaryNameRow(names);
+        if (name != null) {
+            writeString(name.displayName);
+            writeString(name.givenName);
+            writeString(name.familyName);
+        } else {
+            writeString(null);
+            writeString(null);
+            writeString(null);
+        }
+
+        collectPhones(phones);
+        writeVarint(phoneRows.size());
+        for (int i = 0; i < phoneRows.size(); i++) {
+            final ContactDataRow row = phoneRows.get(i);
+            final boolean hasLabel = row.hasPhoneType && row.phoneType == Phone.TYPE_CUSTOM
+                    && !TextUtils.isEmpty(row.phoneLabel);
+            int flags = 0;
+            if (row.hasPhoneType) {
+                flags |= FLAG_HAS_TYPE;
+            }
+            if (hasLabel) {
+                flags |= FLAG_HAS_LABEL;
+            }
+            if (row.isPrimary) {
+                flags |= FLAG_PRIMARY;
+            }
+            writeByte(flags);
+            if (row.hasPhoneType) {
+                writeVarint(row.phoneType);
+            }
+            if (hasLabel) {
+                writeString(row.phoneLabel);
+            }
+            writeString(phoneNumbers.get(i));
+        }
+        phoneRows.clear();
+        phoneNumbers.clear();
+        phoneSet.clear();
+        return this;
+    }
+
+    /**
+     * @return a copy of the current record
+     */
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    private void collectPhones(List<ContactDataRow> phones) {
+        for (ContactDataRow row : phones) {
+            String number = row.phoneNumber;
+            if (number == null) {
+                continue;
+            }
+            number = number.trim();
+            if (number.indexOf('\n') < 0) {
+                collectPhone(row, number);
+                continue;
+            }
+            final List<String> numbers = VCardEncodingUtils.splitPhoneNumbers(number);
+            for (int i = 0; i < numbers.size(); i++) {
+                collectPhone(row, numbers.get(i).trim());
+            }
+        }
+    }
+
+    private void collectPhone(ContactDataRow row, String number) {
+        if (normalizesPhoneNumbers) {
+            if (!phoneSet.addNormalized(number)) {
+                return;
+            }
+            number = VCardEncodingUtils.normalizePhoneNumber(number);
+        } else if (!phoneSet.add(number)) {
+            return;
+        }
+        if (number.isEmpty()) {
+            return;
+        }
+        phoneRows.add(row);
+        phoneNumbers.add(number);
+    }
+
+    private void writeString(String value) {
+        if (value == null) {
+            writeVarint(0);
+            return;
+        }
+        final int length = VCardEncodingUtils.getUtf8Length(value);
+        writeVarint(length);
+        ensureCapacity(length);
+        size = VCardEncodingUtils.encodeUtf8(value, buffer, size);
+    }
+
+    private void writeVarint(int value) {
+        ensureCapacity(MAX_VARINT_BYTES);
+        while ((value & ~0x7f) != 0) {
+            buffer[size++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte) value;
+    }
+
+    private void writeByte(int value) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) value;
+    }
+
+    private void ensureCapacity(int length) {
+        if (size + length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + length));
+        }
+    }
+}
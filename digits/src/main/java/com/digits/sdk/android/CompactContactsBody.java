@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.digits.sdk.android;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+/**
+ * Upload request body of contacts encoded by {@link CompactContactWriter}. The body is the
+ * number of contacts followed by each record prefixed with its length, both as varints:
+ * <pre>
+ * body = count:varint (byteLength:varint record)*
+ * </pre>
+ * Errors in the response refer to the contacts by their position in the body, as for
+ * {@link VcardsBody}.
+ */
+class CompactContactsBody extends ContactsUploadBody {
+    static final String MIME_TYPE = "application/octet-stream";
+
+    CompactContactsBody(byte[] bytes, String contentEncoding) {
+        super(bytes, contentEncoding);
+    }
+
+    static CompactContactsBody create(List<EncodedContact> contacts,
+                                      ContactsUploadConfig config) {
+        final byte[] data = toBytes(contacts);
+        final byte[] compressed = compress(data, config);
+        return compressed != null
+                ? new CompactContactsBody(compressed, GZIP) : new CompactContactsBody(data, null);
+    }
+
+    static byte[] toBytes(List<EncodedContact> contacts) {
+        int capacity = 5;
+        for (EncodedContact contact : contacts) {
+            capacity += contact.data.length + 2;
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(capacity);
+        writeVarint(out, contacts.size());
+        for (EncodedContact contact : contacts) {
+            writeVarint(out, contact.data.length);
+            out.write(contact.data, 0, contact.data.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    @Override
+    UploadResponse upload(ApiInterface service) {
+        return service.uploadCompact(contentEncoding, this);
+    }
+
+    @Override
+    public String mimeType() {
+        return MIME_TYPE;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.digits.sdk.android;
+
+import com.digits.sdk.vcard.ContactDataRow;
+import com.digits.sdk.vcard.VCardBuilder;
+import com.digits.sdk.vcard.VCardConfig;
+
+import java.util.List;
+
+/**
+ * Encodes the rows of one contact at a time in the upload format, as a vCard or as a
+ * {@link CompactContactWriter compact record}. The encoding buffers are reused from one
+ * contact to the next, so an encoder must not be shared between threads.
+ */
+class ContactEncoder {
+    // Only one of them is used, depending on the upload format.
+    private final VCardBuilder builder;
+    private final CompactContactWriter compactWriter;
+
+    /**
+     * @param normalizesPhoneNumbers whether phone numbers are encoded in their canonical form,
+     *                               see {@link VCardConfig#FLAG_NORMALIZE_PHONE_NUMBERS}
+     * @param usesCompactFormat whether contacts are encoded by {@link CompactContactWriter}
+     *                          instead of as vCards
+     */
+    ContactEncoder(boolean normalizesPhoneNumbers, boolean usesCompactFormat) {
+        if (usesCompactFormat) {
+            builder = null;
+            compactWriter = new CompactContactWriter(normalizesPhoneNumbers);
+        } else {
+            final int vcardType = normalizesPhoneNumbers
+                    ? VCardConfig.VCARD_TYPE_V30_GENERIC
+                    | VCardConfig.FLAG_NORMALIZE_PHONE_NUMBERS
+                    : VCardConfig.VCARD_TYPE_V30_GENERIC;
+            builder = new VCardBuilder(vcardType, VCardConfig.DEFAULT_EXPORT_CHARSET);
+            compactWriter = null;
+        }
+    }
+
+    EncodedContact encode(String lookupKey, List<ContactDataRow> names,
+                          List<ContactDataRow> phones) {
+        if (compactWriter != null) {
+            final byte[] record = compactWriter.write(names, phones).toByteArray();
+            return new EncodedContact(lookupKey, record,
+                    ContactsFingerprintIndex.fingerprint(record));
+        }
+
+        builder.clear();
+        builder.appendNameRows(names)
+                .appendPhoneRows(phones, null);
+        return new EncodedContact(lookupKey, builder.toUtf8Bytes(),
+                ContactsFingerprintIndex.fingerprint(builder.getVCard()));
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.android;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Page of matched Digits users that only keeps the ids of the users. The {@link DigitsUser}
+ * objects and id strings are created when they are asked for, so a page of thousands of
+ * matches takes one long per match.
+ */
+public class ContactMatches {
+    private final long[] ids;
+    private final String nextCursor;
+
+    ContactMatches(long[] ids, String nextCursor) {
+        this.ids = ids;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * @return number of matched users.
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * @return id of the matched user at the given index.
+     */
+    public long getId(int index) {
+        return ids[index];
+    }
+
+    /**
+     * @return string representation of the id of the matched user at the given index.
+     */
+    public String getIdStr(int index) {
+        return Long.toString(ids[index]);
+    }
+
+    /**
+     * @return copy of the ids of the matched users.
+     */
+    public long[] getIds() {
+        return ids.clone();
+    }
+
+    /**
+     * @return reference to the next set of results, or null if there are no more matches.
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * @return unmodifiable list of the matched users, which creates each {@link DigitsUser}
+     * when it is read.
+     */
+    public List<DigitsUser> getUsers() {
+        return new UserList();
+    }
+
+    private class UserList extends AbstractList<DigitsUser> implements RandomAccess {
+        @Override
+        public DigitsUser get(int index) {
+            return new DigitsUser(getId(index), getIdStr(index));
+        }
+
+        @Override
+        public int size() {
+            return ids.length;
+        }
+    }
+}
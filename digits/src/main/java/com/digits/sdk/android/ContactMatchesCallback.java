@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.android;
+
+import com.twitter.sdk.android.core.TwitterException;
+
+import java.util.List;
+
+/**
+ * Receives all matched contacts of {@link ContactsClient#lookupAllContactMatches}, one page
+ * at a time. Callbacks are executed on the application's main (UI) thread, or on the executor
+ * passed to {@link ContactsClient#lookupAllContactMatches(int, java.util.concurrent.Executor,
+ * ContactMatchesCallback)}. They are executed one at a time, and none is executed after the
+ * lookup was canceled.
+ */
+public abstract class ContactMatchesCallback {
+
+    /**
+     * Called with each page of matched users, in order.
+     *
+     * @param users matched users of the page
+     */
+    public abstract void onMatches(List<DigitsUser> users);
+
+    /**
+     * Called after the last page was handed out.
+     */
+    public abstract void onComplete();
+
+    /**
+     * Called when a page could not be fetched. No more pages are handed out.
+     *
+     * @param exception the exception.
+     */
+    public abstract void onFailure(TwitterException exception);
+}
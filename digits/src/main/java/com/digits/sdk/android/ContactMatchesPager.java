@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.android;
+
+import android.text.TextUtils;
+
+import com.twitter.sdk.android.core.TwitterApiException;
+import com.twitter.sdk.android.core.TwitterException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import retrofit.RetrofitError;
+
+/**
+ * Hands out all pages of matched contacts, following the next cursor of each page. While a
+ * page is handed out, up to prefetchPages following pages are already fetched, so the
+ * requests are not held up by the callbacks on the UI thread.
+ * <p>
+ * The callback is run for one page at a time and in the order of the pages, also when the
+ * callback executor runs its tasks concurrently: a delivery is only handed to the executor
+ * once the previous one has returned.
+ */
+public class ContactMatchesPager {
+    static final int PAGE_SIZE = 100;
+
+    private final ApiInterface service;
+    private final int prefetchPages;
+    private final Executor executor;
+    private final Executor callbackExecutor;
+    private final ContactMatchesCallback callback;
+    private final DigitsEventCollector digitsEventCollector;
+    // Deliveries waiting for the one on callbackExecutor to return
+    private final Queue<Runnable> deliveries = new ArrayDeque<>();
+    private final Runnable deliveryRunner = new Runnable() {
+        @Override
+        public void run() {
+            runNextDelivery();
+        }
+    };
+
+    private String nextCursor;
+    private boolean hasMorePages = true;
+    private boolean fetching;
+    // Pages fetched and not handed out yet
+    private int pagesAhead;
+    private volatile boolean canceled;
+    // Whether a delivery is on callbackExecutor, guarded by deliveries
+    private boolean delivering;
+
+    /**
+     * @param prefetchPages    number of pages fetched ahead of the page handed out
+     * @param executor         executor fetching the pages
+     * @param callbackExecutor executor the callback is run on
+     */
+    ContactMatchesPager(ApiInterface service, int prefetchPages, Executor executor,
+                        Executor callbackExecutor, ContactMatchesCallback callback,
+                        DigitsEventCollector digitsEventCollector) {
+        if (prefetchPages < 0) {
+            throw new IllegalArgumentException("Prefetch pages must not be negative");
+        }
+        this.service = service;
+        this.prefetchPages = prefetchPages;
+        this.executor = executor;
+        this.callbackExecutor = callbackExecutor;
+        this.callback = callback;
+        this.digitsEventCollector = digitsEventCollector;
+    }
+
+    /**
+     * Stops the lookup. No callback is executed once this returns on the UI thread. A page
+     * request in flight is completed, but its result is dropped.
+     */
+    public void cancel() {
+        canceled = true;
+    }
+
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    void start() {
+        fetchNextPage();
+    }
+
+    private void fetchNextPage() {
+        final String cursor;
+        synchronized (this) {
+            if (canceled || fetching || !hasMorePages || pagesAhead > prefetchPages) {
+                return;
+            }
+            fetching = true;
+            cursor = nextCursor;
+        }
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                fetch(cursor);
+            }
+        });
+    }
+
+    private void fetch(String cursor) {
+        if (canceled) {
+            return;
+        }
+
+        digitsEventCollector.startFindMatches(new ContactsLookupStartDetails(cursor));
+        final Contacts page;
+        try {
+            page = service.usersAndUploadedBy(cursor, PAGE_SIZE);
+        } catch (RetrofitError e) {
+            fail(TwitterApiException.convert(e));
+            return;
+        } catch (RuntimeException e) {
+            // Such as a body that could not be converted
+            fail(new TwitterException("Failed to fetch contact matches", e));
+            return;
+        }
+
+        final List<DigitsUser> users = page == null || page.users == null
+                ? Collections.<DigitsUser>emptyList() : new ArrayList<>(page.users);
+        digitsEventCollector.succeedFindMatches(new ContactsLookupSuccessDetails(users.size()));
+        final boolean isLastPage;
+        synchronized (this) {
+            fetching = false;
+            pagesAhead++;
+            nextCursor = page == null ? null : page.nextCursor;
+            hasMorePages = !TextUtils.isEmpty(nextCursor);
+            isLastPage = !hasMorePages;
+        }
+        deliver(users, isLastPage);
+        fetchNextPage();
+    }
+
+    /**
+     * Ends the lookup after a page could not be fetched.
+     */
+    private void fail(TwitterException exception) {
+        synchronized (this) {
+            fetching = false;
+            hasMorePages = false;
+        }
+        digitsEventCollector.failedFindMatches(new ContactsLookupFailureDetails());
+        deliverFailure(exception);
+    }
+
+    private void deliver(final List<DigitsUser> users, final boolean isLastPage) {
+        post(new Runnable() {
+            @Override
+            public void run() {
+                if (canceled) {
+                    return;
+                }
+                callback.onMatches(users);
+                synchronized (ContactMatchesPager.this) {
+                    pagesAhead--;
+                }
+                if (isLastPage) {
+                    if (!canceled) {
+                        callback.onComplete();
+                    }
+                } else {
+                    fetchNextPage();
+                }
+            }
+        });
+    }
+
+    private void deliverFailure(final TwitterException exception) {
+        post(new Runnable() {
+            @Override
+            public void run() {
+                if (!canceled) {
+                    callback.onFailure(exception);
+                }
+            }
+        });
+    }
+
+    private void post(Runnable delivery) {
+        synchronized (deliveries) {
+            deliveries.add(delivery);
+            if (delivering) {
+                return;
+            }
+            delivering = true;
+        }
+        callbackExecutor.execute(deliveryRunner);
+    }
+
+    private void runNextDelivery() {
+        final Runnable delivery;
+        synchronized (deliveries) {
+            delivery = deliveries.remove();
+        }
+        try {
+            delivery.run();
+        } finally {
+            final boolean hasMore;
+            synchronized (deliveries) {
+                hasMore = !deliveries.isEmpty();
+                delivering = hasMore;
+            }
+            if (hasMore) {
+                callbackExecutor.execute(deliveryRunner);
+            }
+        }
+    }
+}
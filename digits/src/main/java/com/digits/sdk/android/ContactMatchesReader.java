@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.android;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+
+import io.fabric.sdk.android.services.common.CommonUtils;
+import retrofit.client.Response;
+
+/**
+ * Reads a users_and_uploaded_by.json response straight into a {@link ContactMatches}, without
+ * creating a {@link DigitsUser} and an id string per match as Gson does for {@link Contacts}.
+ */
+class ContactMatchesReader {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final long[] NO_IDS = new long[0];
+
+    static ContactMatches read(Response response) throws IOException {
+        if (response.getBody() == null) {
+            return new ContactMatches(NO_IDS, null);
+        }
+
+        final JsonReader reader =
+                new JsonReader(new InputStreamReader(response.getBody().in(), "UTF-8"));
+        // Lenient like Gson reading a Contacts response
+        reader.setLenient(true);
+        try {
+            return read(reader);
+        } finally {
+            CommonUtils.closeOrLog(reader, "Failed to close contact matches");
+        }
+    }
+
+    private static ContactMatches read(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return new ContactMatches(NO_IDS, null);
+        }
+
+        long[] ids = NO_IDS;
+        int size = 0;
+        String nextCursor = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            if ("users".equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                ids = new long[INITIAL_CAPACITY];
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    if (reader.peek() == JsonToken.NULL) {
+                        reader.nextNull();
+                        continue;
+                    }
+                    if (size == ids.length) {
+                        ids = Arrays.copyOf(ids, size * 2);
+                    }
+                    ids[size++] = readId(reader);
+                }
+                reader.endArray();
+            } else if ("next_cursor".equals(name) && reader.peek() == JsonToken.STRING) {
+                nextCursor = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new ContactMatches(size == ids.length ? ids : Arrays.copyOf(ids, size),
+                nextCursor);
+    }
+
+    /**
+     * Reads the id of a user, preferring "id" so that no id string is created for it.
+     */
+    private static long readId(JsonReader reader) throws IOException {
+        boolean hasId = false;
+        long id = 0;
+        String idStr = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            if ("id".equals(name) && reader.peek() == JsonToken.NUMBER) {
+                id = reader.nextLong();
+                hasId = true;
+            } else if ("id_str".equals(name) && !hasId && reader.peek() == JsonToken.STRING) {
+                idStr = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (hasId) {
+            return id;
+        }
+        if (idStr == null) {
+            throw new MalformedJsonException("Matched user without id");
+        }
+        try {
+            return Long.parseLong(idStr);
+        } catch (NumberFormatException e) {
+            throw new MalformedJsonException("Invalid matched user id: " + idStr);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.android;
+
+import com.twitter.sdk.android.core.Callback;
+import com.twitter.sdk.android.core.Result;
+import com.twitter.sdk.android.core.TwitterException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Lookups of matched contacts in flight, keyed on cursor, count and callback executor.
+ * Concurrent lookups of the same page share one request, and its result is handed to each of
+ * their callbacks.
+ */
+class ContactMatchesRequests {
+    private final Map<Key, SharedCallback> inFlight = new HashMap<>();
+
+    /**
+     * Adds the callback to the request in flight for the same page, if there is one.
+     *
+     * @param callbackExecutor executor the callback is executed on, or null for the UI thread
+     * @return callback of the request the caller has to make, or null if the callback joined
+     * the request in flight
+     */
+    synchronized Callback<Contacts> join(String cursor, Integer count, Executor callbackExecutor,
+                                         Callback<Contacts> callback) {
+        final Key key = new Key(cursor, count, callbackExecutor);
+        final SharedCallback request = inFlight.get(key);
+        if (request != null) {
+            request.callbacks.add(callback);
+            return null;
+        }
+
+        final SharedCallback sharedCallback = new SharedCallback(key);
+        sharedCallback.callbacks.add(callback);
+        inFlight.put(key, sharedCallback);
+        return sharedCallback;
+    }
+
+    private synchronized List<Callback<Contacts>> complete(SharedCallback request) {
+        inFlight.remove(request.key);
+        return request.callbacks;
+    }
+
+    /**
+     * Copies the list of users, so that a callback changing its list does not change the list
+     * of the other callbacks.
+     */
+    private static Contacts copyOf(Contacts contacts) {
+        if (contacts == null) {
+            return null;
+        }
+        final Contacts copy = new Contacts();
+        copy.nextCursor = contacts.nextCursor;
+        copy.users = contacts.users == null ? null : new ArrayList<>(contacts.users);
+        return copy;
+    }
+
+    private class SharedCallback extends Callback<Contacts> {
+        final Key key;
+        final List<Callback<Contacts>> callbacks = new ArrayList<>();
+
+        SharedCallback(Key key) {
+            this.key = key;
+        }
+
+        @Override
+        public void success(Result<Contacts> result) {
+            final List<Callback<Contacts>> waiting = complete(this);
+            for (int i = 0; i < waiting.size(); i++) {
+                waiting.get(i).success(i == 0
+                        ? result : new Result<>(copyOf(result.data), result.response));
+            }
+        }
+
+        @Override
+        public void failure(TwitterException exception) {
+            for (Callback<Contacts> callback : complete(this)) {
+                callback.failure(exception);
+            }
+        }
+    }
+
+    private static final class Key {
+        final String cursor;
+        final Integer count;
+        final Executor callbackExecutor;
+
+        Key(String cursor, Integer count, Executor callbackExecutor) {
+            this.cursor = cursor;
+            this.count = count;
+            this.callbackExecutor = callbackExecutor;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return (cursor == null ? other.cursor == null : cursor.equals(other.cursor))
+                    && (count == null ? other.count == null : count.equals(other.count))
+                    && callbackExecutor == other.callbackExecutor;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = cursor == null ? 0 : cursor.hashCode();
+            result = 31 * result + (count == null ? 0 : count.hashCode());
+            result = 31 * result + (callbackExecutor == null ? 0 : callbackExecutor.hashCode());
+            return result;
+        }
+    }
+}
@@ -22,38 +22,75 @@ import android.content.Context;
 import android.content.Intent;
 import com.twitter.sdk.android.core.Callback;
 import com.twitter.sdk.android.core.Result;
+import com.twitter.sdk.android.core.TwitterApiException;
 import com.twitter.sdk.android.core.TwitterException;
 
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import retrofit.RetrofitError;
+import retrofit.android.MainThreadExecutor;
 import retrofit.client.Response;
 
 public class ContactsClient {
+    /**
+     * Maximum age of the stored matches returned by {@link #lookupStoredContactMatches}.
+     */
+    public static final long DEFAULT_MATCHES_MAX_AGE_MILLIS = TimeUnit.HOURS.toMillis(24);
+    /**
+     * Number of pages {@link #lookupAllContactMatches(ContactMatchesCallback)} fetches ahead of
+     * the page handed out.
+     */
+    public static final int DEFAULT_PREFETCH_PAGES = 1;
+
     private final ContactsPreferenceManager prefManager;
     private ActivityClassManagerFactory activityClassManagerFactory;
     private final DigitsApiClientManager apiClientManager;
     private final Digits digits;
     private SandboxConfig sandboxConfig;
     private final DigitsEventCollector digitsEventCollector;
+    private final MatchedContactsLookup matchedContactsLookup;
+    private final Executor executor;
+    private final Executor callbackExecutor;
+    private final ContactMatchesRequests matchRequests = new ContactMatchesRequests();
 
     ContactsClient(DigitsApiClientManager apiManager) {
-        this(Digits.getInstance(),
+        this(Digits.getInstance(), apiManager, new ContactsPreferenceManager(),
+                new MainThreadExecutor());
+    }
+
+    private ContactsClient(Digits digits, DigitsApiClientManager apiManager,
+                           ContactsPreferenceManager prefManager, Executor callbackExecutor) {
+        this(digits,
                 apiManager,
-                new ContactsPreferenceManager(),
+                prefManager,
                 new ActivityClassManagerFactory(),
-                Digits.getInstance().getSandboxConfig(),
-                Digits.getInstance().getDigitsEventCollector());
+                digits.getSandboxConfig(),
+                digits.getDigitsEventCollector(),
+                new MatchedContactsLookup(new MatchedContactsStore(digits.getContext()),
+                        prefManager, digits.getExecutorService(), callbackExecutor),
+                digits.getExecutorService(),
+                callbackExecutor);
     }
 
     ContactsClient(Digits digits, DigitsApiClientManager apiManager,
                    ContactsPreferenceManager prefManager,
                    ActivityClassManagerFactory activityClassManagerFactory,
                    SandboxConfig sandboxConfig,
-                   DigitsEventCollector digitsEventCollector) {
+                   DigitsEventCollector digitsEventCollector,
+                   MatchedContactsLookup matchedContactsLookup,
+                   Executor executor,
+                   Executor callbackExecutor) {
         this.digits = digits;
         this.apiClientManager = apiManager;
         this.prefManager = prefManager;
         this.activityClassManagerFactory = activityClassManagerFactory;
         this.sandboxConfig = sandboxConfig;
         this.digitsEventCollector = digitsEventCollector;
+        this.matchedContactsLookup = matchedContactsLookup;
+        this.executor = executor;
+        this.callbackExecutor = callbackExecutor;
     }
 
     /**
@@ -159,7 +196,8 @@ public class ContactsClient {
     }
 
     /**
-     * Lookup matched contacts.
+     * Lookup matched contacts. Lookups with the same cursor and count made while one is in
+     * flight share its request.
      *
      * @param nextCursor reference to next set of results. If null returns the first 100 users.
      * @param count      number of results to return. Min value is 1. Max value is 100. Default
@@ -168,17 +206,232 @@ public class ContactsClient {
      */
     public void lookupContactMatches(final String nextCursor, final Integer count,
                                         final Callback<Contacts> callback) {
+        findContactMatches(nextCursor, count, null, callback);
+    }
+
+    /**
+     * Like {@link #lookupContactMatches(String, Integer, Callback)}, but the callback is
+     * executed on the given executor instead of the UI thread, so large lists of matched users
+     * can be processed without switching threads.
+     *
+     * @param nextCursor       reference to next set of results. If null returns the first 100
+     *                         users.
+     * @param count            number of results to return. Min value is 1. Max value is 100.
+     *                         Default value is 50. Values out of range will return default.
+     * @param callbackExecutor executor the callback is executed on.
+     * @param callback         to be executed on callbackExecutor with matched users.
+     */
+    public void lookupContactMatches(final String nextCursor, final Integer count,
+                                     final Executor callbackExecutor,
+                                     final Callback<Contacts> callback) {
+        if (callbackExecutor == null) {
+            throw new IllegalArgumentException("callbackExecutor must not be null");
+        }
+        findContactMatches(nextCursor, count, callbackExecutor, callback);
+    }
+
+    /**
+     * @param callbackExecutor executor the callback is executed on, or null for the UI thread.
+     */
+    private void findContactMatches(final String nextCursor, final Integer count,
+                                    Executor callbackExecutor, final Callback<Contacts> callback) {
+        digitsEventCollector.startFindMatches(new ContactsLookupStartDetails(nextCursor));
+        final FoundContactsCallbackWrapper wrappedCallback =
+                new FoundContactsCallbackWrapper(callback, digitsEventCollector);
+
+        if (sandboxConfig.isMode(SandboxConfig.Mode.DEFAULT)) {
+            if (callbackExecutor == null) {
+                MockApiInterface.createAllContacts(wrappedCallback);
+            } else {
+                callbackExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        MockApiInterface.createAllContacts(wrappedCallback);
+                    }
+                });
+            }
+            return;
+        }
+
+        final Integer pageSize = getPageSize(count);
+        final Callback<Contacts> request =
+                matchRequests.join(nextCursor, pageSize, callbackExecutor, wrappedCallback);
+        if (request == null) {
+            // Joined the lookup of the same page in flight
+            return;
+        }
+        try {
+            final ApiInterface service = callbackExecutor == null
+                    ? getDigitsApiService() : apiClientManager.getService(callbackExecutor);
+            service.usersAndUploadedBy(nextCursor, pageSize, request);
+        } catch (RuntimeException e) {
+            // Fails the lookups which joined the request as well, and ends the request in flight
+            final TwitterException exception =
+                    new TwitterException("Failed to look up contact matches", e);
+            final Executor failureExecutor =
+                    callbackExecutor == null ? this.callbackExecutor : callbackExecutor;
+            failureExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    request.failure(exception);
+                }
+            });
+        }
+    }
+
+    /**
+     * Like {@link #lookupContactMatches(String, Integer, Callback)}, but the response is read
+     * straight into a {@link ContactMatches}, which only keeps the ids of the matched users.
+     * This takes far less memory when there are thousands of matches.
+     *
+     * @param nextCursor reference to next set of results. If null returns the first 100 users.
+     * @param count      number of results to return. Min value is 1. Max value is 100. Default
+     *                   value is 50. Values out of range will return default.
+     * @param callback   to be executed on UI thread with matched users.
+     */
+    public void lookupCompactContactMatches(final String nextCursor, final Integer count,
+                                            final Callback<ContactMatches> callback) {
         digitsEventCollector.startFindMatches(new ContactsLookupStartDetails(nextCursor));
+        final ApiInterface service = sandboxConfig.isMode(SandboxConfig.Mode.DEFAULT)
+                ? sandboxConfig.getMock() : getDigitsApiService();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                readContactMatches(service, nextCursor, getPageSize(count), callback);
+            }
+        });
+    }
+
+    private void readContactMatches(ApiInterface service, String nextCursor, Integer pageSize,
+                                    final Callback<ContactMatches> callback) {
+        final TwitterException exception;
+        try {
+            final Response response = service.streamUsersAndUploadedBy(nextCursor, pageSize);
+            final ContactMatches matches = ContactMatchesReader.read(response);
+            digitsEventCollector.succeedFindMatches(
+                    new ContactsLookupSuccessDetails(matches.size()));
+            callbackExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (callback != null) {
+                        callback.success(new Result<>(matches, response));
+                    }
+                }
+            });
+            return;
+        } catch (RetrofitError e) {
+            exception = TwitterApiException.convert(e);
+        } catch (IOException e) {
+            exception = new TwitterException("Failed to read contact matches", e);
+        } catch (RuntimeException e) {
+            // JsonReader throws IllegalStateException or NumberFormatException for a body
+            // that does not have the expected structure
+            exception = new TwitterException("Failed to read contact matches", e);
+        }
+
+        digitsEventCollector.failedFindMatches(new ContactsLookupFailureDetails());
+        callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (callback != null) {
+                    callback.failure(exception);
+                }
+            }
+        });
+    }
+
+    /**
+     * Retrieve all matched contacts from the matches stored on the device, like
+     * {@link #lookupStoredContactMatches(long, Callback)} with a maximum age of
+     * {@link #DEFAULT_MATCHES_MAX_AGE_MILLIS}.
+     *
+     * @param callback   to be executed on UI thread with matched users.
+     */
+    public void lookupStoredContactMatches(final Callback<Contacts> callback) {
+        lookupStoredContactMatches(DEFAULT_MATCHES_MAX_AGE_MILLIS, callback);
+    }
+
+    /**
+     * Retrieve all matched contacts from the matches stored on the device. The stored matches
+     * are refreshed in the background once they are older than maxAgeMillis, or after contacts
+     * were uploaded, and later lookups return the refreshed matches. Only when no matches are
+     * stored yet, the callback waits for all pages of matches to be fetched.
+     *
+     * @param maxAgeMillis maximum age of stored matches before they are refreshed.
+     * @param callback     to be executed on UI thread with matched users.
+     */
+    public void lookupStoredContactMatches(long maxAgeMillis, final Callback<Contacts> callback) {
+        digitsEventCollector.startFindMatches(new ContactsLookupStartDetails(null));
         final FoundContactsCallbackWrapper wrappedCallback =
                 new FoundContactsCallbackWrapper(callback, digitsEventCollector);
 
         if (sandboxConfig.isMode(SandboxConfig.Mode.DEFAULT)) {
             MockApiInterface.createAllContacts(wrappedCallback);
-        } else if (count == null || count < 1 || count > 100) {
-            getDigitsApiService().usersAndUploadedBy(nextCursor, null, wrappedCallback);
         } else {
-            getDigitsApiService().usersAndUploadedBy(nextCursor, count, wrappedCallback);
+            final DigitsSession session = apiClientManager.getApiClient().getSession();
+            matchedContactsLookup.lookup(getDigitsApiService(),
+                    session == null ? DigitsSession.UNKNOWN_USER_ID : session.getId(),
+                    maxAgeMillis, wrappedCallback);
+        }
+    }
+
+    /**
+     * Like {@link #lookupAllContactMatches(int, ContactMatchesCallback)}, fetching
+     * {@link #DEFAULT_PREFETCH_PAGES} pages ahead.
+     *
+     * @param callback   to be executed on UI thread with each page of matched users.
+     * @return pager that can cancel the lookup.
+     */
+    public ContactMatchesPager lookupAllContactMatches(final ContactMatchesCallback callback) {
+        return lookupAllContactMatches(DEFAULT_PREFETCH_PAGES, callback);
+    }
+
+    /**
+     * Retrieve all matched contacts, page by page. The following pages are fetched while a page
+     * is handed out to the callback, so the lookup does not wait for the UI thread between
+     * pages.
+     *
+     * @param prefetchPages number of pages fetched ahead of the page handed out. With 0, a page
+     *                      is only fetched after the previous one was handed out.
+     * @param callback      to be executed on UI thread with each page of matched users.
+     * @return pager that can cancel the lookup.
+     */
+    public ContactMatchesPager lookupAllContactMatches(int prefetchPages,
+                                                       final ContactMatchesCallback callback) {
+        return lookupAllContactMatches(prefetchPages, callbackExecutor, callback);
+    }
+
+    /**
+     * Like {@link #lookupAllContactMatches(int, ContactMatchesCallback)}, but the callback is
+     * executed on the given executor instead of the UI thread. The executor does not need to
+     * be serial: the callback is run for one page at a time, in the order of the pages.
+     *
+     * @param prefetchPages    number of pages fetched ahead of the page handed out.
+     * @param callbackExecutor executor the callback is executed on.
+     * @param callback         to be executed on callbackExecutor with each page of matched
+     *                         users.
+     * @return pager that can cancel the lookup.
+     */
+    public ContactMatchesPager lookupAllContactMatches(int prefetchPages,
+                                                       final Executor callbackExecutor,
+                                                       final ContactMatchesCallback callback) {
+        if (callbackExecutor == null) {
+            throw new IllegalArgumentException("callbackExecutor must not be null");
         }
+        final ApiInterface service = sandboxConfig.isMode(SandboxConfig.Mode.DEFAULT)
+                ? sandboxConfig.getMock() : getDigitsApiService();
+        final ContactMatchesPager pager = new ContactMatchesPager(service, prefetchPages,
+                executor, callbackExecutor, callback, digitsEventCollector);
+        pager.start();
+        return pager;
+    }
+
+    /**
+     * @return count of matches to request, or null for the default count if the given count is
+     * out of range.
+     */
+    private static Integer getPageSize(Integer count) {
+        return count == null || count < 1 || count > 100 ? null : count;
     }
 
     UploadResponse uploadContacts(Vcards vcards) {
@@ -227,6 +480,9 @@ public class ContactsClient {
 
         @Override
         public void success(Result<Response> result) {
+            // Nothing is uploaded anymore, so the next upload must send every contact again.
+            prefManager.clearContactsReadTimestamp();
+            matchedContactsLookup.clear();
             digitsEventCollector.succeedDeleteContacts(new ContactsDeletionSuccessDetails());
             if (callback != null) {
                 callback.success(result);
@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.android;
+
+import android.content.Context;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import io.fabric.sdk.android.Fabric;
+import io.fabric.sdk.android.services.common.CommonUtils;
+
+/**
+ * Persistent index of the vCard fingerprint last uploaded for each contact lookup key. Used to
+ * upload only contacts that were added or changed since the last successful upload. Contacts
+ * rejected by the server are kept separately, so they are not sent again until they change.
+ */
+class ContactsFingerprintIndex {
+    static final String FILE_NAME = "com.digits.sdk.android.contacts_fingerprints";
+    private static final int VERSION_1 = 1;
+    // Adds rejected fingerprints
+    private static final int VERSION = 2;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Context context;
+    private final Map<String, Long> fingerprints = new HashMap<>();
+    private final Map<String, Long> rejectedFingerprints = new HashMap<>();
+    private boolean loaded;
+
+    ContactsFingerprintIndex(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the given vCard.
+     */
+    static long fingerprint(CharSequence vcard) {
+        long hash = FNV_OFFSET_BASIS;
+        final int length = vcard.length();
+        for (int i = 0; i < length; i++) {
+            final char ch = vcard.charAt(i);
+            hash ^= ch & 0xff;
+            hash *= FNV_PRIME;
+            hash ^= ch >>> 8;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the given compact contact record.
+     */
+    static long fingerprint(byte[] record) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : record) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    synchronized void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        fingerprints.clear();
+        rejectedFingerprints.clear();
+
+        final File file = getFile();
+        if (!file.exists()) {
+            return;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            final int version = in.readInt();
+            if (version != VERSION && version != VERSION_1) {
+                return;
+            }
+            read(in, fingerprints);
+            if (version == VERSION) {
+                read(in, rejectedFingerprints);
+            }
+        } catch (IOException e) {
+            Fabric.getLogger().e(Digits.TAG, "Failed to read contacts fingerprints", e);
+            fingerprints.clear();
+            rejectedFingerprints.clear();
+        } finally {
+            CommonUtils.closeOrLog(in, "Failed to close contacts fingerprints");
+        }
+    }
+
+    synchronized boolean isUploaded(EncodedContact contact) {
+        return contains(fingerprints, contact);
+    }
+
+    /**
+     * Whether the server rejected this exact version of the contact.
+     */
+    synchronized boolean isRejected(EncodedContact contact) {
+        return contains(rejectedFingerprints, contact);
+    }
+
+    synchronized void markUploaded(Collection<EncodedContact> contacts) {
+        for (EncodedContact contact : contacts) {
+            fingerprints.put(contact.lookupKey, contact.fingerprint);
+            rejectedFingerprints.remove(contact.lookupKey);
+        }
+    }
+
+    synchronized void markRejected(Collection<EncodedContact> contacts) {
+        for (EncodedContact contact : contacts) {
+            rejectedFingerprints.put(contact.lookupKey, contact.fingerprint);
+            fingerprints.remove(contact.lookupKey);
+        }
+    }
+
+    /**
+     * Drops the fingerprints of contacts that no longer exist on the device.
+     */
+    synchronized void retain(Set<String> lookupKeys) {
+        fingerprints.keySet().retainAll(lookupKeys);
+        rejectedFingerprints.keySet().retainAll(lookupKeys);
+    }
+
+    synchronized void clear() {
+        loaded = true;
+        fingerprints.clear();
+        rejectedFingerprints.clear();
+        final File file = getFile();
+        if (file.exists() && !file.delete()) {
+            Fabric.getLogger().w(Digits.TAG, "Failed to delete contacts fingerprints");
+        }
+    }
+
+    synchronized int size() {
+        return fingerprints.size();
+    }
+
+    synchronized void save() {
+        final File file = getFile();
+        final File tmpFile = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            out.writeInt(VERSION);
+            write(out, fingerprints);
+            write(out, rejectedFingerprints);
+            out.close();
+            out = null;
+            if (!tmpFile.renameTo(file)) {
+                Fabric.getLogger().e(Digits.TAG, "Failed to save contacts fingerprints");
+            }
+        } catch (IOException e) {
+            Fabric.getLogger().e(Digits.TAG, "Failed to write contacts fingerprints", e);
+        } finally {
+            CommonUtils.closeOrLog(out, "Failed to close contacts fingerprints");
+        }
+    }
+
+    File getFile() {
+        return new File(context.getFilesDir(), FILE_NAME);
+    }
+
+    private static boolean contains(Map<String, Long> fingerprints, EncodedContact contact) {
+        final Long fingerprint = fingerprints.get(contact.lookupKey);
+        return fingerprint != null && fingerprint == contact.fingerprint;
+    }
+
+    private static void read(DataInputStream in, Map<String, Long> fingerprints)
+            throws IOException {
+        final int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            final String lookupKey = in.readUTF();
+            fingerprints.put(lookupKey, in.readLong());
+        }
+    }
+
+    private static void write(DataOutputStream out, Map<String, Long> fingerprints)
+            throws IOException {
+        out.writeInt(fingerprints.size());
+        for (Map.Entry<String, Long> entry : fingerprints.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeLong(entry.getValue());
+        }
+    }
+}
@@ -17,24 +17,19 @@
 
 package com.digits.sdk.android;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
-import android.database.DatabaseUtils;
 import android.provider.ContactsContract;
 import android.provider.ContactsContract.CommonDataKinds.Phone;
 import android.provider.ContactsContract.CommonDataKinds.StructuredName;
+import android.text.TextUtils;
 
-import com.digits.sdk.vcard.VCardBuilder;
-import com.digits.sdk.vcard.VCardConfig;
+import com.digits.sdk.vcard.ContactDataRow;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 
 class ContactsHelper {
     private static final String[] allProjectionColumns = new String[]{
@@ -48,11 +43,26 @@ class ContactsHelper {
     private static final String[] selectionArgs = new String[]{
             Phone.CONTENT_ITEM_TYPE,
             StructuredName.CONTENT_ITEM_TYPE};
+    // Rows of a contact must be adjacent so that each contact is read in a single pass.
+    private static final String sortOrder = ContactsContract.Data.LOOKUP_KEY;
 
     private final Context context;
+    private final boolean normalizesPhoneNumbers;
+    private final boolean usesCompactFormat;
+    private final int encodingThreads;
 
     ContactsHelper(Context context) {
+        this(context, new ContactsUploadConfig.Builder().withEncodingThreads(1).build());
+    }
+
+    /**
+     * @param config selects the upload format and the number of encoding threads
+     */
+    ContactsHelper(Context context, ContactsUploadConfig config) {
         this.context = context;
+        this.normalizesPhoneNumbers = config.normalizesPhoneNumbers;
+        this.usesCompactFormat = config.isCompactFormatEnabled;
+        this.encodingThreads = config.encodingThreads;
     }
 
     public Cursor getContactsCursor() {
@@ -61,90 +71,157 @@ class ContactsHelper {
         final String[] projectionColumns = tempSet.toArray(new String[tempSet.size()]);
 
         return context.getContentResolver().query(ContactsContract.Data.CONTENT_URI,
-                projectionColumns, selectionQuery, selectionArgs, null);
+                projectionColumns, selectionQuery, selectionArgs, sortOrder);
     }
 
-    public List<String> createContactList(Cursor cursor) {
+    public List<EncodedContact> createContactList(Cursor cursor) {
+        final List<EncodedContact> contacts = new ArrayList<>();
+        readContacts(cursor, new ContactsConsumer() {
+            @Override
+            public boolean onContact(EncodedContact contact) {
+                contacts.add(contact);
+                return true;
+            }
+        });
+        return contacts;
+    }
+
+    /**
+     * Encodes the contacts with a phone number and hands each of them to the consumer as soon
+     * as it is encoded, so callers never have to hold every vCard in memory. The cursor must be
+     * sorted by lookup key, as returned by {@link #getContactsCursor()}, so that each contact is
+     * finished as soon as the lookup key changes. With more than one encoding thread, contacts
+     * are encoded by a {@link ParallelContactsEncoder} while the cursor is read; the consumer
+     * is still called on the calling thread, in cursor order.
+     *
+     * @return false if the consumer stopped reading before every contact was encoded
+     */
+    public boolean readContacts(Cursor cursor, ContactsConsumer consumer) {
         if (cursor == null || cursor.getCount() == 0) {
-            return Collections.<String>emptyList();
+            return true;
         }
 
         final int mimeTypeColumnIndex = cursor.getColumnIndex(ContactsContract.Data.MIMETYPE);
         final int lookupKeyColumnIndex = cursor.getColumnIndex(ContactsContract.Contacts
                 .LOOKUP_KEY);
-        final Map<String, List<ContentValues>> mapContactsData = new HashMap<>();
-        while (cursor.moveToNext()) {
-            final String mimeType = cursor.getString(mimeTypeColumnIndex);
-            final ContentValues cv = new ContentValues();
-            cv.put(ContactsContract.Data.MIMETYPE, mimeType);
-            switch (mimeType) {
-                case Phone.CONTENT_ITEM_TYPE:
-                    DatabaseUtils.cursorIntToContentValuesIfPresent(cursor, cv, Phone.TYPE);
-                    DatabaseUtils.cursorStringToContentValuesIfPresent(cursor, cv, Phone.LABEL);
-                    DatabaseUtils.cursorIntToContentValuesIfPresent(cursor, cv, Phone.IS_PRIMARY);
-                    DatabaseUtils.cursorStringToContentValuesIfPresent(cursor, cv, Phone.NUMBER);
-                    break;
-                case StructuredName.CONTENT_ITEM_TYPE:
-                    DatabaseUtils.cursorStringToContentValuesIfPresent(cursor, cv,
-                            StructuredName.DISPLAY_NAME);
-                    DatabaseUtils.cursorStringToContentValuesIfPresent(cursor, cv,
-                            StructuredName.GIVEN_NAME);
-                    DatabaseUtils.cursorStringToContentValuesIfPresent(cursor, cv,
-                            StructuredName.FAMILY_NAME);
-                    break;
-                default:
+        final int phoneTypeColumnIndex = cursor.getColumnIndex(Phone.TYPE);
+        final int phoneLabelColumnIndex = cursor.getColumnIndex(Phone.LABEL);
+        final int isPrimaryColumnIndex = cursor.getColumnIndex(Phone.IS_PRIMARY);
+        final int phoneNumberColumnIndex = cursor.getColumnIndex(Phone.NUMBER);
+        final int displayNameColumnIndex = cursor.getColumnIndex(StructuredName.DISPLAY_NAME);
+        final int givenNameColumnIndex = cursor.getColumnIndex(StructuredName.GIVEN_NAME);
+        final int familyNameColumnIndex = cursor.getColumnIndex(StructuredName.FAMILY_NAME);
+        final ParallelContactsEncoder encoder = new ParallelContactsEncoder(encodingThreads,
+                normalizesPhoneNumbers, usesCompactFormat, consumer);
+        final RowBuffer names = new RowBuffer();
+        final RowBuffer phones = new RowBuffer();
+        String currentLookupKey = null;
+        try {
+            while (cursor.moveToNext()) {
+                final String mimeType = cursor.getString(mimeTypeColumnIndex);
+                if (!Phone.CONTENT_ITEM_TYPE.equals(mimeType) &&
+                        !StructuredName.CONTENT_ITEM_TYPE.equals(mimeType)) {
                     continue;
-            }
-            // Aggregate contacts based on their lookup key.
-            final String lookupKey = cursor.getString(lookupKeyColumnIndex);
-            List<ContentValues> contactDetails = mapContactsData.get(lookupKey);
-            if (contactDetails == null) {
-                contactDetails = new ArrayList<>();
-                mapContactsData.put(lookupKey, contactDetails);
-            }
-            contactDetails.add(cv);
-        }
+                }
 
-        return processContactsMap(mapContactsData);
-    }
+                // Rows are sorted by lookup key, so a new key means the previous contact is
+                // complete.
+                final String lookupKey = cursor.getString(lookupKeyColumnIndex);
+                if (!TextUtils.equals(lookupKey, currentLookupKey)) {
+                    if (!encodeContact(encoder, currentLookupKey, names, phones)) {
+                        return false;
+                    }
+                    currentLookupKey = lookupKey;
+                }
 
-    private List<String> processContactsMap(Map<String, List<ContentValues>> mapContactsData) {
-        final List<String> vCards = new ArrayList<>();
-        final Map<String, List<ContentValues>> contactMimeTypeMap = new HashMap<>();
-        final VCardBuilder builder = new VCardBuilder(VCardConfig.VCARD_TYPE_V30_GENERIC,
-                VCardConfig.DEFAULT_EXPORT_CHARSET);
-        for (String key : mapContactsData.keySet()) {
-            final List<ContentValues> contentValuesList = mapContactsData.get(key);
-            boolean hasPhone = false;
-            contactMimeTypeMap.clear();
-            builder.clear();
-
-            // Group by type so we can call builder.append<type> below
-            for (ContentValues cv : contentValuesList) {
-                final String mimeType = cv.getAsString(ContactsContract.Data.MIMETYPE);
                 if (Phone.CONTENT_ITEM_TYPE.equals(mimeType)) {
-                    hasPhone = true;
-                }
-                List<ContentValues> group = contactMimeTypeMap.get(mimeType);
-                if (group == null) {
-                    group = new ArrayList<>();
-                    contactMimeTypeMap.put(mimeType, group);
+                    final ContactDataRow row = phones.next();
+                    row.hasPhoneType = !isNull(cursor, phoneTypeColumnIndex);
+                    if (row.hasPhoneType) {
+                        row.phoneType = cursor.getInt(phoneTypeColumnIndex);
+                    }
+                    row.phoneLabel = getString(cursor, phoneLabelColumnIndex);
+                    row.isPrimary = !isNull(cursor, isPrimaryColumnIndex) &&
+                            cursor.getInt(isPrimaryColumnIndex) > 0;
+                    row.phoneNumber = getString(cursor, phoneNumberColumnIndex);
+                } else {
+                    final ContactDataRow row = names.next();
+                    row.displayName = getString(cursor, displayNameColumnIndex);
+                    row.givenName = getString(cursor, givenNameColumnIndex);
+                    row.familyName = getString(cursor, familyNameColumnIndex);
                 }
-                group.add(cv);
             }
 
-            // Digits users are identified by phone, so ignore contacts w/o a phone
-            if (!hasPhone) {
-                continue;
+            return encodeContact(encoder, currentLookupKey, names, phones) && encoder.finish();
+        } finally {
+            encoder.close();
+        }
+    }
+
+    /**
+     * Hands the buffered rows of a contact, if any, to the encoder and resets the buffers for
+     * the next one.
+     */
+    private boolean encodeContact(ParallelContactsEncoder encoder, String lookupKey,
+                                  RowBuffer names, RowBuffer phones) {
+        // Digits users are identified by phone, so ignore contacts w/o a phone
+        final boolean hasPhone = !phones.isEmpty();
+        final boolean proceed = !hasPhone || encoder.add(lookupKey, names.rows(), phones.rows());
+        names.reset();
+        phones.reset();
+        return proceed;
+    }
+
+    private static boolean isNull(Cursor cursor, int columnIndex) {
+        return columnIndex == -1 || cursor.isNull(columnIndex);
+    }
+
+    private static String getString(Cursor cursor, int columnIndex) {
+        return isNull(cursor, columnIndex) ? null : cursor.getString(columnIndex);
+    }
+
+    /**
+     * Rows of one MIME type for the contact being read. The rows are recycled from one contact
+     * to the next.
+     */
+    static class RowBuffer {
+        private final List<ContactDataRow> rows = new ArrayList<>();
+        private int size;
+
+        ContactDataRow next() {
+            final ContactDataRow row;
+            if (size < rows.size()) {
+                row = rows.get(size);
+                row.clear();
+            } else {
+                row = new ContactDataRow();
+                rows.add(row);
             }
+            size++;
+            return row;
+        }
+
+        List<ContactDataRow> rows() {
+            return rows.subList(0, size);
+        }
 
-            builder.appendNameProperties(contactMimeTypeMap.get(StructuredName.CONTENT_ITEM_TYPE))
-                    .appendPhones(contactMimeTypeMap.get(Phone.CONTENT_ITEM_TYPE), null);
+        boolean isEmpty() {
+            return size == 0;
+        }
 
-            final String vcard = builder.toString();
-            vCards.add(vcard);
+        void reset() {
+            size = 0;
         }
+    }
 
-        return vCards;
+    /**
+     * Receives contacts from {@link #readContacts(Cursor, ContactsConsumer)} as soon as they
+     * are encoded.
+     */
+    interface ContactsConsumer {
+        /**
+         * @return false to stop reading contacts
+         */
+        boolean onContact(EncodedContact contact);
     }
 }
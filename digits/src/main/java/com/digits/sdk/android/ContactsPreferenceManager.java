@@ -27,6 +27,8 @@ class ContactsPreferenceManager {
     static final String KEY_CONTACTS_IMPORT_PERMISSION = "CONTACTS_IMPORT_PERMISSION";
     static final String KEY_CONTACTS_READ_TIMESTAMP = "CONTACTS_READ_TIMESTAMP";
     static final String KEY_CONTACTS_UPLOADED = "CONTACTS_CONTACTS_UPLOADED";
+    static final String KEY_CONTACTS_UPLOAD_GENERATION = "CONTACTS_UPLOAD_GENERATION";
+    static final String KEY_CONTACTS_UPLOAD_USER_ID = "CONTACTS_UPLOAD_USER_ID";
 
     final private PreferenceStore prefStore;
 
@@ -54,6 +56,48 @@ class ContactsPreferenceManager {
         prefStore.save(prefStore.edit().putLong(KEY_CONTACTS_READ_TIMESTAMP, timestamp));
     }
 
+    @SuppressLint("CommitPrefEdits")
+    protected long getContactsReadTimestamp() {
+        return prefStore.get().getLong(KEY_CONTACTS_READ_TIMESTAMP, 0);
+    }
+
+    /**
+     * Clears the read timestamp and starts a new upload generation, since uploaded contacts
+     * were deleted.
+     */
+    @SuppressLint("CommitPrefEdits")
+    protected void clearContactsReadTimestamp() {
+        prefStore.save(prefStore.edit()
+                .remove(KEY_CONTACTS_READ_TIMESTAMP)
+                .putInt(KEY_CONTACTS_UPLOAD_GENERATION, getContactsUploadGeneration() + 1));
+    }
+
+    @SuppressLint("CommitPrefEdits")
+    protected int getContactsUploadGeneration() {
+        return prefStore.get().getInt(KEY_CONTACTS_UPLOAD_GENERATION, 0);
+    }
+
+    /**
+     * @return id of the user whose contacts upload state is stored, or
+     * {@link DigitsSession#UNKNOWN_USER_ID} if there is none.
+     */
+    @SuppressLint("CommitPrefEdits")
+    protected long getContactsUploadUserId() {
+        return prefStore.get().getLong(KEY_CONTACTS_UPLOAD_USER_ID, DigitsSession.UNKNOWN_USER_ID);
+    }
+
+    /**
+     * Clears the read timestamp and starts a new upload generation for the given user, since
+     * the contacts uploaded so far belong to another user.
+     */
+    @SuppressLint("CommitPrefEdits")
+    protected void resetContactsUpload(long userId) {
+        prefStore.save(prefStore.edit()
+                .remove(KEY_CONTACTS_READ_TIMESTAMP)
+                .putInt(KEY_CONTACTS_UPLOAD_GENERATION, getContactsUploadGeneration() + 1)
+                .putLong(KEY_CONTACTS_UPLOAD_USER_ID, userId));
+    }
+
     @SuppressLint("CommitPrefEdits")
     protected void setContactsUploaded(int count) {
         prefStore.save(prefStore.edit().putInt(KEY_CONTACTS_UPLOADED, count));
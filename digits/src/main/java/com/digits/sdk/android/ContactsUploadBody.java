@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.digits.sdk.android;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import io.fabric.sdk.android.Fabric;
+import io.fabric.sdk.android.services.common.CommonUtils;
+import retrofit.mime.TypedOutput;
+
+/**
+ * Contacts upload request body, created once per page and reused for retries. The body is gzip
+ * compressed when compression is enabled and the encoded page is at least as large as the
+ * configured threshold.
+ */
+abstract class ContactsUploadBody implements TypedOutput {
+    static final String GZIP = "gzip";
+
+    final byte[] bytes;
+    final String contentEncoding;
+
+    ContactsUploadBody(byte[] bytes, String contentEncoding) {
+        this.bytes = bytes;
+        this.contentEncoding = contentEncoding;
+    }
+
+    /**
+     * Sends this body to the upload endpoint of its format.
+     */
+    abstract UploadResponse upload(ApiInterface service);
+
+    /**
+     * @return the gzip compressed data, or null if the data is sent as is
+     */
+    static byte[] compress(byte[] data, ContactsUploadConfig config) {
+        if (config.isCompressionEnabled && data.length >= config.compressionThresholdBytes) {
+            try {
+                return gzip(data);
+            } catch (IOException e) {
+                Fabric.getLogger().e(Digits.TAG, "Failed to compress contacts", e);
+            }
+        }
+        return null;
+    }
+
+    static byte[] gzip(byte[] data) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 4 + 32);
+        GZIPOutputStream out = null;
+        try {
+            out = new GZIPOutputStream(bytes);
+            out.write(data);
+            out.finish();
+        } finally {
+            CommonUtils.closeOrLog(out, "Failed to close gzip stream");
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public String fileName() {
+        return null;
+    }
+
+    @Override
+    public long length() {
+        return bytes.length;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(bytes);
+    }
+}
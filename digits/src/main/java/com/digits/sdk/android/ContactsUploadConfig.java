@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.android;
+
+/**
+ * Options for {@link ContactsUploadService}. Construct using
+ * {@link ContactsUploadConfig.Builder} and apply with
+ * {@link Digits#setContactsUploadConfig(ContactsUploadConfig)}.
+ */
+public class ContactsUploadConfig {
+    static final int DEFAULT_COMPRESSION_THRESHOLD_BYTES = 1024;
+    static final int DEFAULT_CONCURRENCY = 2;
+    static final int DEFAULT_MAX_QUEUED_PAGES = 2;
+    static final long DEFAULT_PAGE_TIMEOUT_MILLIS = 60000;
+    static final int DEFAULT_MAX_RETRIES = 2;
+    static final int MAX_DEFAULT_ENCODING_THREADS = 4;
+
+    protected final boolean isCompressionEnabled;
+    protected final int compressionThresholdBytes;
+    protected final int concurrency;
+    protected final int maxQueuedPages;
+    protected final long pageTimeoutMillis;
+    protected final int maxRetries;
+    protected final boolean normalizesPhoneNumbers;
+    protected final boolean isCompactFormatEnabled;
+    protected final int encodingThreads;
+
+    protected ContactsUploadConfig(boolean isCompressionEnabled, int compressionThresholdBytes,
+                                   int concurrency, int maxQueuedPages, long pageTimeoutMillis,
+                                   int maxRetries, boolean normalizesPhoneNumbers,
+                                   boolean isCompactFormatEnabled, int encodingThreads) {
+        this.isCompressionEnabled = isCompressionEnabled;
+        this.compressionThresholdBytes = compressionThresholdBytes;
+        this.concurrency = concurrency;
+        this.maxQueuedPages = maxQueuedPages;
+        this.pageTimeoutMillis = pageTimeoutMillis;
+        this.maxRetries = maxRetries;
+        this.normalizesPhoneNumbers = normalizesPhoneNumbers;
+        this.isCompactFormatEnabled = isCompactFormatEnabled;
+        this.encodingThreads = encodingThreads;
+    }
+
+    /**
+     * Contacts Upload Config Builder
+     * <p>
+     * Used to build a Contacts Upload Config object {@link ContactsUploadConfig}
+     * <pre>
+     * // Example
+     * Digits.setContactsUploadConfig(new ContactsUploadConfig.Builder()
+     *       .withCompression(true)
+     *       .build());
+     * </pre>
+     */
+    public static class Builder {
+        boolean isCompressionEnabled;
+        int compressionThresholdBytes;
+        int concurrency;
+        int maxQueuedPages;
+        long pageTimeoutMillis;
+        int maxRetries;
+        boolean normalizesPhoneNumbers;
+        boolean isCompactFormatEnabled;
+        int encodingThreads;
+
+        /**
+         * Construct {@link ContactsUploadConfig.Builder}
+         */
+        public Builder() {
+            this.isCompressionEnabled = false;
+            this.compressionThresholdBytes = DEFAULT_COMPRESSION_THRESHOLD_BYTES;
+            this.concurrency = DEFAULT_CONCURRENCY;
+            this.maxQueuedPages = DEFAULT_MAX_QUEUED_PAGES;
+            this.pageTimeoutMillis = DEFAULT_PAGE_TIMEOUT_MILLIS;
+            this.maxRetries = DEFAULT_MAX_RETRIES;
+            this.normalizesPhoneNumbers = false;
+            this.isCompactFormatEnabled = false;
+            this.encodingThreads = Math.min(Runtime.getRuntime().availableProcessors(),
+                    MAX_DEFAULT_ENCODING_THREADS);
+        }
+
+        /**
+         * Turns gzip compression of upload request bodies on/off. The server must accept
+         * gzip encoded upload requests.
+         * @param compress Should compress upload request bodies
+         */
+        public Builder withCompression(boolean compress) {
+            this.isCompressionEnabled = compress;
+            return this;
+        }
+
+        /**
+         * Set the size from which upload request bodies are compressed. Smaller bodies are
+         * sent as is, since compression would hardly save any bytes.
+         * @param thresholdBytes Minimum size in bytes of a compressed request body
+         */
+        public Builder withCompressionThreshold(int thresholdBytes) {
+            this.compressionThresholdBytes = thresholdBytes;
+            return this;
+        }
+
+        /**
+         * Set the number of pages uploaded at the same time.
+         * @param concurrency Number of concurrent upload requests, at least 1
+         */
+        public Builder withConcurrency(int concurrency) {
+            this.concurrency = concurrency;
+            return this;
+        }
+
+        /**
+         * Set the number of pages that may wait for an upload slot. Reading contacts pauses
+         * while this many pages are waiting, which bounds memory use for large address books.
+         * @param maxQueuedPages Number of pages waiting for upload
+         */
+        public Builder withMaxQueuedPages(int maxQueuedPages) {
+            this.maxQueuedPages = maxQueuedPages;
+            return this;
+        }
+
+        /**
+         * Set how long a single page upload may take before it is interrupted and counted as
+         * failed. The deadline applies to each page separately, starting when its upload starts.
+         * @param pageTimeoutMillis Page upload deadline in milliseconds
+         */
+        public Builder withPageTimeout(long pageTimeoutMillis) {
+            this.pageTimeoutMillis = pageTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * Set how often a page is retried after a network error, rate limiting or a server
+         * error. Retries back off exponentially and honor the server's Retry-After header.
+         * @param maxRetries Number of retries per page, 0 to disable retries
+         */
+        public Builder withMaxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        /**
+         * Turns normalization of uploaded phone numbers on/off. Normalized numbers are sent as
+         * their digits, with a leading '+' for numbers in international format, instead of
+         * being formatted for display, which makes reading contacts considerably faster. The
+         * server normalizes phone numbers either way. Changing this option changes the
+         * uploaded vCards, so every contact is uploaded once more after the change.
+         * @param normalize Should send normalized phone numbers
+         */
+        public Builder withPhoneNumberNormalization(boolean normalize) {
+            this.normalizesPhoneNumbers = normalize;
+            return this;
+        }
+
+        /**
+         * Turns the compact binary contacts format on/off. Contacts are uploaded as vCards
+         * in JSON by default. The compact format is smaller and faster to encode, and sent to
+         * a separate endpoint which the server must support. Changing this option changes the
+         * uploaded records, so every contact is uploaded once more after the change.
+         * @param compact Should upload contacts in the compact format
+         */
+        public Builder withCompactFormat(boolean compact) {
+            this.isCompactFormatEnabled = compact;
+            return this;
+        }
+
+        /**
+         * Set the number of threads encoding contacts while the address book is read. Defaults
+         * to the number of processors, up to 4. Encoding runs alongside the upload of earlier
+         * pages either way.
+         * @param threads Number of encoding threads, 1 to encode on the reading thread
+         */
+        public Builder withEncodingThreads(int threads) {
+            this.encodingThreads = threads;
+            return this;
+        }
+
+        /**
+         * Returns ContactsUploadConfig constructed using the builder.
+         */
+        public ContactsUploadConfig build() {
+            if (compressionThresholdBytes < 0) {
+                throw new IllegalArgumentException("Compression threshold must not be negative");
+            }
+
+            if (concurrency < 1) {
+                throw new IllegalArgumentException("Concurrency must be at least 1");
+            }
+
+            if (maxQueuedPages < 0) {
+                throw new IllegalArgumentException("Max queued pages must not be negative");
+            }
+
+            if (pageTimeoutMillis <= 0) {
+                throw new IllegalArgumentException("Page timeout must be positive");
+            }
+
+            if (maxRetries < 0) {
+                throw new IllegalArgumentException("Max retries must not be negative");
+            }
+
+            if (encodingThreads < 1) {
+                throw new IllegalArgumentException("Encoding threads must be at least 1");
+            }
+
+            return new ContactsUploadConfig(isCompressionEnabled, compressionThresholdBytes,
+                    concurrency, maxQueuedPages, pageTimeoutMillis, maxRetries,
+                    normalizesPhoneNumbers, isCompactFormatEnabled, encodingThreads);
+        }
+    }
+}
@@ -70,6 +70,11 @@ public class ContactsUploadFailureResult implements Parcelable {
      */
     public final Summary summary;
 
+    /**
+     * Number of times failed upload requests were retried before giving up
+     */
+    public final int retryCount;
+
     public static ContactsUploadFailureResult create(Exception exception) {
         final List<Exception> exceptions = new ArrayList<>();
         exceptions.add(exception);
@@ -77,21 +82,32 @@ public class ContactsUploadFailureResult implements Parcelable {
     }
 
     public static ContactsUploadFailureResult create(List<Exception> exceptions) {
-        return new ContactsUploadFailureResult(summarize(exceptions));
+        return create(exceptions, 0);
+    }
+
+    static ContactsUploadFailureResult create(List<Exception> exceptions, int retryCount) {
+        return new ContactsUploadFailureResult(summarize(exceptions), retryCount);
     }
 
     public ContactsUploadFailureResult(Summary summary) {
+        this(summary, 0);
+    }
+
+    ContactsUploadFailureResult(Summary summary, int retryCount) {
         this.summary = summary;
+        this.retryCount = retryCount;
     }
 
     protected ContactsUploadFailureResult(Parcel in) {
         final int ordinal = in.readInt();
         summary = Summary.values()[ordinal];
+        retryCount = in.readInt();
     }
 
     @Override
     public void writeToParcel(Parcel dest, int flags) {
         dest.writeInt(summary.ordinal());
+        dest.writeInt(retryCount);
     }
 
     /**
@@ -133,6 +149,24 @@ public class ContactsUploadFailureResult implements Parcelable {
                 if (status == 503) {
                     return Summary.SERVER_UNAVAILABLE;
                 }
+                // statuses without a more specific error code
+                switch (ContactsUploadRetryPolicy.classify(retrofitError)) {
+                    case AUTH:
+                        return Summary.BAD_AUTHENTICATION;
+                    case CLIENT:
+                        return Summary.BAD_REQUEST;
+                    case TRANSIENT:
+                        if (status == 429) {
+                            return Summary.RATE_LIMIT;
+                        }
+                        if (status == 408) {
+                            return Summary.NETWORK;
+                        }
+                        return status == 502 || status == 504
+                                ? Summary.SERVER_UNAVAILABLE : Summary.INTERNAL_SERVER;
+                    default:
+                        break;
+                }
             // local api-related errors
             } else if (retrofitError.getKind().equals(RetrofitError.Kind.NETWORK)) {
                 return Summary.NETWORK;
@@ -197,6 +231,7 @@ public class ContactsUploadFailureResult implements Parcelable {
     public String toString() {
         return "ContactsUploadFailureResult{" +
                 "summary=" + summary +
+                ", retryCount=" + retryCount +
                 '}';
     }
 }
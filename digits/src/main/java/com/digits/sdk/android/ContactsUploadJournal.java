@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.android;
+
+import android.content.Context;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import io.fabric.sdk.android.Fabric;
+import io.fabric.sdk.android.services.common.CommonUtils;
+
+/**
+ * Append-only journal of the pages uploaded by a contacts upload that has not completed yet.
+ * Every uploaded page is synced to disk as one checksummed record of the lookup keys and
+ * fingerprints of its accepted and rejected contacts, so an upload restarted after the process
+ * was killed skips the pages that already succeeded. A torn record at the end of the journal is
+ * dropped.
+ * <p>
+ * The journal is tied to the contacts upload generation, which changes whenever uploaded
+ * contacts are deleted, so pages uploaded before a deletion are never skipped afterwards.
+ */
+class ContactsUploadJournal {
+    static final String FILE_NAME = "com.digits.sdk.android.contacts_upload_journal";
+    private static final int VERSION = 2;
+    // VERSION and generation
+    private static final int HEADER_BYTES = 8;
+
+    private final Context context;
+    private FileOutputStream out;
+
+    ContactsUploadJournal(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * Marks the pages recorded by an interrupted upload of the same generation as uploaded in
+     * the given index, and opens the journal for the pages of this upload.
+     *
+     * @return number of contacts restored from the journal
+     */
+    synchronized int resume(int generation, ContactsFingerprintIndex index) {
+        close();
+        final File file = getFile();
+        int restored = 0;
+        long validLength = 0;
+        if (file.exists()) {
+            final List<EncodedContact> uploaded = new ArrayList<>();
+            final List<EncodedContact> rejected = new ArrayList<>();
+            validLength = replay(file, generation, uploaded, rejected);
+            index.markUploaded(uploaded);
+            index.markRejected(rejected);
+            restored = uploaded.size() + rejected.size();
+        }
+
+        try {
+            if (validLength == 0) {
+                out = new FileOutputStream(file);
+                final DataOutputStream header = new DataOutputStream(out);
+                header.writeInt(VERSION);
+                header.writeInt(generation);
+            } else {
+                truncate(file, validLength);
+                out = new FileOutputStream(file, true);
+            }
+            out.getFD().sync();
+        } catch (IOException e) {
+            Fabric.getLogger().e(Digits.TAG, "Failed to open contacts upload journal", e);
+            close();
+        }
+        return restored;
+    }
+
+    /**
+     * Durably records an uploaded page. Does nothing if the journal is not open.
+     *
+     * @param uploaded contacts accepted by the server
+     * @param rejected contacts rejected by the server
+     */
+    synchronized void append(Collection<EncodedContact> uploaded,
+                             Collection<EncodedContact> rejected) {
+        if (out == null) {
+            return;
+        }
+
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final DataOutputStream record = new DataOutputStream(bytes);
+            writeContacts(record, uploaded);
+            writeContacts(record, rejected);
+            record.close();
+
+            final CRC32 crc = new CRC32();
+            crc.update(bytes.toByteArray());
+            final DataOutputStream data = new DataOutputStream(out);
+            data.writeInt(bytes.size());
+            bytes.writeTo(data);
+            data.writeLong(crc.getValue());
+            data.flush();
+            out.getFD().sync();
+        } catch (IOException e) {
+            Fabric.getLogger().e(Digits.TAG, "Failed to write contacts upload journal", e);
+            close();
+        }
+    }
+
+    synchronized void close() {
+        CommonUtils.closeOrLog(out, "Failed to close contacts upload journal");
+        out = null;
+    }
+
+    /**
+     * Closes and deletes the journal once the upload has completed.
+     */
+    synchronized void clear() {
+        close();
+        final File file = getFile();
+        if (file.exists() && !file.delete()) {
+            Fabric.getLogger().w(Digits.TAG, "Failed to delete contacts upload journal");
+        }
+    }
+
+    File getFile() {
+        return new File(context.getFilesDir(), FILE_NAME);
+    }
+
+    /**
+     * Reads the complete records of the journal into the given lists.
+     *
+     * @return length of the valid part of the journal, or 0 if it must be started over
+     */
+    private static long replay(File file, int generation, List<EncodedContact> uploaded,
+                               List<EncodedContact> rejected) {
+        DataInputStream in = null;
+        long validLength = 0;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != VERSION || in.readInt() != generation) {
+                return 0;
+            }
+            validLength = HEADER_BYTES;
+
+            final CRC32 crc = new CRC32();
+            while (true) {
+                final int length = in.readInt();
+                if (length < 0 || length > file.length() - validLength) {
+                    break;
+                }
+                final byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                crc.reset();
+                crc.update(bytes);
+                if (in.readLong() != crc.getValue()) {
+                    break;
+                }
+
+                final DataInputStream record =
+                        new DataInputStream(new ByteArrayInputStream(bytes));
+                readContacts(record, uploaded);
+                readContacts(record, rejected);
+                validLength += 4 + length + 8;
+            }
+        } catch (EOFException e) {
+            // Torn record written while the process was killed.
+        } catch (IOException e) {
+            Fabric.getLogger().e(Digits.TAG, "Failed to read contacts upload journal", e);
+        } finally {
+            CommonUtils.closeOrLog(in, "Failed to close contacts upload journal");
+        }
+        return validLength;
+    }
+
+    private static void writeContacts(DataOutputStream record,
+                                      Collection<EncodedContact> contacts) throws IOException {
+        record.writeInt(contacts.size());
+        for (EncodedContact contact : contacts) {
+            record.writeUTF(contact.lookupKey);
+            record.writeLong(contact.fingerprint);
+        }
+    }
+
+    private static void readContacts(DataInputStream record, List<EncodedContact> contacts)
+            throws IOException {
+        final int count = record.readInt();
+        for (int i = 0; i < count; i++) {
+            final String lookupKey = record.readUTF();
+            contacts.add(new EncodedContact(lookupKey, null, record.readLong()));
+        }
+    }
+
+    private static void truncate(File file, long length) throws IOException {
+        if (file.length() == length) {
+            return;
+        }
+
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "rw");
+            raf.setLength(length);
+        } finally {
+            CommonUtils.closeOrLog(raf, "Failed to close contacts upload journal");
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.android;
+
+/**
+ * Decides how many contacts go into each upload page. Pages are limited by a byte budget that
+ * follows the throughput of previous pages, so that a page takes about
+ * {@link #TARGET_PAGE_MILLIS} to upload. The budget grows on fast networks, is halved after a
+ * network failure, and pages never hold more than {@link #MAX_PAGE_SIZE} contacts.
+ */
+class ContactsUploadPagePlanner {
+    // Maximum number of vCards accepted by the upload endpoint.
+    static final int MAX_PAGE_SIZE = 100;
+    static final int MIN_PAGE_BYTES = 2 * 1024;
+    static final int MAX_PAGE_BYTES = 512 * 1024;
+    static final int INITIAL_PAGE_BYTES = 16 * 1024;
+    static final long TARGET_PAGE_MILLIS = 3000;
+    // Limits how fast the budget grows from a single measurement.
+    private static final int MAX_GROWTH_FACTOR = 2;
+
+    private int pageBytes;
+
+    ContactsUploadPagePlanner() {
+        this(INITIAL_PAGE_BYTES);
+    }
+
+    ContactsUploadPagePlanner(int pageBytes) {
+        this.pageBytes = pageBytes;
+    }
+
+    synchronized int getPageBytes() {
+        return pageBytes;
+    }
+
+    /**
+     * @return true if a page holding the given number of contacts and bytes must be sent
+     */
+    synchronized boolean isFull(int size, long bytes) {
+        return size >= MAX_PAGE_SIZE || bytes >= pageBytes;
+    }
+
+    synchronized void onPageUploaded(long bytes, long elapsedMillis) {
+        if (bytes <= 0) {
+            return;
+        }
+
+        final long targetBytes = bytes * TARGET_PAGE_MILLIS / Math.max(elapsedMillis, 1);
+        pageBytes = clamp(Math.min(targetBytes, (long) pageBytes * MAX_GROWTH_FACTOR));
+    }
+
+    synchronized void onPageFailed() {
+        pageBytes = clamp(pageBytes / 2);
+    }
+
+    private static int clamp(long bytes) {
+        return (int) Math.max(MIN_PAGE_BYTES, Math.min(MAX_PAGE_BYTES, bytes));
+    }
+}
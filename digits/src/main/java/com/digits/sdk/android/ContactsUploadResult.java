@@ -20,21 +20,49 @@ package com.digits.sdk.android;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Result of contacts upload service
  */
 public class ContactsUploadResult implements Parcelable {
+    static final int MAX_REJECTED_CONTACTS = 100;
+
     public final int successCount;
     public final int totalCount;
 
+    /**
+     * Number of contacts rejected by the server, including unchanged contacts rejected by a
+     * previous upload, which are not sent again.
+     */
+    public final int rejectedCount;
+
+    /**
+     * Contacts rejected by this upload. Limited to {@link #MAX_REJECTED_CONTACTS} entries.
+     */
+    public final List<RejectedContact> rejectedContacts;
+
     ContactsUploadResult(int successCount, int totalCount) {
+        this(successCount, totalCount, 0, Collections.<RejectedContact>emptyList());
+    }
+
+    ContactsUploadResult(int successCount, int totalCount, int rejectedCount,
+                         List<RejectedContact> rejectedContacts) {
         this.successCount = successCount;
         this.totalCount = totalCount;
+        this.rejectedCount = rejectedCount;
+        this.rejectedContacts = Collections.unmodifiableList(
+                new ArrayList<>(rejectedContacts));
     }
 
     ContactsUploadResult(Parcel parcel) {
         this.successCount = parcel.readInt();
         this.totalCount = parcel.readInt();
+        this.rejectedCount = parcel.readInt();
+        this.rejectedContacts = Collections.unmodifiableList(
+                parcel.createTypedArrayList(RejectedContact.CREATOR));
     }
 
     @Override
@@ -46,6 +74,8 @@ public class ContactsUploadResult implements Parcelable {
     public void writeToParcel(Parcel parcel, int flags) {
         parcel.writeInt(successCount);
         parcel.writeInt(totalCount);
+        parcel.writeInt(rejectedCount);
+        parcel.writeTypedList(rejectedContacts);
     }
 
     public static final Parcelable.Creator<ContactsUploadResult> CREATOR
@@ -58,4 +88,49 @@ public class ContactsUploadResult implements Parcelable {
             return new ContactsUploadResult[size];
         }
     };
+
+    /**
+     * A contact the server refused to store, identified by its
+     * {@link android.provider.ContactsContract.Contacts#LOOKUP_KEY}.
+     */
+    public static class RejectedContact implements Parcelable {
+        public final String lookupKey;
+        public final int errorCode;
+        public final String errorMessage;
+
+        RejectedContact(String lookupKey, int errorCode, String errorMessage) {
+            this.lookupKey = lookupKey;
+            this.errorCode = errorCode;
+            this.errorMessage = errorMessage;
+        }
+
+        RejectedContact(Parcel parcel) {
+            this.lookupKey = parcel.readString();
+            this.errorCode = parcel.readInt();
+            this.errorMessage = parcel.readString();
+        }
+
+        @Override
+        public int describeContents() {
+            return 0;
+        }
+
+        @Override
+        public void writeToParcel(Parcel parcel, int flags) {
+            parcel.writeString(lookupKey);
+            parcel.writeInt(errorCode);
+            parcel.writeString(errorMessage);
+        }
+
+        public static final Parcelable.Creator<RejectedContact> CREATOR
+                = new Parcelable.Creator<RejectedContact>() {
+            public RejectedContact createFromParcel(Parcel in) {
+                return new RejectedContact(in);
+            }
+
+            public RejectedContact[] newArray(int size) {
+                return new RejectedContact[size];
+            }
+        };
+    }
 }
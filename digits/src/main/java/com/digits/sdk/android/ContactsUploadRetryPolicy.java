@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.android;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import retrofit.RetrofitError;
+import retrofit.client.Header;
+import retrofit.client.Response;
+
+/**
+ * Decides whether and when a failed upload page is retried. Network errors, rate limiting
+ * and server errors are retried with exponential backoff and full jitter, or after the delay
+ * requested by a Retry-After header. Client and authentication errors are not retried, since
+ * sending the same request again would fail the same way.
+ */
+class ContactsUploadRetryPolicy {
+    enum ErrorType {
+        /** No response, eg connection reset */
+        NETWORK,
+        /** 408, 429 or 5xx */
+        TRANSIENT,
+        /** 401 or 403 */
+        AUTH,
+        /** Any other 4xx */
+        CLIENT,
+        /** Unreadable response or unexpected failure */
+        UNEXPECTED
+    }
+
+    static final String RETRY_AFTER_HEADER = "Retry-After";
+    static final long DEFAULT_BASE_DELAY_MILLIS = 1000;
+    static final long DEFAULT_MAX_DELAY_MILLIS = 16000;
+    // Longer server requested delays would outlast the page deadline
+    static final long MAX_RETRY_AFTER_MILLIS = 30000;
+    private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+    private final int maxRetries;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final Random random;
+
+    ContactsUploadRetryPolicy(int maxRetries) {
+        this(maxRetries, DEFAULT_BASE_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS, new Random());
+    }
+
+    /*
+     * Testing only
+     */
+    ContactsUploadRetryPolicy(int maxRetries, long baseDelayMillis, long maxDelayMillis,
+                              Random random) {
+        this.maxRetries = maxRetries;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.random = random;
+    }
+
+    static ErrorType classify(RetrofitError error) {
+        if (error.getKind() == RetrofitError.Kind.NETWORK) {
+            return ErrorType.NETWORK;
+        }
+        if (error.getKind() != RetrofitError.Kind.HTTP || error.getResponse() == null) {
+            return ErrorType.UNEXPECTED;
+        }
+
+        final int status = error.getResponse().getStatus();
+        if (status == 408 || status == 429 || (status >= 500 && status < 600)) {
+            return ErrorType.TRANSIENT;
+        }
+        if (status == 401 || status == 403) {
+            return ErrorType.AUTH;
+        }
+        if (status >= 400 && status < 500) {
+            return ErrorType.CLIENT;
+        }
+        return ErrorType.UNEXPECTED;
+    }
+
+    static boolean isRetryable(ErrorType type) {
+        return type == ErrorType.NETWORK || type == ErrorType.TRANSIENT;
+    }
+
+    /**
+     * @param error failure of the latest attempt
+     * @param retryCount number of retries already made for the page
+     * @return milliseconds to wait before retrying, or -1 if the page must not be retried
+     */
+    long getRetryDelayMillis(RetrofitError error, int retryCount) {
+        if (retryCount >= maxRetries || !isRetryable(classify(error))) {
+            return -1;
+        }
+
+        final long retryAfter = getRetryAfterMillis(error.getResponse(),
+                System.currentTimeMillis());
+        if (retryAfter > MAX_RETRY_AFTER_MILLIS) {
+            return -1;
+        }
+        if (retryAfter >= 0) {
+            return retryAfter;
+        }
+
+        // Full jitter spreads out the retries of clients that failed at the same time.
+        final long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(retryCount, 20));
+        return ceiling <= 0 ? 0 : (long) (random.nextDouble() * ceiling);
+    }
+
+    /**
+     * Reads a Retry-After header given in either delay seconds or as an HTTP date.
+     *
+     * @return delay in milliseconds, or -1 if the response has no valid Retry-After header
+     */
+    static long getRetryAfterMillis(Response response, long now) {
+        if (response == null || response.getHeaders() == null) {
+            return -1;
+        }
+
+        for (Header header : response.getHeaders()) {
+            if (!RETRY_AFTER_HEADER.equalsIgnoreCase(header.getName())
+                    || header.getValue() == null) {
+                continue;
+            }
+
+            final String value = header.getValue().trim();
+            try {
+                final long seconds = Long.parseLong(value);
+                return Math.max(0, Math.min(seconds, Integer.MAX_VALUE) * 1000);
+            } catch (NumberFormatException e) {
+                // Not delay seconds, try an HTTP date
+            }
+            try {
+                final SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US);
+                format.setTimeZone(TimeZone.getTimeZone("GMT"));
+                final Date date = format.parse(value);
+                return Math.max(0, date.getTime() - now);
+            } catch (ParseException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.android;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.fabric.sdk.android.Fabric;
+
+/**
+ * Runs upload pages on a fixed number of threads. At most {@code maxQueuedPages} pages wait
+ * behind the running ones, after which {@link #submit(Runnable)} blocks, so pages are produced
+ * no faster than they are uploaded. Every page gets its own deadline, counted from the moment
+ * it starts running, and is interrupted once the deadline passes. A page keeps its slot until
+ * its runnable has returned, even when it ignores the interrupt.
+ */
+class ContactsUploadScheduler {
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService watchdog;
+    private final Semaphore slots;
+    private final long pageTimeoutMillis;
+    private final List<PageTask> tasks = new ArrayList<>();
+    private boolean isShutdown;
+
+    ContactsUploadScheduler(ContactsUploadConfig config) {
+        this(config.concurrency, config.maxQueuedPages, config.pageTimeoutMillis);
+    }
+
+    ContactsUploadScheduler(int concurrency, int maxQueuedPages, long pageTimeoutMillis) {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(concurrency, concurrency,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        executor.allowCoreThreadTimeOut(true);
+        final ScheduledThreadPoolExecutor watchdog = new ScheduledThreadPoolExecutor(1);
+        watchdog.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        watchdog.allowCoreThreadTimeOut(true);
+
+        this.executor = executor;
+        this.watchdog = watchdog;
+        this.slots = new Semaphore(concurrency + maxQueuedPages);
+        this.pageTimeoutMillis = pageTimeoutMillis;
+    }
+
+    /**
+     * Schedules a page, waiting for a free slot if too many pages are pending.
+     *
+     * @return false if the scheduler was shut down or the calling thread interrupted
+     */
+    boolean submit(Runnable page) {
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        final PageTask task = new PageTask(page);
+        synchronized (tasks) {
+            if (isShutdown) {
+                slots.release();
+                return false;
+            }
+            tasks.add(task);
+            executor.execute(task);
+        }
+        return true;
+    }
+
+    /**
+     * Waits until every submitted page has finished, timed out or been cancelled, and its
+     * runnable has returned, so no page records its result after this method returns.
+     *
+     * @return true if every page ran to completion before its deadline
+     */
+    boolean awaitCompletion() {
+        final List<PageTask> pending;
+        synchronized (tasks) {
+            pending = new ArrayList<>(tasks);
+            tasks.clear();
+        }
+
+        boolean completed = true;
+        for (PageTask task : pending) {
+            try {
+                try {
+                    task.get();
+                } catch (CancellationException e) {
+                    completed = false;
+                } catch (ExecutionException e) {
+                    Fabric.getLogger().e(Digits.TAG, "Contacts upload page failed",
+                            e.getCause());
+                    completed = false;
+                }
+                // A page that timed out may still be running, if it did not stop when it was
+                // interrupted.
+                task.awaitFinished();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+                return false;
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * Interrupts running pages and drops queued ones. Pages submitted afterwards run normally.
+     */
+    void cancel() {
+        final List<PageTask> pending;
+        synchronized (tasks) {
+            pending = new ArrayList<>(tasks);
+            tasks.clear();
+        }
+        for (PageTask task : pending) {
+            task.cancel(true);
+        }
+    }
+
+    /**
+     * Cancels all pages, rejects further pages and stops the upload threads.
+     */
+    void shutdown() {
+        synchronized (tasks) {
+            isShutdown = true;
+        }
+        cancel();
+        executor.shutdownNow();
+        watchdog.shutdownNow();
+    }
+
+    private class PageTask extends FutureTask<Void> {
+        private final AtomicBoolean started = new AtomicBoolean();
+        private final CountDownLatch finished = new CountDownLatch(1);
+
+        PageTask(Runnable page) {
+            super(page, null);
+        }
+
+        @Override
+        public void run() {
+            if (!started.compareAndSet(false, true)) {
+                // Cancelled before it started, done() already finished the page.
+                return;
+            }
+
+            Future<?> deadline = null;
+            try {
+                deadline = watchdog.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (cancel(true)) {
+                            Fabric.getLogger().w(Digits.TAG, "Contacts upload page timed out");
+                        }
+                    }
+                }, pageTimeoutMillis, TimeUnit.MILLISECONDS);
+                super.run();
+            } catch (RejectedExecutionException e) {
+                // The scheduler was shut down, which already cancelled this page.
+            } finally {
+                if (deadline != null) {
+                    deadline.cancel(false);
+                }
+                finish();
+            }
+        }
+
+        @Override
+        protected void done() {
+            // Called exactly once, whether the page completed, failed or was cancelled. A page
+            // that already started is finished once its runnable returns.
+            if (started.compareAndSet(false, true)) {
+                finish();
+            }
+        }
+
+        void awaitFinished() throws InterruptedException {
+            finished.await();
+        }
+
+        private void finish() {
+            slots.release();
+            finished.countDown();
+        }
+    }
+}
@@ -23,24 +23,23 @@ import android.database.Cursor;
 
 import com.twitter.sdk.android.core.TwitterApiException;
 
+import java.net.SocketTimeoutException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import io.fabric.sdk.android.Fabric;
 import io.fabric.sdk.android.Logger;
-import io.fabric.sdk.android.services.concurrency.internal.DefaultRetryPolicy;
-import io.fabric.sdk.android.services.concurrency.internal.ExponentialBackoff;
-import io.fabric.sdk.android.services.concurrency.internal.RetryThreadPoolExecutor;
 import retrofit.RetrofitError;
 import retrofit.client.Response;
 
 public class ContactsUploadService extends IntentService {
     private static final String THREAD_NAME = "UPLOAD_WORKER";
-    private static final int TIMEOUT_IN_SECONDS = 300;
     public static final String UPLOAD_COMPLETE = "com.digits.sdk.android.UPLOAD_COMPLETE";
     public static final String UPLOAD_COMPLETE_EXTRA = "com.digits.sdk.android.UPLOAD_COMPLETE_EXTRA";
     public static final String UPLOAD_FAILED = "com.digits.sdk.android.UPLOAD_FAILED";
@@ -49,27 +48,33 @@ public class ContactsUploadService extends IntentService {
             "contact upload error, exception=%s";
     public static final String RETROFIT_ERROR_LOG_FORMAT =
             "contact upload error, status=%d, errorCode=%d, errorMessage=%s";
-    private static final int MAX_RETRIES = 1;
-    private static final int CORE_THREAD_POOL_SIZE = 2;
-    private static final int INITIAL_BACKOFF_MS = 1000;
-    private static final int MAX_PAGE_SIZE = 100;
+    static final String RETRY_LOG_FORMAT = "contact upload retry %d in %d ms";
+    static final String PAGE_TIMEOUT_MESSAGE = "contact upload page timed out";
     private DigitsApiClientManager clientManager;
     private DigitsEventCollector digitsEventCollector;
     private ContactsHelper helper;
     private ContactsPreferenceManager prefManager;
-    private RetryThreadPoolExecutor executor;
+    private ContactsFingerprintIndex fingerprintIndex;
+    private ContactsUploadJournal journal;
+    private ContactsUploadConfig uploadConfig;
+    private ContactsUploadPagePlanner pagePlanner;
+    private ContactsUploadScheduler scheduler;
+    private ContactsUploadRetryPolicy retryPolicy;
     private Logger logger;
     private Locale locale;
 
     public ContactsUploadService() {
         super(THREAD_NAME);
 
+        final ContactsUploadConfig uploadConfig = Digits.getInstance().getContactsUploadConfig();
         init(Digits.getInstance().getApiClientManager(),
-                new ContactsHelper(this),
+                new ContactsHelper(this, uploadConfig),
                 new ContactsPreferenceManager(),
-                new RetryThreadPoolExecutor(CORE_THREAD_POOL_SIZE,
-                        new DefaultRetryPolicy(MAX_RETRIES),
-                        new ExponentialBackoff(INITIAL_BACKOFF_MS)),
+                new ContactsFingerprintIndex(this),
+                new ContactsUploadJournal(this),
+                uploadConfig,
+                new ContactsUploadScheduler(uploadConfig),
+                new ContactsUploadRetryPolicy(uploadConfig.maxRetries),
                 Fabric.getLogger(), Locale.getDefault(),
                 Digits.getInstance().getDigitsEventCollector());
     }
@@ -78,21 +83,36 @@ public class ContactsUploadService extends IntentService {
      * Testing only
      */
     ContactsUploadService(DigitsApiClientManager clientManager, ContactsHelper helper,
-                          ContactsPreferenceManager prefManager, RetryThreadPoolExecutor executor,
-                          Logger logger, Locale locale,
+                          ContactsPreferenceManager prefManager,
+                          ContactsFingerprintIndex fingerprintIndex,
+                          ContactsUploadJournal journal,
+                          ContactsUploadConfig uploadConfig,
+                          ContactsUploadScheduler scheduler,
+                          ContactsUploadRetryPolicy retryPolicy, Logger logger, Locale locale,
                           DigitsEventCollector digitsEventCollector) {
         super(THREAD_NAME);
 
-        init(clientManager, helper, prefManager, executor, logger, locale, digitsEventCollector);
+        init(clientManager, helper, prefManager, fingerprintIndex, journal, uploadConfig, scheduler,
+                retryPolicy, logger, locale, digitsEventCollector);
     }
 
     private void init(DigitsApiClientManager clientManager, ContactsHelper helper,
-              ContactsPreferenceManager prefManager, RetryThreadPoolExecutor executor,
-                      Logger logger, Locale locale, DigitsEventCollector digitsEventCollector) {
+                      ContactsPreferenceManager prefManager,
+                      ContactsFingerprintIndex fingerprintIndex,
+                      ContactsUploadJournal journal,
+                      ContactsUploadConfig uploadConfig,
+                      ContactsUploadScheduler scheduler,
+                      ContactsUploadRetryPolicy retryPolicy, Logger logger, Locale locale,
+                      DigitsEventCollector digitsEventCollector) {
         this.clientManager = clientManager;
         this.helper = helper;
         this.prefManager = prefManager;
-        this.executor = executor;
+        this.fingerprintIndex = fingerprintIndex;
+        this.journal = journal;
+        this.uploadConfig = uploadConfig;
+        this.pagePlanner = new ContactsUploadPagePlanner();
+        this.scheduler = scheduler;
+        this.retryPolicy = retryPolicy;
         this.logger = logger;
         this.locale = locale;
         this.digitsEventCollector = digitsEventCollector;
@@ -103,87 +123,155 @@ public class ContactsUploadService extends IntentService {
     @Override
     protected void onHandleIntent(Intent intent) {
         prefManager.setContactImportPermissionGranted();
-        int totalCount = 0;
-        final AtomicInteger successCount = new AtomicInteger(0);
+        final PageUploader uploader = new PageUploader();
 
         //noinspection TryWithIdenticalCatches
         try {
-            final List<String> allCards = getAllCards();
-            totalCount = allCards.size();
-            final int pages = getNumberOfPages(totalCount);
-            final List<Exception> retrofitErrors = Collections.synchronizedList(
-                    new ArrayList<Exception>());
-            for (int i = 0; i < pages; i++) {
-                final int startIndex = i * MAX_PAGE_SIZE;
-                final int endIndex = Math.min(totalCount, startIndex +
-                        MAX_PAGE_SIZE);
-
-                final List<String> subList = allCards.subList(startIndex, endIndex);
-                final Vcards vCards = new Vcards(subList);
-                executor.scheduleWithRetry(new Runnable() {
-                    @Override
-                    public void run() {
-                        try {
-                            clientManager.getApiClient().getService().upload(vCards);
-                            successCount.addAndGet(vCards.vcards.size());
-                        } catch (RetrofitError retrofitError) {
-                            log(retrofitError);
-                            retrofitErrors.add(retrofitError);
-                        }
-                    }
-                });
-            }
+            prepareFingerprintIndex();
+            journal.resume(prefManager.getContactsUploadGeneration(), fingerprintIndex);
+            final boolean completed = readContacts(uploader) && uploader.flush();
 
-            executor.shutdown();
-            final boolean success = executor.awaitTermination(TIMEOUT_IN_SECONDS, TimeUnit.SECONDS);
+            // Always wait for the scheduled pages, so their results are recorded even when
+            // reading stopped early.
+            final boolean success = scheduler.awaitCompletion() && completed;
+            if (completed) {
+                fingerprintIndex.retain(uploader.lookupKeys);
+            }
+            fingerprintIndex.save();
 
-            if (success && successCount.get() > 0) {
+            final int totalCount = uploader.totalCount;
+            final int successCount = uploader.successCount.get();
+            final int rejectedCount = uploader.rejectedCount.get();
+            if (success && successCount > 0) {
                 prefManager.setContactsReadTimestamp(System.currentTimeMillis());
-                prefManager.setContactsUploaded(successCount.get());
+                prefManager.setContactsUploaded(successCount);
+                // Uploaded fingerprints are saved in the index, the journal is no longer needed.
+                journal.clear();
                 digitsEventCollector.succeedContactsUpload(
-                        new ContactsUploadSuccessDetails(totalCount, successCount.get()));
-                sendSuccessBroadcast(new ContactsUploadResult(successCount.get(), totalCount));
+                        new ContactsUploadSuccessDetails(totalCount, successCount));
+                sendSuccessBroadcast(new ContactsUploadResult(successCount, totalCount,
+                        rejectedCount, uploader.getRejectedContacts()));
             } else {
-                final int failedCount = totalCount - successCount.get();
+                final int failedCount = totalCount - successCount;
                 digitsEventCollector.failedContactsUpload(
                         new ContactsUploadFailureDetails(totalCount, failedCount));
                 if (totalCount == 0) {
                     sendFailureBroadcast(new ContactsUploadFailureResult(
                             ContactsUploadFailureResult.Summary.NO_CONTACTS_FOUND));
                 } else if (!success) {
-                    executor.shutdownNow();
-                    sendFailureBroadcast(ContactsUploadFailureResult.create(retrofitErrors));
-                } else if (successCount.get() == 0) {
-                    sendFailureBroadcast(ContactsUploadFailureResult.create(retrofitErrors));
+                    sendFailureBroadcast(ContactsUploadFailureResult.create(
+                            uploader.retrofitErrors, uploader.retryCount.get()));
+                } else if (successCount == 0 && uploader.retrofitErrors.isEmpty()
+                        && rejectedCount > 0) {
+                    sendFailureBroadcast(new ContactsUploadFailureResult(
+                            ContactsUploadFailureResult.Summary.BAD_REQUEST,
+                            uploader.retryCount.get()));
+                } else if (successCount == 0) {
+                    sendFailureBroadcast(ContactsUploadFailureResult.create(
+                            uploader.retrofitErrors, uploader.retryCount.get()));
                 }
             }
         } catch (Exception ex) {
+            scheduler.cancel();
             log(ex);
-            final int failedCount = totalCount - successCount.get();
+            final int failedCount = uploader.totalCount - uploader.successCount.get();
             digitsEventCollector.failedContactsUpload(
-                    new ContactsUploadFailureDetails(totalCount, failedCount));
+                    new ContactsUploadFailureDetails(uploader.totalCount, failedCount));
             sendFailureBroadcast(ContactsUploadFailureResult.create(ex));
+        } finally {
+            journal.close();
         }
     }
 
-    int getNumberOfPages(int numCards) {
-        return (numCards + MAX_PAGE_SIZE - 1) / MAX_PAGE_SIZE;
+    @Override
+    public void onDestroy() {
+        scheduler.shutdown();
+        super.onDestroy();
     }
 
-    private List<String> getAllCards() {
+    private boolean readContacts(ContactsHelper.ContactsConsumer consumer) {
         Cursor cursor = null;
-        List<String> allCards = Collections.<String>emptyList();
 
         try {
             cursor = helper.getContactsCursor();
-            allCards = helper.createContactList(cursor);
+            return helper.readContacts(cursor, consumer);
         } finally {
             if (cursor != null) {
                 cursor.close();
             }
         }
+    }
 
-        return allCards;
+    /**
+     * Forgets every uploaded fingerprint when no upload has completed yet, uploaded contacts
+     * have been deleted, or the contacts were uploaded by another user, so that all contacts
+     * are sent again.
+     */
+    private void prepareFingerprintIndex() {
+        final DigitsSession session = clientManager.getApiClient().getSession();
+        if (session != null && session.getId() != prefManager.getContactsUploadUserId()) {
+            // Also starts a new generation, so the journal of the other user is dropped.
+            prefManager.resetContactsUpload(session.getId());
+        }
+        if (prefManager.getContactsReadTimestamp() == 0) {
+            fingerprintIndex.clear();
+        } else {
+            fingerprintIndex.load();
+        }
+    }
+
+    /**
+     * Uploads a page of contacts to the endpoint of its format. The Content-Encoding header is
+     * omitted when the body is not compressed.
+     */
+    UploadResponse upload(ContactsUploadBody body) {
+        return body.upload(clientManager.getApiClient().getService());
+    }
+
+    /**
+     * Uploads a page, retrying failures that the retry policy considers transient. The duration
+     * of the successful attempt is reported to the page planner, and so is the duration of an
+     * attempt cut short by the page deadline, which is a lower bound of the time the page
+     * takes. Other failed attempts and the waits before retries say nothing about the
+     * throughput of the network.
+     *
+     * @param bytes      size of the page
+     * @param retryCount incremented for every retry and for an attempt that timed out
+     * @throws RetrofitError the failure of the last attempt
+     * @throws InterruptedException the page deadline passed or the upload was cancelled
+     */
+    UploadResponse uploadWithRetry(ContactsUploadBody body, long bytes, AtomicInteger retryCount)
+            throws InterruptedException {
+        int retries = 0;
+        while (true) {
+            final long startTime = System.nanoTime();
+            try {
+                final UploadResponse response = upload(body);
+                onPageTimed(bytes,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+                return response;
+            } catch (RetrofitError retrofitError) {
+                if (Thread.interrupted()) {
+                    // The attempt failed because the page deadline interrupted it.
+                    onPageTimed(bytes,
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+                    retryCount.incrementAndGet();
+                    throw new InterruptedException(PAGE_TIMEOUT_MESSAGE);
+                }
+                final long delay = retryPolicy.getRetryDelayMillis(retrofitError, retries);
+                if (delay < 0) {
+                    throw retrofitError;
+                }
+                retries++;
+                retryCount.incrementAndGet();
+                logger.d(Digits.TAG, String.format(locale, RETRY_LOG_FORMAT, retries, delay));
+                Thread.sleep(delay);
+            }
+        }
+    }
+
+    void onPageTimed(long bytes, long elapsedMillis) {
+        pagePlanner.onPageUploaded(bytes, elapsedMillis);
     }
 
     void sendFailureBroadcast(ContactsUploadFailureResult extra) {
@@ -214,4 +302,135 @@ public class ContactsUploadService extends IntentService {
     private void log(Exception e) {
         logger.e(Digits.TAG, String.format(locale, EXCEPTION_LOG_FORMAT, e.toString()));
     }
+
+    /**
+     * Collects changed contacts into pages as they are read and schedules each page for upload
+     * once the {@link ContactsUploadPagePlanner} considers it full. Reading blocks while the
+     * {@link ContactsUploadScheduler} queue is full, so memory use does not grow with the size
+     * of the address book.
+     */
+    private class PageUploader implements ContactsHelper.ContactsConsumer {
+        final AtomicInteger successCount = new AtomicInteger(0);
+        final AtomicInteger retryCount = new AtomicInteger(0);
+        final AtomicInteger rejectedCount = new AtomicInteger(0);
+        final List<ContactsUploadResult.RejectedContact> rejectedContacts = new ArrayList<>();
+        final List<Exception> retrofitErrors = Collections.synchronizedList(
+                new ArrayList<Exception>());
+        final Set<String> lookupKeys = new HashSet<>();
+        List<EncodedContact> page = new ArrayList<>();
+        long pageBytes;
+        int totalCount;
+
+        @Override
+        public boolean onContact(EncodedContact contact) {
+            totalCount++;
+            lookupKeys.add(contact.lookupKey);
+            if (fingerprintIndex.isUploaded(contact)) {
+                // Unchanged contacts are already uploaded, so they count as successes.
+                successCount.incrementAndGet();
+                return true;
+            }
+            if (fingerprintIndex.isRejected(contact)) {
+                // Sending an unchanged rejected contact again would be rejected again.
+                rejectedCount.incrementAndGet();
+                return true;
+            }
+
+            page.add(contact);
+            pageBytes += contact.data.length;
+            return !pagePlanner.isFull(page.size(), pageBytes) || flush();
+        }
+
+        /**
+         * Schedules the pending page for upload.
+         *
+         * @return false if the page could not be scheduled
+         */
+        boolean flush() {
+            if (page.isEmpty()) {
+                return true;
+            }
+
+            final List<EncodedContact> contacts = page;
+            final long bytes = pageBytes;
+            page = new ArrayList<>(contacts.size());
+            pageBytes = 0;
+
+            final ContactsUploadBody body = uploadConfig.isCompactFormatEnabled
+                    ? CompactContactsBody.create(contacts, uploadConfig)
+                    : VcardsBody.create(contacts, uploadConfig);
+            return scheduler.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        final UploadResponse response = uploadWithRetry(body, bytes, retryCount);
+                        onPageUploaded(contacts, response);
+                    } catch (RetrofitError retrofitError) {
+                        if (retrofitError.getKind() == RetrofitError.Kind.NETWORK) {
+                            pagePlanner.onPageFailed();
+                        }
+                        log(retrofitError);
+                        retrofitErrors.add(retrofitError);
+                    } catch (InterruptedException e) {
+                        // The page deadline passed or the upload was cancelled. Reported like
+                        // a network failure, so the result tells the page did not get through.
+                        Thread.currentThread().interrupt();
+                        pagePlanner.onPageFailed();
+                        final RetrofitError timeoutError = RetrofitError.networkError(null,
+                                new SocketTimeoutException(PAGE_TIMEOUT_MESSAGE));
+                        log(timeoutError);
+                        retrofitErrors.add(timeoutError);
+                    }
+                }
+            });
+        }
+
+        /**
+         * Records the outcome of every contact in an uploaded page. The server reports rejected
+         * vCards by their index within the page; all other contacts were stored.
+         */
+        void onPageUploaded(List<EncodedContact> contacts, UploadResponse response) {
+            final UploadError[] errors = new UploadError[contacts.size()];
+            if (response != null && response.errors != null) {
+                for (UploadError error : response.errors) {
+                    if (error != null && error.item >= 0 && error.item < errors.length) {
+                        errors[error.item] = error;
+                    }
+                }
+            }
+
+            final List<EncodedContact> uploaded = new ArrayList<>(contacts.size());
+            final List<EncodedContact> rejected = new ArrayList<>();
+            for (int i = 0; i < errors.length; i++) {
+                final EncodedContact contact = contacts.get(i);
+                if (errors[i] == null) {
+                    uploaded.add(contact);
+                } else {
+                    rejected.add(contact);
+                    addRejectedContact(contact, errors[i]);
+                }
+            }
+
+            fingerprintIndex.markUploaded(uploaded);
+            fingerprintIndex.markRejected(rejected);
+            journal.append(uploaded, rejected);
+            successCount.addAndGet(uploaded.size());
+            rejectedCount.addAndGet(rejected.size());
+        }
+
+        private void addRejectedContact(EncodedContact contact, UploadError error) {
+            synchronized (rejectedContacts) {
+                if (rejectedContacts.size() < ContactsUploadResult.MAX_REJECTED_CONTACTS) {
+                    rejectedContacts.add(new ContactsUploadResult.RejectedContact(
+                            contact.lookupKey, error.code, error.message));
+                }
+            }
+        }
+
+        List<ContactsUploadResult.RejectedContact> getRejectedContacts() {
+            synchronized (rejectedContacts) {
+                return new ArrayList<>(rejectedContacts);
+            }
+        }
+    }
 }
@@ -58,6 +58,7 @@ public class Digits extends Kit<Void> {
     private volatile DigitsApiClientManager apiClientManager;
     private volatile DigitsClient digitsClient;
     private volatile ContactsClient contactsClient;
+    private volatile ContactsUploadConfig contactsUploadConfig;
     private SessionManager<DigitsSession> sessionManager;
     private SessionMonitor<DigitsSession> userSessionMonitor;
     private ActivityClassManager activityClassManager;
@@ -79,6 +80,7 @@ public class Digits extends Kit<Void> {
         //all expensive api clients are created in the background
         digitsScribeClient = new DigitsScribeClient();
         sandboxConfig = new SandboxConfig();
+        contactsUploadConfig = new ContactsUploadConfig.Builder().build();
 
         final HashSet<DigitsEventLogger> eventLoggers = new HashSet<>(Arrays.asList(loggers));
 
@@ -94,6 +96,10 @@ public class Digits extends Kit<Void> {
         return sandboxConfig;
     }
 
+    protected ContactsUploadConfig getContactsUploadConfig() {
+        return contactsUploadConfig;
+    }
+
 
     /**
      * Starts the authentication flow
@@ -246,6 +252,17 @@ public class Digits extends Kit<Void> {
         }
     }
 
+    /**
+     * Set the options used by subsequent contacts uploads.
+     */
+    @SuppressWarnings("UnusedDeclaration")
+    public static void setContactsUploadConfig(ContactsUploadConfig contactsUploadConfig) {
+        if (contactsUploadConfig == null) {
+            throw new IllegalArgumentException("contactsUploadConfig must not be null");
+        }
+        getInstance().contactsUploadConfig = contactsUploadConfig;
+    }
+
     @Override
     public String getVersion() {
         return BuildConfig.VERSION_NAME + "." + BuildConfig.BUILD_NUMBER;
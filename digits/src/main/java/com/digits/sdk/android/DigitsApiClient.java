@@ -20,6 +20,9 @@ package com.digits.sdk.android;
 import com.twitter.sdk.android.core.AuthenticatedClient;
 import com.twitter.sdk.android.core.TwitterCore;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 
 import javax.net.ssl.SSLSocketFactory;
@@ -29,8 +32,26 @@ import retrofit.RestAdapter;
 import retrofit.android.MainThreadExecutor;
 
 class DigitsApiClient {
+    // Executors whose services are kept, so callers passing an executor per request
+    // do not keep a RestAdapter for each of them.
+    static final int MAX_WORKER_SERVICES = 4;
+
     private final ApiInterface service;
     private final DigitsSession session;
+    private final TwitterCore twitterCore;
+    private final SSLSocketFactory sslFactory;
+    private final ExecutorService executorService;
+    private final DigitsRequestInterceptor interceptor;
+    private final ApiInterface mockInterface;
+    // Services delivering callbacks on the executors recently passed to getService(Executor),
+    // least recently used first
+    private final Map<Executor, ApiInterface> workerServices =
+            new LinkedHashMap<Executor, ApiInterface>(MAX_WORKER_SERVICES + 1, 1f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Executor, ApiInterface> eldest) {
+                    return size() > MAX_WORKER_SERVICES;
+                }
+            };
     private static final String NULL_SESSION_ERROR_LOG =
             "Attempting to connect to Digits API with null session. " +
                     "Please re-authenticate and try again";
@@ -38,9 +59,12 @@ class DigitsApiClient {
     DigitsApiClient(DigitsSession session, TwitterCore twitterCore, SSLSocketFactory sslFactory,
                     ExecutorService executorService, DigitsRequestInterceptor interceptor) {
         this.session = session;
-        final RestAdapter adapter = createAdapter(executorService, twitterCore,
-                sslFactory, interceptor);
-        this.service = adapter.create(ApiInterface.class);
+        this.twitterCore = twitterCore;
+        this.sslFactory = sslFactory;
+        this.executorService = executorService;
+        this.interceptor = interceptor;
+        this.mockInterface = null;
+        this.service = createService(new MainThreadExecutor());
     }
 
     DigitsApiClient(DigitsSession session, TwitterCore twitterCore, SSLSocketFactory sslFactory,
@@ -51,10 +75,12 @@ class DigitsApiClient {
         }
 
         this.session = session;
-        final RestAdapter adapter = createAdapter(executorService, twitterCore,
-                sslFactory, interceptor);
-        this.service = MockRestAdapter.from(adapter)
-                .create(ApiInterface.class, mockInterface);
+        this.twitterCore = twitterCore;
+        this.sslFactory = sslFactory;
+        this.executorService = executorService;
+        this.interceptor = interceptor;
+        this.mockInterface = mockInterface;
+        this.service = createService(new MainThreadExecutor());
     }
 
     public DigitsSession getSession() {
@@ -65,15 +91,45 @@ class DigitsApiClient {
         return service;
     }
 
+    /**
+     * Like {@link #getService()}, but the callbacks of asynchronous requests are executed on
+     * the given executor instead of the UI thread. The services of the
+     * {@link #MAX_WORKER_SERVICES} most recently used executors are kept, so passing the same
+     * executor again does not create another service.
+     *
+     * @param callbackExecutor executor the callbacks are executed on.
+     */
+    synchronized ApiInterface getService(Executor callbackExecutor) {
+        if (callbackExecutor == null) {
+            throw new IllegalArgumentException("callbackExecutor must not be null");
+        }
+        ApiInterface workerService = workerServices.get(callbackExecutor);
+        if (workerService == null) {
+            workerService = createService(callbackExecutor);
+            workerServices.put(callbackExecutor, workerService);
+        }
+        return workerService;
+    }
+
+    private ApiInterface createService(Executor callbackExecutor) {
+        final RestAdapter adapter = createAdapter(executorService, callbackExecutor, twitterCore,
+                sslFactory, interceptor);
+        if (mockInterface == null) {
+            return adapter.create(ApiInterface.class);
+        } else {
+            return MockRestAdapter.from(adapter).create(ApiInterface.class, mockInterface);
+        }
+    }
+
     protected RestAdapter createAdapter(ExecutorService executorService,
-                                                       TwitterCore twitterCore,
+                                        Executor callbackExecutor,
+                                        TwitterCore twitterCore,
                                         SSLSocketFactory sslSocketFactory,
-                                                       DigitsRequestInterceptor interceptor) {
+                                        DigitsRequestInterceptor interceptor) {
         return new RestAdapter.Builder()
                 .setEndpoint(new DigitsApi().getBaseHostUrl())
                 .setRequestInterceptor(interceptor)
-                .setExecutors(executorService,
-                        new MainThreadExecutor())
+                .setExecutors(executorService, callbackExecutor)
                 .setClient(new AuthenticatedClient(twitterCore.getAuthConfig(),
                         session, sslSocketFactory)).build();
     }
@@ -20,6 +20,7 @@ package com.digits.sdk.android;
 import com.twitter.sdk.android.core.SessionManager;
 import com.twitter.sdk.android.core.TwitterCore;
 
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 
 public class DigitsApiClientManager {
@@ -68,6 +69,10 @@ public class DigitsApiClientManager {
           return getApiClient().getService();
     }
 
+    ApiInterface getService(Executor callbackExecutor) {
+        return getApiClient().getService(callbackExecutor);
+    }
+
     protected DigitsApiClient createNewClient(){
         if (sandboxConfig.isEnabled()) {
             return new DigitsApiClient(sessionManager.getActiveSession(), twitterCore,
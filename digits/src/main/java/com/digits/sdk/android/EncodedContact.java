@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.android;
+
+import java.nio.charset.Charset;
+
+/**
+ * A single contact encoded in the upload format, either as a UTF-8 vCard or as a
+ * {@link CompactContactWriter compact record}, keyed by its {@code ContactsContract} lookup key.
+ */
+class EncodedContact {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    final String lookupKey;
+    final byte[] data;
+    final long fingerprint;
+
+    EncodedContact(String lookupKey, String vcard) {
+        this(lookupKey, vcard.getBytes(UTF_8), ContactsFingerprintIndex.fingerprint(vcard));
+    }
+
+    /**
+     * @param fingerprint {@link ContactsFingerprintIndex#fingerprint(CharSequence)} of the vCard,
+     *                    or {@link ContactsFingerprintIndex#fingerprint(byte[])} of the compact
+     *                    record
+     */
+    EncodedContact(String lookupKey, byte[] data, long fingerprint) {
+        this.lookupKey = lookupKey;
+        this.data = data;
+        this.fingerprint = fingerprint;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.android;
+
+import android.text.TextUtils;
+
+import com.twitter.sdk.android.core.Callback;
+import com.twitter.sdk.android.core.Result;
+import com.twitter.sdk.android.core.TwitterApiException;
+import com.twitter.sdk.android.core.TwitterException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import retrofit.RetrofitError;
+
+/**
+ * Looks up matched contacts in the {@link MatchedContactsStore}. Stored matches are delivered
+ * right away, and refreshed in the background when they are stale. Only a lookup without
+ * stored matches waits for the matches to be fetched, and lookups made while they are fetched
+ * of the same user share that refresh.
+ */
+class MatchedContactsLookup {
+    static final int PAGE_SIZE = 100;
+
+    private final MatchedContactsStore store;
+    private final ContactsPreferenceManager prefManager;
+    private final Executor executor;
+    private final Executor callbackExecutor;
+    // Lookups waiting for the refresh in progress of a user, by user id
+    private final Map<Long, List<Callback<Contacts>>> pendingCallbacks = new HashMap<>();
+
+    /**
+     * @param executor         executor reading the store and fetching the matches
+     * @param callbackExecutor executor the callbacks are run on
+     */
+    MatchedContactsLookup(MatchedContactsStore store, ContactsPreferenceManager prefManager,
+                          Executor executor, Executor callbackExecutor) {
+        this.store = store;
+        this.prefManager = prefManager;
+        this.executor = executor;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * @param userId id of the user of the session the service belongs to
+     */
+    void lookup(final ApiInterface service, final long userId, final long maxAgeMillis,
+                final Callback<Contacts> callback) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                store.load(userId);
+                final Contacts stored = store.getContacts(userId);
+                if (stored != null) {
+                    deliver(callback, stored);
+                    if (store.isFresh(userId, System.currentTimeMillis(), maxAgeMillis,
+                            prefManager.getContactsReadTimestamp())) {
+                        return;
+                    }
+                }
+                refresh(service, userId, stored == null ? callback : null);
+            }
+        });
+    }
+
+    void clear() {
+        store.clear();
+    }
+
+    /**
+     * Fetches all pages of matches of the user into the store, unless a refresh for the user
+     * is already in progress. The fetched matches are not stored when the store is cleared
+     * meanwhile, but they are still delivered to the waiting callbacks. The fetch stops at a
+     * cursor the server already returned, so a looping cursor cannot fetch forever.
+     *
+     * @param callback callback waiting for the refreshed matches, may be null
+     */
+    private void refresh(ApiInterface service, long userId, Callback<Contacts> callback) {
+        synchronized (this) {
+            List<Callback<Contacts>> callbacks = pendingCallbacks.get(userId);
+            final boolean refreshing = callbacks != null;
+            if (!refreshing) {
+                callbacks = new ArrayList<>();
+                pendingCallbacks.put(userId, callbacks);
+            }
+            if (callback != null) {
+                callbacks.add(callback);
+            }
+            if (refreshing) {
+                return;
+            }
+        }
+
+        final List<Contacts> pages = new ArrayList<>();
+        TwitterException error = null;
+        try {
+            final long generation = store.getGeneration();
+            final long contactsReadTimestamp = prefManager.getContactsReadTimestamp();
+            final Set<String> cursors = new HashSet<>();
+            String cursor = null;
+            do {
+                final Contacts page = service.usersAndUploadedBy(cursor, PAGE_SIZE);
+                if (page == null) {
+                    break;
+                }
+                pages.add(page);
+                cursor = page.nextCursor;
+            } while (!TextUtils.isEmpty(cursor) && cursors.add(cursor));
+            store.update(pages, userId, generation, System.currentTimeMillis(),
+                    contactsReadTimestamp);
+        } catch (RetrofitError e) {
+            error = TwitterApiException.convert(e);
+        } catch (RuntimeException e) {
+            // Fails the waiting callbacks too, and ends the refresh in progress
+            error = new TwitterException("Failed to refresh matched contacts", e);
+        }
+
+        final List<Callback<Contacts>> callbacks;
+        synchronized (this) {
+            callbacks = pendingCallbacks.remove(userId);
+        }
+        for (Callback<Contacts> pending : callbacks) {
+            if (error == null) {
+                deliver(pending, merge(pages));
+            } else {
+                deliverFailure(pending, error);
+            }
+        }
+    }
+
+    private static Contacts merge(List<Contacts> pages) {
+        final Contacts contacts = new Contacts();
+        contacts.users = new ArrayList<>();
+        for (Contacts page : pages) {
+            if (page.users != null) {
+                contacts.users.addAll(page.users);
+            }
+        }
+        return contacts;
+    }
+
+    private void deliver(final Callback<Contacts> callback, final Contacts contacts) {
+        callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                callback.success(new Result<>(contacts, null));
+            }
+        });
+    }
+
+    private void deliverFailure(final Callback<Contacts> callback,
+                                final TwitterException error) {
+        callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                callback.failure(error);
+            }
+        });
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.android;
+
+import android.content.Context;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.fabric.sdk.android.Fabric;
+import io.fabric.sdk.android.services.common.CommonUtils;
+
+/**
+ * Persistent store of the Digits users matched with the uploaded contacts, merged from all
+ * pages of a lookup. The matches are stale once they are older than the maximum age asked for,
+ * or when contacts were uploaded or deleted after they were fetched.
+ * <p>
+ * Matches belong to the user they were fetched for and are kept in a file of that user.
+ * The store holds the matches of one user at a time: reading the matches of another user
+ * deletes those of the previous one. Matches fetched before the store was cleared or switched
+ * to another user are dropped, see {@link #getGeneration()}.
+ */
+class MatchedContactsStore {
+    static final String FILE_NAME = "com.digits.sdk.android.matched_contacts";
+    private static final int VERSION = 1;
+
+    private final Context context;
+    private List<DigitsUser> users;
+    // Contacts read timestamp of the upload the matches were fetched after
+    private long contactsReadTimestamp;
+    private long refreshedAt;
+    private long userId = DigitsSession.UNKNOWN_USER_ID;
+    private boolean loaded;
+    // Incremented whenever the stored matches are cleared or switched to another user
+    private long generation;
+
+    MatchedContactsStore(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * Reads the stored matches of the given user, unless they are read already.
+     */
+    synchronized void load(long userId) {
+        if (loaded && this.userId == userId) {
+            return;
+        }
+        if (this.userId != userId) {
+            deleteFiles(getFile(userId).getName());
+            generation++;
+        }
+        this.userId = userId;
+        loaded = true;
+        users = null;
+
+        final File file = getFile(userId);
+        if (!file.exists()) {
+            return;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != VERSION) {
+                return;
+            }
+            contactsReadTimestamp = in.readLong();
+            refreshedAt = in.readLong();
+            final int count = in.readInt();
+            final List<DigitsUser> storedUsers = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                storedUsers.add(new DigitsUser(in.readLong(), in.readUTF()));
+            }
+            users = storedUsers;
+        } catch (IOException e) {
+            Fabric.getLogger().e(Digits.TAG, "Failed to read matched contacts", e);
+        } finally {
+            CommonUtils.closeOrLog(in, "Failed to close matched contacts");
+        }
+    }
+
+    /**
+     * @return copy of the stored matches of the given user, or null if there are none
+     */
+    synchronized Contacts getContacts(long userId) {
+        if (users == null || this.userId != userId) {
+            return null;
+        }
+        final Contacts contacts = new Contacts();
+        contacts.users = new ArrayList<>(users);
+        return contacts;
+    }
+
+    /**
+     * @param userId                user the matches are looked up for
+     * @param now                   current time in milliseconds
+     * @param maxAgeMillis          maximum age of fresh matches
+     * @param contactsReadTimestamp read timestamp of the last contacts upload
+     */
+    synchronized boolean isFresh(long userId, long now, long maxAgeMillis,
+                                 long contactsReadTimestamp) {
+        return users != null
+                && this.userId == userId
+                && this.contactsReadTimestamp == contactsReadTimestamp
+                && now - refreshedAt >= 0
+                && now - refreshedAt < maxAgeMillis;
+    }
+
+    /**
+     * @return the generation to pass to {@link #update(List, long, long, long, long)} for
+     * matches which are fetched from now on
+     */
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Replaces the stored matches with the users of all pages of a lookup, unless the store
+     * was cleared or switched to another user since the lookup started.
+     *
+     * @param generation {@link #getGeneration()} from before the lookup started
+     * @return false if the matches were dropped
+     */
+    synchronized boolean update(List<Contacts> pages, long userId, long generation, long now,
+                                long contactsReadTimestamp) {
+        if (this.generation != generation || this.userId != userId) {
+            return false;
+        }
+        final List<DigitsUser> refreshedUsers = new ArrayList<>();
+        for (Contacts page : pages) {
+            if (page.users != null) {
+                refreshedUsers.addAll(page.users);
+            }
+        }
+        users = refreshedUsers;
+        this.contactsReadTimestamp = contactsReadTimestamp;
+        refreshedAt = now;
+        loaded = true;
+        save();
+        return true;
+    }
+
+    /**
+     * Deletes the stored matches of all users.
+     */
+    synchronized void clear() {
+        generation++;
+        loaded = false;
+        users = null;
+        deleteFiles(null);
+    }
+
+    File getFile(long userId) {
+        return new File(context.getFilesDir(), FILE_NAME + "_" + userId);
+    }
+
+    /**
+     * Deletes the files of stored matches, except the file with the given name.
+     */
+    private void deleteFiles(String keptName) {
+        final File[] files = context.getFilesDir().listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            final String name = file.getName();
+            if (name.startsWith(FILE_NAME) && !name.equals(keptName) && !file.delete()) {
+                Fabric.getLogger().w(Digits.TAG, "Failed to delete matched contacts");
+            }
+        }
+    }
+
+    private void save() {
+        final File file = getFile(userId);
+        final File tmpFile = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            out.writeInt(VERSION);
+            out.writeLong(contactsReadTimestamp);
+            out.writeLong(refreshedAt);
+            out.writeInt(users.size());
+            for (DigitsUser user : users) {
+                out.writeLong(user.id);
+                out.writeUTF(user.idStr == null ? String.valueOf(user.id) : user.idStr);
+            }
+            out.close();
+            out = null;
+            if (!tmpFile.renameTo(file)) {
+                Fabric.getLogger().e(Digits.TAG, "Failed to save matched contacts");
+            }
+        } catch (IOException e) {
+            Fabric.getLogger().e(Digits.TAG, "Failed to write matched contacts", e);
+        } finally {
+            CommonUtils.closeOrLog(out, "Failed to close matched contacts");
+        }
+    }
+}
@@ -130,6 +130,17 @@ public class MockApiInterface implements ApiInterface {
         return new UploadResponse(new ArrayList<UploadError>());
     }
 
+    @Override
+    public UploadResponse upload(String contentEncoding, @Body VcardsBody vcards) {
+        return new UploadResponse(new ArrayList<UploadError>());
+    }
+
+    @Override
+    public UploadResponse uploadCompact(String contentEncoding,
+                                        @Body CompactContactsBody contacts) {
+        return new UploadResponse(new ArrayList<UploadError>());
+    }
+
     @Override
     public void deleteAll(@Body String body, Callback<Response> cb) {
         final Response response = new Response("/1.1/contacts/destroy/all.json", 200, "ok",
@@ -159,6 +170,21 @@ public class MockApiInterface implements ApiInterface {
 
     }
 
+    @Override
+    public Contacts usersAndUploadedBy(@Query("cursor") String cursor,
+                                       @Query("count") Integer count) {
+        return getContactsPages().get(cursor == null ? "" : cursor);
+    }
+
+    @Override
+    public Response streamUsersAndUploadedBy(@Query("cursor") String cursor,
+                                             @Query("count") Integer count) {
+        final Contacts data = getContactsPages().get(cursor == null ? "" : cursor);
+        return new Response("/1.1/contacts/users_and_uploaded_by.json", 200,
+                "ok", Collections.<Header>emptyList(), new TypedByteArray("application/json",
+                new Gson().toJson(data).getBytes()));
+    }
+
     static DigitsSessionResponse createSessionResponse(){
         final DigitsSessionResponse data = new DigitsSessionResponse();
         data.secret = TOKEN;
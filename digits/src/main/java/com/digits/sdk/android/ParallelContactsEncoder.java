@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.digits.sdk.android;
+
+import com.digits.sdk.vcard.ContactDataRow;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Encodes the contacts read by {@link ContactsHelper} on a small pool of threads, each with its
+ * own {@link ContactEncoder}, while the reading thread keeps reading the cursor. Contacts are
+ * encoded in batches and handed to the consumer on the reading thread, in the order they were
+ * read, as soon as their batch is done, so encoding overlaps with the upload of earlier pages.
+ * <p>
+ * At most two batches per thread are pending; adding more contacts waits for the oldest batch
+ * and delivers it, so memory use does not grow with the size of the address book. With a
+ * single thread, contacts are encoded on the reading thread as they are added.
+ */
+class ParallelContactsEncoder {
+    static final int BATCH_SIZE = 32;
+
+    private final ContactsHelper.ContactsConsumer consumer;
+    private final ContactEncoder inlineEncoder;
+    private final ExecutorService executor;
+    private final ThreadLocal<ContactEncoder> encoders;
+    private final int maxPendingBatches;
+    private final ArrayDeque<Batch> pendingBatches = new ArrayDeque<>();
+    private final ArrayDeque<Batch> freeBatches = new ArrayDeque<>();
+    private Batch currentBatch;
+
+    /**
+     * @param threads number of encoding threads, 1 to encode on the reading thread
+     */
+    ParallelContactsEncoder(int threads, final boolean normalizesPhoneNumbers,
+                            final boolean usesCompactFormat,
+                            ContactsHelper.ContactsConsumer consumer) {
+        this.consumer = consumer;
+        this.maxPendingBatches = threads * 2;
+        if (threads > 1) {
+            inlineEncoder = null;
+            executor = Executors.newFixedThreadPool(threads);
+            encoders = new ThreadLocal<ContactEncoder>() {
+                @Override
+                protected ContactEncoder initialValue() {
+                    return new ContactEncoder(normalizesPhoneNumbers, usesCompactFormat);
+                }
+            };
+        } else {
+            inlineEncoder = new ContactEncoder(normalizesPhoneNumbers, usesCompactFormat);
+            executor = null;
+            encoders = null;
+        }
+    }
+
+    /**
+     * Adds the rows of a contact. The rows are copied, so the caller may reuse them.
+     *
+     * @return false if the consumer stopped reading or the thread was interrupted
+     */
+    boolean add(String lookupKey, List<ContactDataRow> names, List<ContactDataRow> phones) {
+        if (executor == null) {
+            return consumer.onContact(inlineEncoder.encode(lookupKey, names, phones));
+        }
+
+        if (currentBatch == null) {
+            currentBatch = freeBatches.isEmpty() ? new Batch() : freeBatches.pop();
+        }
+        currentBatch.add(lookupKey, names, phones);
+        return currentBatch.size < BATCH_SIZE || submit();
+    }
+
+    /**
+     * Encodes the remaining contacts and hands them to the consumer.
+     *
+     * @return false if the consumer stopped reading or the thread was interrupted
+     */
+    boolean finish() {
+        if (currentBatch != null && !submit()) {
+            return false;
+        }
+        while (!pendingBatches.isEmpty()) {
+            if (!deliverOldest()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops the encoding threads. Pending batches are dropped.
+     */
+    void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private boolean submit() {
+        final Batch batch = currentBatch;
+        currentBatch = null;
+        batch.result = executor.submit(batch);
+        pendingBatches.add(batch);
+        return pendingBatches.size() < maxPendingBatches || deliverOldest();
+    }
+
+    private boolean deliverOldest() {
+        final Batch batch = pendingBatches.poll();
+        final List<EncodedContact> contacts;
+        try {
+            contacts = batch.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Failed to encode contacts", cause);
+        }
+
+        batch.size = 0;
+        batch.result = null;
+        freeBatches.push(batch);
+        for (EncodedContact contact : contacts) {
+            if (!consumer.onContact(contact)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies of the rows of up to {@link #BATCH_SIZE} contacts. Batches are recycled once
+     * their contacts have been delivered.
+     */
+    private class Batch implements Callable<List<EncodedContact>> {
+        final List<String> lookupKeys = new ArrayList<>(BATCH_SIZE);
+        final List<ContactsHelper.RowBuffer> names = new ArrayList<>(BATCH_SIZE);
+        final List<ContactsHelper.RowBuffer> phones = new ArrayList<>(BATCH_SIZE);
+        int size;
+        Future<List<EncodedContact>> result;
+
+        void add(String lookupKey, List<ContactDataRow> nameRows,
+                 List<ContactDataRow> phoneRows) {
+            if (size == lookupKeys.size()) {
+                lookupKeys.add(null);
+                names.add(new ContactsHelper.RowBuffer());
+                phones.add(new ContactsHelper.RowBuffer());
+            }
+            lookupKeys.set(size, lookupKey);
+            copy(nameRows, names.get(size));
+            copy(phoneRows, phones.get(size));
+            size++;
+        }
+
+        @Override
+        public List<EncodedContact> call() {
+            final ContactEncoder encoder = encoders.get();
+            final List<EncodedContact> contacts = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                contacts.add(encoder.encode(lookupKeys.get(i), names.get(i).rows(),
+                        phones.get(i).rows()));
+            }
+            return contacts;
+        }
+
+        private void copy(List<ContactDataRow> rows, ContactsHelper.RowBuffer buffer) {
+            buffer.reset();
+            for (ContactDataRow row : rows) {
+                buffer.next().set(row);
+            }
+        }
+    }
+}
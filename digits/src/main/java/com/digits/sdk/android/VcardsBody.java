@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.android;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+/**
+ * JSON encoded {@link Vcards} upload request body.
+ * <p>
+ * The JSON is written straight from the UTF-8 encoded vCards of a page, without building
+ * intermediate strings.
+ */
+class VcardsBody extends ContactsUploadBody {
+    static final String MIME_TYPE = "application/json; charset=UTF-8";
+    private static final byte[] PREFIX = {'{', '"', 'v', 'c', 'a', 'r', 'd', 's', '"', ':', '['};
+    private static final byte[] SUFFIX = {']', '}'};
+    private static final byte[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a',
+            'b', 'c', 'd', 'e', 'f'};
+
+    VcardsBody(byte[] bytes, String contentEncoding) {
+        super(bytes, contentEncoding);
+    }
+
+    static VcardsBody create(List<EncodedContact> contacts, ContactsUploadConfig config) {
+        final byte[] json = toJson(contacts);
+        final byte[] compressed = compress(json, config);
+        return compressed != null ? new VcardsBody(compressed, GZIP) : new VcardsBody(json, null);
+    }
+
+    /**
+     * Writes JSON equivalent to what Gson writes for {@link Vcards}. Only the characters that
+     * JSON requires to be escaped are escaped; Gson also escapes HTML characters.
+     */
+    static byte[] toJson(List<EncodedContact> contacts) {
+        int capacity = PREFIX.length + SUFFIX.length;
+        for (EncodedContact contact : contacts) {
+            // Quotes, separator and the escaped CRLF line endings of the vCard
+            capacity += contact.data.length + contact.data.length / 16 + 3;
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(capacity);
+        out.write(PREFIX, 0, PREFIX.length);
+        for (int i = 0; i < contacts.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write('"');
+            writeEscaped(out, contacts.get(i).data);
+            out.write('"');
+        }
+        out.write(SUFFIX, 0, SUFFIX.length);
+        return out.toByteArray();
+    }
+
+    private static void writeEscaped(ByteArrayOutputStream out, byte[] utf8) {
+        int start = 0;
+        for (int i = 0; i < utf8.length; i++) {
+            final int b = utf8[i];
+            // Bytes of multi-byte characters are negative and never need escaping.
+            if (b < 0 || (b >= 0x20 && b != '"' && b != '\\')) {
+                continue;
+            }
+            out.write(utf8, start, i - start);
+            start = i + 1;
+
+            out.write('\\');
+            switch (b) {
+                case '"':
+                case '\\':
+                    out.write(b);
+                    break;
+                case '\r':
+                    out.write('r');
+                    break;
+                case '\n':
+                    out.write('n');
+                    break;
+                case '\t':
+                    out.write('t');
+                    break;
+                case '\b':
+                    out.write('b');
+                    break;
+                case '\f':
+                    out.write('f');
+                    break;
+                default:
+                    out.write('u');
+                    out.write('0');
+                    out.write('0');
+                    out.write(HEX[b >> 4]);
+                    out.write(HEX[b & 0xf]);
+                    break;
+            }
+        }
+        out.write(utf8, start, utf8.length - start);
+    }
+
+    @Override
+    UploadResponse upload(ApiInterface service) {
+        return service.upload(contentEncoding, this);
+    }
+
+    @Override
+    public String mimeType() {
+        return MIME_TYPE;
+    }
+}
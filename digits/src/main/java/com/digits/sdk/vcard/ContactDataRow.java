@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.vcard;
+
+/**
+ * A reusable row of the contacts Data table holding either a phone number or a structured
+ * name. Unlike {@link android.content.ContentValues}, integer columns are kept as primitives,
+ * so a row can be filled from a cursor without allocating.
+ *
+ * @see VCardBuilder#appendNameRows(java.util.List)
+ * @see VCardBuilder#appendPhoneRows(java.util.List, VCardPhoneNumberTranslationCallback)
+ */
+public class ContactDataRow {
+    // Phone columns
+    public boolean hasPhoneType;
+    public int phoneType;
+    public String phoneLabel;
+    public String phoneNumber;
+
+    // StructuredName columns
+    public String displayName;
+    public String givenName;
+    public String familyName;
+
+    // Common columns
+    public boolean isPrimary;
+    public boolean isSuperPrimary;
+
+    public void clear() {
+        hasPhoneType = false;
+        phoneType = 0;
+        phoneLabel = null;
+        phoneNumber = null;
+        displayName = null;
+        givenName = null;
+        familyName = null;
+        isPrimary = false;
+        isSuperPrimary = false;
+    }
+
+    public void set(ContactDataRow other) {
+        hasPhoneType = other.hasPhoneType;
+        phoneType = other.phoneType;
+        phoneLabel = other.phoneLabel;
+        phoneNumber = other.phoneNumber;
+        displayName = other.displayName;
+        givenName = other.givenName;
+        familyName = other.familyName;
+        isPrimary = other.isPrimary;
+        isSuperPrimary = other.isSuperPrimary;
+    }
+}
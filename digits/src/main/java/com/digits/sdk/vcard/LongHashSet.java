@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.digits.sdk.vcard;
+
+import java.util.Arrays;
+
+/**
+ * A set of long values using open addressing, without boxing the values. Meant to be cleared
+ * and reused for small sets, such as the phone numbers of a contact.
+ */
+class LongHashSet {
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Free slots hold 0; whether 0 itself is in the set is kept separately.
+    private long[] mSlots = new long[INITIAL_CAPACITY];
+    private boolean mHasZero;
+    private int mSize;
+
+    /**
+     * @return true if the value was not in the set yet
+     */
+    boolean add(final long value) {
+        if (value == 0) {
+            if (mHasZero) {
+                return false;
+            }
+            mHasZero = true;
+            mSize++;
+            return true;
+        }
+
+        // Keep the table at most half full, so probe sequences stay short.
+        if ((mSize + 1) * 2 > mSlots.length) {
+            grow();
+        }
+        if (!insert(mSlots, value)) {
+            return false;
+        }
+        mSize++;
+        return true;
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    void clear() {
+        if (mSize > 0) {
+            Arrays.fill(mSlots, 0);
+            mHasZero = false;
+            mSize = 0;
+        }
+    }
+
+    private void grow() {
+        final long[] slots = new long[mSlots.length * 2];
+        for (long value : mSlots) {
+            if (value != 0) {
+                insert(slots, value);
+            }
+        }
+        mSlots = slots;
+    }
+
+    private static boolean insert(final long[] slots, final long value) {
+        final int mask = slots.length - 1;
+        // Mix all bits of the value into the low bits used as index.
+        final int hash = (int) (value ^ (value >>> 32)) * 0x9E3779B9;
+        int index = (hash ^ (hash >>> 16)) & mask;
+        while (slots[index] != 0) {
+            if (slots[index] == value) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        slots[index] = value;
+        return true;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.digits.sdk.vcard;
+
+/**
+ * The phone numbers of one contact, deduplicated by a hash of the value they are written as.
+ * Shared by the vCard and the compact contact encodings, so both skip the same numbers. Meant
+ * to be cleared and reused from one contact to the next.
+ */
+public class PhoneNumberSet {
+    private final LongHashSet mHashes = new LongHashSet();
+
+    /**
+     * Adds a number which is written exactly as given.
+     *
+     * @return true if the number was not in the set yet
+     */
+    public boolean add(final String phoneNumber) {
+        return mHashes.add(VCardEncodingUtils.hashPhoneNumber(phoneNumber));
+    }
+
+    /**
+     * Adds a number which is written as
+     * {@link VCardEncodingUtils#normalizePhoneNumber(String)} of it, without creating the
+     * normalized string.
+     *
+     * @return true if the normalized number was not in the set yet
+     */
+    public boolean addNormalized(final String phoneNumber) {
+        return mHashes.add(VCardEncodingUtils.hashNormalizedPhoneNumber(phoneNumber));
+    }
+
+    public void clear() {
+        mHashes.clear();
+    }
+}
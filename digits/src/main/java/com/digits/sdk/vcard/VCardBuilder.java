@@ -26,6 +26,8 @@ import android.telephony.PhoneNumberUtils;
 import android.text.TextUtils;
 import android.util.Log;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -77,7 +79,6 @@ public class VCardBuilder {
     public static final String VCARD_END_OF_LINE = "\r\n";
     private static final String VCARD_DATA_SEPARATOR = ":";
     private static final String VCARD_ITEM_SEPARATOR = ";";
-    private static final String VCARD_PARAM_EQUAL = "=";
 
     private static final String VCARD_PARAM_ENCODING_QP =
             "ENCODING=" + VCardConstants.PARAM_ENCODING_QP;
@@ -86,22 +87,28 @@ public class VCardBuilder {
 
     private final int mVCardType;
 
-    private final boolean mIsV30OrV40;
-    private final boolean mIsJapaneseMobilePhone;
-    private final boolean mIsDoCoMo;
-    private final boolean mShouldUseQuotedPrintable;
-    private final boolean mUsesDefactProperty;
-    private final boolean mAppendTypeParamName;
-    private final boolean mRefrainsQPToNameProperties;
-    private final boolean mNeedsToConvertPhoneticString;
+    private final VCardTypeProfile mProfile;
 
     private final boolean mShouldAppendCharsetParam;
 
     private final String mCharset;
     private final String mVCardCharsetParameter;
 
+    private static final char[] QP_HEX_DIGITS = {'0', '1', '2', '3', '4', '5', '6', '7', '8',
+            '9', 'A', 'B', 'C', 'D', 'E', 'F'};
+
+    // Buffers grown beyond this by an unusually large vCard are not kept for the next one.
+    private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+
+    private final VCardValueScanner mValueScanner;
+    // Holds a value escaped by mValueScanner until the parameters before it are known
+    private final StringBuilder mValueBuffer = new StringBuilder();
+    // Phone numbers emitted for the contact, see appendPhone()
+    private final PhoneNumberSet mPhoneNumbers = new PhoneNumberSet();
+
     private StringBuilder mBuilder;
     private boolean mEndAppended;
+    private byte[] mUtf8Buffer;
 
     public VCardBuilder(final int vcardType) {
         // Default charset should be used
@@ -121,23 +128,17 @@ public class VCardBuilder {
                     "It is not officially published yet.");
         }
 
-        mIsV30OrV40 = VCardConfig.isVersion30(vcardType) || VCardConfig.isVersion40(vcardType);
-        mShouldUseQuotedPrintable = VCardConfig.shouldUseQuotedPrintable(vcardType);
-        mIsDoCoMo = VCardConfig.isDoCoMo(vcardType);
-        mIsJapaneseMobilePhone = VCardConfig.needsToConvertPhoneticString(vcardType);
-        mUsesDefactProperty = VCardConfig.usesDefactProperty(vcardType);
-        mRefrainsQPToNameProperties = VCardConfig.shouldRefrainQPToNameProperties(vcardType);
-        mAppendTypeParamName = VCardConfig.appendTypeParamName(vcardType);
-        mNeedsToConvertPhoneticString = VCardConfig.needsToConvertPhoneticString(vcardType);
+        mProfile = VCardTypeProfile.get(vcardType);
+        mValueScanner = mProfile.valueScanner;
 
         // vCard 2.1 requires charset.
         // vCard 3.0 does not allow it but we found some devices use it to determine
         // the exact charset.
         // We currently append it only when charset other than UTF_8 is used.
         mShouldAppendCharsetParam =
-                !(VCardConfig.isVersion30(vcardType) && "UTF-8".equalsIgnoreCase(charset));
+                !(mProfile.isVersion30 && "UTF-8".equalsIgnoreCase(charset));
 
-        if (VCardConfig.isDoCoMo(vcardType)) {
+        if (mProfile.isDoCoMo) {
             if (!SHIFT_JIS.equalsIgnoreCase(charset)) {
                 /* Log.w(LOG_TAG,
                         "The charset \"" + charset + "\" is used while "
@@ -166,20 +167,18 @@ public class VCardBuilder {
         clear();
     }
 
+    /**
+     * Starts a new vCard. The output buffer of the previous vCard is reused, so building many
+     * vCards with one builder does not allocate a buffer per vCard.
+     */
     public void clear() {
-        mBuilder = new StringBuilder();
-        mEndAppended = false;
-        appendLine(VCardConstants.PROPERTY_BEGIN, VCARD_DATA_VCARD);
-        if (VCardConfig.isVersion40(mVCardType)) {
-            appendLine(VCardConstants.PROPERTY_VERSION, VCardConstants.VERSION_V40);
-        } else if (VCardConfig.isVersion30(mVCardType)) {
-            appendLine(VCardConstants.PROPERTY_VERSION, VCardConstants.VERSION_V30);
+        if (mBuilder == null || mBuilder.capacity() > MAX_RETAINED_CAPACITY) {
+            mBuilder = new StringBuilder();
         } else {
-            if (!VCardConfig.isVersion21(mVCardType)) {
-                Log.w(LOG_TAG, "Unknown vCard version detected.");
-            }
-            appendLine(VCardConstants.PROPERTY_VERSION, VCardConstants.VERSION_V21);
+            mBuilder.setLength(0);
         }
+        mEndAppended = false;
+        mBuilder.append(mProfile.header);
     }
 
     private boolean containsNonEmptyName(final ContentValues contentValues) {
@@ -249,7 +248,7 @@ public class VCardBuilder {
      * properties for vCard 4.0.
      */
     private VCardBuilder appendNamePropertiesV40(final List<ContentValues> contentValuesList) {
-        if (mIsDoCoMo || mNeedsToConvertPhoneticString) {
+        if (mProfile.isDoCoMo || mProfile.needsToConvertPhoneticString) {
             // Ignore all flags that look stale from the view of vCard 4.0 to
             // simplify construction algorithm. Actually we don't have any vCard file
             // available from real world yet, so we may need to re-enable some of these
@@ -332,7 +331,7 @@ public class VCardBuilder {
             Log.w(LOG_TAG, "DISPLAY_NAME is empty.");
 
             final String escaped = escapeCharacters(VCardUtils.constructNameFromElements(
-                    VCardConfig.getNameOrderType(mVCardType),
+                    mProfile.nameOrderType,
                     familyName, middleName, givenName, prefix, suffix));
             appendLine(VCardConstants.PROPERTY_FN, escaped);
         } else {
@@ -344,7 +343,7 @@ public class VCardBuilder {
         }
 
         // We may need X- properties for phonetic names.
-        appendPhoneticNameFields(contentValues);
+        appendPhoneticNameFields(phoneticFamilyName, phoneticMiddleName, phoneticGivenName);
         return this;
     }
 
@@ -354,18 +353,18 @@ public class VCardBuilder {
      * vCard spec.
      */
     public VCardBuilder appendNameProperties(final List<ContentValues> contentValuesList) {
-        if (VCardConfig.isVersion40(mVCardType)) {
+        if (mProfile.isVersion40) {
             return appendNamePropertiesV40(contentValuesList);
         }
 
         if (contentValuesList == null || contentValuesList.isEmpty()) {
-            if (VCardConfig.isVersion30(mVCardType)) {
+            if (mProfile.isVersion30) {
                 // vCard 3.0 requires "N" and "FN" properties.
                 // vCard 4.0 does NOT require N, but we take care of possible backward
                 // compatibility issues.
                 appendLine(VCardConstants.PROPERTY_N, "");
                 appendLine(VCardConstants.PROPERTY_FN, "");
-            } else if (mIsDoCoMo) {
+            } else if (mProfile.isDoCoMo) {
                 appendLine(VCardConstants.PROPERTY_N, "");
             }
             return this;
@@ -373,112 +372,112 @@ public class VCardBuilder {
 
         final ContentValues contentValues =
                 getPrimaryContentValueWithStructuredName(contentValuesList);
-        final String familyName = contentValues.getAsString(StructuredName.FAMILY_NAME);
-        final String middleName = contentValues.getAsString(StructuredName.MIDDLE_NAME);
-        final String givenName = contentValues.getAsString(StructuredName.GIVEN_NAME);
-        final String prefix = contentValues.getAsString(StructuredName.PREFIX);
-        final String suffix = contentValues.getAsString(StructuredName.SUFFIX);
-        final String displayName = contentValues.getAsString(StructuredName.DISPLAY_NAME);
+        return appendNameProperties(contentValues.getAsString(StructuredName.FAMILY_NAME),
+                contentValues.getAsString(StructuredName.MIDDLE_NAME),
+                contentValues.getAsString(StructuredName.GIVEN_NAME),
+                contentValues.getAsString(StructuredName.PREFIX),
+                contentValues.getAsString(StructuredName.SUFFIX),
+                contentValues.getAsString(StructuredName.DISPLAY_NAME),
+                contentValues.getAsString(StructuredName.PHONETIC_FAMILY_NAME),
+                contentValues.getAsString(StructuredName.PHONETIC_MIDDLE_NAME),
+                contentValues.getAsString(StructuredName.PHONETIC_GIVEN_NAME));
+    }
+
+    /**
+     * Row based variant of {@link #appendNameProperties(List)}, used when contacts are read
+     * straight from a cursor into {@link ContactDataRow}s.
+     */
+    public VCardBuilder appendNameRows(final List<ContactDataRow> rows) {
+        if (rows == null || rows.isEmpty()) {
+            return appendNameProperties((List<ContentValues>) null);
+        }
+
+        final ContactDataRow row = VCardUtils.getPrimaryNameRow(rows);
+        if (mProfile.isVersion40) {
+            final List<ContentValues> contentValuesList = new ArrayList<>(1);
+            if (row != null) {
+                final ContentValues contentValues = new ContentValues();
+                contentValues.put(StructuredName.FAMILY_NAME, row.familyName);
+                contentValues.put(StructuredName.GIVEN_NAME, row.givenName);
+                contentValues.put(StructuredName.DISPLAY_NAME, row.displayName);
+                contentValuesList.add(contentValues);
+            }
+            return appendNamePropertiesV40(contentValuesList);
+        }
 
+        if (row == null) {
+            // There's no appropriate row with StructuredName.
+            return appendNameProperties(null, null, null, null, null, null, null, null, null);
+        }
+        return appendNameProperties(row.familyName, null, row.givenName, null, null,
+                row.displayName, null, null, null);
+    }
+
+    private VCardBuilder appendNameProperties(final String familyName, final String middleName,
+            final String givenName, final String prefix, final String suffix,
+            final String displayName, final String phoneticFamilyName,
+            final String phoneticMiddleName, final String phoneticGivenName) {
         if (!TextUtils.isEmpty(familyName) || !TextUtils.isEmpty(givenName)) {
-            final boolean reallyAppendCharsetParameterToName =
-                    shouldAppendCharsetParam(familyName, givenName, middleName, prefix, suffix);
-            final boolean reallyUseQuotedPrintableToName =
-                    (!mRefrainsQPToNameProperties &&
-                            !(VCardUtils.containsOnlyNonCrLfPrintableAscii(familyName) &&
-                                    VCardUtils.containsOnlyNonCrLfPrintableAscii(givenName) &&
-                                    VCardUtils.containsOnlyNonCrLfPrintableAscii(middleName) &&
-                                    VCardUtils.containsOnlyNonCrLfPrintableAscii(prefix) &&
-                                    VCardUtils.containsOnlyNonCrLfPrintableAscii(suffix)));
+            // The elements are escaped while being classified, and encoded as
+            // Quoted-Printable instead only if one of them needs it.
+            final StringBuilder escapedName = mValueBuffer;
+            escapedName.setLength(0);
+            int nameFlags = mValueScanner.escape(familyName, escapedName);
+            escapedName.append(VCARD_ITEM_SEPARATOR);
+            nameFlags |= mValueScanner.escape(givenName, escapedName);
+            escapedName.append(VCARD_ITEM_SEPARATOR);
+            nameFlags |= mValueScanner.escape(middleName, escapedName);
+            escapedName.append(VCARD_ITEM_SEPARATOR);
+            nameFlags |= mValueScanner.escape(prefix, escapedName);
+            escapedName.append(VCARD_ITEM_SEPARATOR);
+            nameFlags |= mValueScanner.escape(suffix, escapedName);
+
+            final boolean reallyUseQuotedPrintableToName = !mProfile.refrainsQPToNameProperties &&
+                    (nameFlags & VCardValueScanner.NEEDS_QUOTED_PRINTABLE) != 0;
 
             final String formattedName;
             if (!TextUtils.isEmpty(displayName)) {
                 formattedName = displayName;
             } else {
                 formattedName = VCardUtils.constructNameFromElements(
-                        VCardConfig.getNameOrderType(mVCardType),
+                        mProfile.nameOrderType,
                         familyName, middleName, givenName, prefix, suffix);
             }
-            final boolean reallyAppendCharsetParameterToFN =
-                    shouldAppendCharsetParam(formattedName);
-            final boolean reallyUseQuotedPrintableToFN =
-                    !mRefrainsQPToNameProperties &&
-                    !VCardUtils.containsOnlyNonCrLfPrintableAscii(formattedName);
-
-            final String encodedFamily;
-            final String encodedGiven;
-            final String encodedMiddle;
-            final String encodedPrefix;
-            final String encodedSuffix;
-            if (reallyUseQuotedPrintableToName) {
-                encodedFamily = encodeQuotedPrintable(familyName);
-                encodedGiven = encodeQuotedPrintable(givenName);
-                encodedMiddle = encodeQuotedPrintable(middleName);
-                encodedPrefix = encodeQuotedPrintable(prefix);
-                encodedSuffix = encodeQuotedPrintable(suffix);
-            } else {
-                encodedFamily = escapeCharacters(familyName);
-                encodedGiven = escapeCharacters(givenName);
-                encodedMiddle = escapeCharacters(middleName);
-                encodedPrefix = escapeCharacters(prefix);
-                encodedSuffix = escapeCharacters(suffix);
-            }
-
-            final String encodedFormattedname =
-                    (reallyUseQuotedPrintableToFN ?
-                            encodeQuotedPrintable(formattedName) : escapeCharacters(formattedName));
 
             mBuilder.append(VCardConstants.PROPERTY_N);
-            if (mIsDoCoMo) {
-                if (reallyAppendCharsetParameterToName) {
-                    mBuilder.append(VCARD_PARAM_SEPARATOR);
-                    mBuilder.append(mVCardCharsetParameter);
-                }
-                if (reallyUseQuotedPrintableToName) {
-                    mBuilder.append(VCARD_PARAM_SEPARATOR);
-                    mBuilder.append(VCARD_PARAM_ENCODING_QP);
-                }
-                mBuilder.append(VCARD_DATA_SEPARATOR);
+            if (shouldAppendCharsetParam(nameFlags)) {
+                mBuilder.append(VCARD_PARAM_SEPARATOR);
+                mBuilder.append(mVCardCharsetParameter);
+            }
+            if (reallyUseQuotedPrintableToName) {
+                mBuilder.append(VCARD_PARAM_SEPARATOR);
+                mBuilder.append(VCARD_PARAM_ENCODING_QP);
+            }
+            mBuilder.append(VCARD_DATA_SEPARATOR);
+            if (mProfile.isDoCoMo) {
                 // DoCoMo phones require that all the elements in the "family name" field.
                 mBuilder.append(formattedName);
                 mBuilder.append(VCARD_ITEM_SEPARATOR);
                 mBuilder.append(VCARD_ITEM_SEPARATOR);
                 mBuilder.append(VCARD_ITEM_SEPARATOR);
                 mBuilder.append(VCARD_ITEM_SEPARATOR);
-            } else {
-                if (reallyAppendCharsetParameterToName) {
-                    mBuilder.append(VCARD_PARAM_SEPARATOR);
-                    mBuilder.append(mVCardCharsetParameter);
-                }
-                if (reallyUseQuotedPrintableToName) {
-                    mBuilder.append(VCARD_PARAM_SEPARATOR);
-                    mBuilder.append(VCARD_PARAM_ENCODING_QP);
-                }
-                mBuilder.append(VCARD_DATA_SEPARATOR);
-                mBuilder.append(encodedFamily);
+            } else if (reallyUseQuotedPrintableToName) {
+                appendQuotedPrintable(mBuilder, familyName);
                 mBuilder.append(VCARD_ITEM_SEPARATOR);
-                mBuilder.append(encodedGiven);
+                appendQuotedPrintable(mBuilder, givenName);
                 mBuilder.append(VCARD_ITEM_SEPARATOR);
-                mBuilder.append(encodedMiddle);
+                appendQuotedPrintable(mBuilder, middleName);
                 mBuilder.append(VCARD_ITEM_SEPARATOR);
-                mBuilder.append(encodedPrefix);
+                appendQuotedPrintable(mBuilder, prefix);
                 mBuilder.append(VCARD_ITEM_SEPARATOR);
-                mBuilder.append(encodedSuffix);
+                appendQuotedPrintable(mBuilder, suffix);
+            } else {
+                mBuilder.append(escapedName);
             }
             mBuilder.append(VCARD_END_OF_LINE);
 
             // FN property
-            mBuilder.append(VCardConstants.PROPERTY_FN);
-            if (reallyAppendCharsetParameterToFN) {
-                mBuilder.append(VCARD_PARAM_SEPARATOR);
-                mBuilder.append(mVCardCharsetParameter);
-            }
-            if (reallyUseQuotedPrintableToFN) {
-                mBuilder.append(VCARD_PARAM_SEPARATOR);
-                mBuilder.append(VCARD_PARAM_ENCODING_QP);
-            }
-            mBuilder.append(VCARD_DATA_SEPARATOR);
-            mBuilder.append(encodedFormattedname);
+            buildSinglePartNameField(VCardConstants.PROPERTY_FN, formattedName);
             mBuilder.append(VCARD_END_OF_LINE);
         } else if (!TextUtils.isEmpty(displayName)) {
 
@@ -494,31 +493,30 @@ public class VCardBuilder {
             buildSinglePartNameField(VCardConstants.PROPERTY_FN, displayName);
             mBuilder.append(VCARD_END_OF_LINE);
 
-        } else if (VCardConfig.isVersion30(mVCardType)) {
+        } else if (mProfile.isVersion30) {
             appendLine(VCardConstants.PROPERTY_N, "");
             appendLine(VCardConstants.PROPERTY_FN, "");
-        } else if (mIsDoCoMo) {
+        } else if (mProfile.isDoCoMo) {
             appendLine(VCardConstants.PROPERTY_N, "");
         }
 
-        appendPhoneticNameFields(contentValues);
+        appendPhoneticNameFields(phoneticFamilyName, phoneticMiddleName, phoneticGivenName);
         return this;
     }
 
     private void buildSinglePartNameField(String property, String part) {
-        final boolean reallyUseQuotedPrintable =
-                (!mRefrainsQPToNameProperties &&
-                        !VCardUtils.containsOnlyNonCrLfPrintableAscii(part));
-        final String encodedPart = reallyUseQuotedPrintable ?
-                encodeQuotedPrintable(part) :
-                escapeCharacters(part);
+        final StringBuilder escapedPart = mValueBuffer;
+        escapedPart.setLength(0);
+        final int flags = mValueScanner.escape(part, escapedPart);
+        final boolean reallyUseQuotedPrintable = !mProfile.refrainsQPToNameProperties &&
+                (flags & VCardValueScanner.NEEDS_QUOTED_PRINTABLE) != 0;
 
         mBuilder.append(property);
 
         // Note: "CHARSET" param is not allowed in vCard 3.0, but we may add it
         //       when it would be useful or necessary for external importers,
         //       assuming the external importer allows this vioration of the spec.
-        if (shouldAppendCharsetParam(part)) {
+        if (shouldAppendCharsetParam(flags)) {
             mBuilder.append(VCARD_PARAM_SEPARATOR);
             mBuilder.append(mVCardCharsetParameter);
         }
@@ -527,24 +525,23 @@ public class VCardBuilder {
             mBuilder.append(VCARD_PARAM_ENCODING_QP);
         }
         mBuilder.append(VCARD_DATA_SEPARATOR);
-        mBuilder.append(encodedPart);
+        if (reallyUseQuotedPrintable) {
+            appendQuotedPrintable(mBuilder, part);
+        } else {
+            mBuilder.append(escapedPart);
+        }
     }
 
     /**
      * Emits SOUND;IRMC, SORT-STRING, and de-fact values for phonetic names like X-PHONETIC-FAMILY.
      */
-    private void appendPhoneticNameFields(final ContentValues contentValues) {
+    private void appendPhoneticNameFields(final String tmpPhoneticFamilyName,
+            final String tmpPhoneticMiddleName, final String tmpPhoneticGivenName) {
         final String phoneticFamilyName;
         final String phoneticMiddleName;
         final String phoneticGivenName;
         {
-            final String tmpPhoneticFamilyName =
-                contentValues.getAsString(StructuredName.PHONETIC_FAMILY_NAME);
-            final String tmpPhoneticMiddleName =
-                contentValues.getAsString(StructuredName.PHONETIC_MIDDLE_NAME);
-            final String tmpPhoneticGivenName =
-                contentValues.getAsString(StructuredName.PHONETIC_GIVEN_NAME);
-            if (mNeedsToConvertPhoneticString) {
+            if (mProfile.needsToConvertPhoneticString) {
                 phoneticFamilyName = VCardUtils.toHalfWidthString(tmpPhoneticFamilyName);
                 phoneticMiddleName = VCardUtils.toHalfWidthString(tmpPhoneticMiddleName);
                 phoneticGivenName = VCardUtils.toHalfWidthString(tmpPhoneticGivenName);
@@ -558,7 +555,7 @@ public class VCardBuilder {
         if (TextUtils.isEmpty(phoneticFamilyName)
                 && TextUtils.isEmpty(phoneticMiddleName)
                 && TextUtils.isEmpty(phoneticGivenName)) {
-            if (mIsDoCoMo) {
+            if (mProfile.isDoCoMo) {
                 mBuilder.append(VCardConstants.PROPERTY_SOUND);
                 mBuilder.append(VCARD_PARAM_SEPARATOR);
                 mBuilder.append(VCardConstants.PARAM_TYPE_X_IRMC_N);
@@ -572,14 +569,14 @@ public class VCardBuilder {
             return;
         }
 
-        if (VCardConfig.isVersion40(mVCardType)) {
+        if (mProfile.isVersion40) {
             // We don't want SORT-STRING anyway.
-        } else if (VCardConfig.isVersion30(mVCardType)) {
+        } else if (mProfile.isVersion30) {
             final String sortString =
                     VCardUtils.constructNameFromElements(mVCardType,
                             phoneticFamilyName, phoneticMiddleName, phoneticGivenName);
             mBuilder.append(VCardConstants.PROPERTY_SORT_STRING);
-            if (VCardConfig.isVersion30(mVCardType) && shouldAppendCharsetParam(sortString)) {
+            if (mProfile.isVersion30 && shouldAppendCharsetParam(sortString)) {
                 // vCard 3.0 does not force us to use UTF-8 and actually we see some
                 // programs which emit this value. It is incorrect from the view of
                 // specification, but actually necessary for parsing vCard with non-UTF-8
@@ -590,7 +587,7 @@ public class VCardBuilder {
             mBuilder.append(VCARD_DATA_SEPARATOR);
             mBuilder.append(escapeCharacters(sortString));
             mBuilder.append(VCARD_END_OF_LINE);
-        } else if (mIsJapaneseMobilePhone) {
+        } else if (mProfile.needsToConvertPhoneticString) {
             // Note: There is no appropriate property for expressing
             //       phonetic name (Yomigana in Japanese) in vCard 2.1, while there is in
             //       vCard 3.0 (SORT-STRING).
@@ -609,7 +606,7 @@ public class VCardBuilder {
             mBuilder.append(VCardConstants.PARAM_TYPE_X_IRMC_N);
 
             boolean reallyUseQuotedPrintable =
-                (!mRefrainsQPToNameProperties
+                (!mProfile.refrainsQPToNameProperties
                         && !(VCardUtils.containsOnlyNonCrLfPrintableAscii(
                                 phoneticFamilyName)
                                 && VCardUtils.containsOnlyNonCrLfPrintableAscii(
@@ -664,10 +661,10 @@ public class VCardBuilder {
             mBuilder.append(VCARD_END_OF_LINE);
         }
 
-        if (mUsesDefactProperty) {
+        if (mProfile.usesDefactProperty) {
             if (!TextUtils.isEmpty(phoneticGivenName)) {
                 final boolean reallyUseQuotedPrintable =
-                    (mShouldUseQuotedPrintable &&
+                    (mProfile.shouldUseQuotedPrintable &&
                             !VCardUtils.containsOnlyNonCrLfPrintableAscii(phoneticGivenName));
                 final String encodedPhoneticGivenName;
                 if (reallyUseQuotedPrintable) {
@@ -690,7 +687,7 @@ public class VCardBuilder {
             }  // if (!TextUtils.isEmpty(phoneticGivenName))
             if (!TextUtils.isEmpty(phoneticMiddleName)) {
                 final boolean reallyUseQuotedPrintable =
-                    (mShouldUseQuotedPrintable &&
+                    (mProfile.shouldUseQuotedPrintable &&
                             !VCardUtils.containsOnlyNonCrLfPrintableAscii(phoneticMiddleName));
                 final String encodedPhoneticMiddleName;
                 if (reallyUseQuotedPrintable) {
@@ -713,7 +710,7 @@ public class VCardBuilder {
             }  // if (!TextUtils.isEmpty(phoneticGivenName))
             if (!TextUtils.isEmpty(phoneticFamilyName)) {
                 final boolean reallyUseQuotedPrintable =
-                    (mShouldUseQuotedPrintable &&
+                    (mProfile.shouldUseQuotedPrintable &&
                             !VCardUtils.containsOnlyNonCrLfPrintableAscii(phoneticFamilyName));
                 final String encodedPhoneticFamilyName;
                 if (reallyUseQuotedPrintable) {
@@ -741,95 +738,20 @@ public class VCardBuilder {
             VCardPhoneNumberTranslationCallback translationCallback) {
         boolean phoneLineExists = false;
         if (contentValuesList != null) {
-            Set<String> phoneSet = new HashSet<>();
+            mPhoneNumbers.clear();
             for (ContentValues contentValues : contentValuesList) {
                 final Integer typeAsObject = contentValues.getAsInteger(Phone.TYPE);
                 final String label = contentValues.getAsString(Phone.LABEL);
                 final Integer isPrimaryAsInteger = contentValues.getAsInteger(Phone.IS_PRIMARY);
                 final boolean isPrimary = (isPrimaryAsInteger != null ?
                         (isPrimaryAsInteger > 0) : false);
-                String phoneNumber = contentValues.getAsString(Phone.NUMBER);
-                if (phoneNumber != null) {
-                    phoneNumber = phoneNumber.trim();
-                }
-                if (TextUtils.isEmpty(phoneNumber)) {
-                    continue;
-                }
-
                 final int type = (typeAsObject != null ? typeAsObject : DEFAULT_PHONE_TYPE);
-                // Note: We prioritize this callback over FLAG_REFRAIN_PHONE_NUMBER_FORMATTING
-                // intentionally. In the future the flag will be replaced by callback
-                // mechanism entirely.
-                if (translationCallback != null) {
-                    phoneNumber = translationCallback.onValueReceived(
-                            phoneNumber, type, label, isPrimary);
-                    if (!phoneSet.contains(phoneNumber)) {
-                        phoneSet.add(phoneNumber);
-                        appendTelLine(type, label, phoneNumber, isPrimary);
-                    }
-                } else if (type == Phone.TYPE_PAGER ||
-                        VCardConfig.refrainPhoneNumberFormatting(mVCardType)) {
-                    // Note: PAGER number needs unformatted "phone number".
-                    phoneLineExists = true;
-                    if (!phoneSet.contains(phoneNumber)) {
-                        phoneSet.add(phoneNumber);
-                        appendTelLine(type, label, phoneNumber, isPrimary);
-                    }
-                } else {
-                    final List<String> phoneNumberList = splitPhoneNumbers(phoneNumber);
-                    if (phoneNumberList.isEmpty()) {
-                        continue;
-                    }
-                    phoneLineExists = true;
-                    for (String actualPhoneNumber : phoneNumberList) {
-                        if (!phoneSet.contains(actualPhoneNumber)) {
-                            // 'p' and 'w' are the standard characters for pause and wait
-                            // (see RFC 3601)
-                            // so use those when exporting phone numbers via vCard.
-                            String numberWithControlSequence = actualPhoneNumber
-                                    .replace(PhoneNumberUtils.PAUSE, 'p')
-                                    .replace(PhoneNumberUtils.WAIT, 'w');
-                            String formatted;
-                            // TODO: remove this code and relevant test cases. vCard and any other
-                            // codes using it shouldn't rely on the formatter here.
-                            if (TextUtils.equals(numberWithControlSequence, actualPhoneNumber)) {
-                                StringBuilder digitsOnlyBuilder = new StringBuilder();
-                                final int length = actualPhoneNumber.length();
-                                for (int i = 0; i < length; i++) {
-                                    final char ch = actualPhoneNumber.charAt(i);
-                                    if (Character.isDigit(ch) || ch == '+') {
-                                        digitsOnlyBuilder.append(ch);
-                                    }
-                                }
-                                final int phoneFormat =
-                                        VCardUtils.getPhoneNumberFormat(mVCardType);
-                                formatted = VCardUtils.PhoneNumberUtilsPort.formatNumber(
-                                        digitsOnlyBuilder.toString(), phoneFormat);
-                            } else {
-                                // Be conservative.
-                                formatted = numberWithControlSequence;
-                            }
-
-                            // In vCard 4.0, value type must be "a single URI value",
-                            // not just a phone number. (Based on vCard 4.0 rev.13)
-                            if (VCardConfig.isVersion40(mVCardType)
-                                    && !TextUtils.isEmpty(formatted)
-                                    && !formatted.startsWith("tel:")) {
-                                formatted = "tel:" + formatted;
-                            }
-
-                            // Pre-formatted string should be stored.
-                            phoneSet.add(actualPhoneNumber);
-                            appendTelLine(type, label, formatted, isPrimary);
-                        }
-                    }  // for (String actualPhoneNumber : phoneNumberList) {
-
-                    // TODO: TEL with SIP URI?
-                }
+                phoneLineExists |= appendPhone(type, label, contentValues.getAsString(Phone.NUMBER),
+                        isPrimary, translationCallback);
             }
         }
 
-        if (!phoneLineExists && mIsDoCoMo) {
+        if (!phoneLineExists && mProfile.isDoCoMo) {
             appendTelLine(Phone.TYPE_HOME, "", "", false);
         }
 
@@ -837,48 +759,138 @@ public class VCardBuilder {
     }
 
     /**
-     * <p>
-     * Splits a given string expressing phone numbers into several strings, and remove
-     * unnecessary characters inside them. The size of a returned list becomes 1 when
-     * no split is needed.
-     * </p>
-     * <p>
-     * The given number "may" have several phone numbers when the contact entry is corrupted
-     * because of its original source.
-     * e.g. "111-222-3333 (Miami)\n444-555-6666 (Broward; 305-653-6796 (Miami)"
-     * </p>
-     * <p>
-     * This kind of "phone numbers" will not be created with Android vCard implementation,
-     * but we may encounter them if the source of the input data has already corrupted
-     * implementation.
-     * </p>
-     * <p>
-     * To handle this case, this method first splits its input into multiple parts
-     * (e.g. "111-222-3333 (Miami)", "444-555-6666 (Broward", and 305653-6796 (Miami)") and
-     * removes unnecessary strings like "(Miami)".
-     * </p>
-     * <p>
-     * Do not call this method when trimming is inappropriate for its receivers.
-     * </p>
+     * Row based variant of {@link #appendPhones(List, VCardPhoneNumberTranslationCallback)},
+     * used when contacts are read straight from a cursor into {@link ContactDataRow}s.
      */
-    private List<String> splitPhoneNumbers(final String phoneNumber) {
-        final List<String> phoneList = new ArrayList<>();
-
-        StringBuilder builder = new StringBuilder();
-        final int length = phoneNumber.length();
-        for (int i = 0; i < length; i++) {
-            final char ch = phoneNumber.charAt(i);
-            if (ch == '\n' && builder.length() > 0) {
-                phoneList.add(builder.toString());
-                builder = new StringBuilder();
-            } else {
-                builder.append(ch);
+    public VCardBuilder appendPhoneRows(final List<ContactDataRow> rows,
+            VCardPhoneNumberTranslationCallback translationCallback) {
+        boolean phoneLineExists = false;
+        if (rows != null) {
+            mPhoneNumbers.clear();
+            for (int i = 0; i < rows.size(); i++) {
+                final ContactDataRow row = rows.get(i);
+                final int type = (row.hasPhoneType ? row.phoneType : DEFAULT_PHONE_TYPE);
+                phoneLineExists |= appendPhone(type, row.phoneLabel, row.phoneNumber,
+                        row.isPrimary, translationCallback);
             }
         }
-        if (builder.length() > 0) {
-            phoneList.add(builder.toString());
+
+        if (!phoneLineExists && mProfile.isDoCoMo) {
+            appendTelLine(Phone.TYPE_HOME, "", "", false);
         }
-        return phoneList;
+
+        return this;
+    }
+
+    /**
+     * Appends the TEL lines of a phone number. Numbers are deduplicated across the phone
+     * rows of the contact by the value they are emitted as, so numbers which are
+     * only formatted differently produce one TEL line while distinct numbers, such as vanity
+     * numbers which differ only in their letters, are all kept.
+     *
+     * @return true when the phone number counts as an emitted TEL line.
+     */
+    private boolean appendPhone(final int type, final String label, String phoneNumber,
+            final boolean isPrimary, VCardPhoneNumberTranslationCallback translationCallback) {
+        if (phoneNumber != null) {
+            phoneNumber = phoneNumber.trim();
+        }
+        if (TextUtils.isEmpty(phoneNumber)) {
+            return false;
+        }
+
+        // Note: We prioritize this callback over FLAG_REFRAIN_PHONE_NUMBER_FORMATTING
+        // intentionally. In the future the flag will be replaced by callback
+        // mechanism entirely.
+        if (translationCallback != null) {
+            phoneNumber = translationCallback.onValueReceived(
+                    phoneNumber, type, label, isPrimary);
+            if (mPhoneNumbers.add(phoneNumber)) {
+                appendTelLine(type, label, phoneNumber, isPrimary);
+            }
+            return false;
+        } else if (type == Phone.TYPE_PAGER ||
+                mProfile.refrainsPhoneNumberFormatting) {
+            // Note: PAGER number needs unformatted "phone number".
+            if (mPhoneNumbers.add(phoneNumber)) {
+                appendTelLine(type, label, phoneNumber, isPrimary);
+            }
+            return true;
+        }
+
+        if (phoneNumber.indexOf('\n') < 0) {
+            // Nearly every entry holds a single number, which needs no splitting.
+            appendSplitPhoneNumber(type, label, phoneNumber, isPrimary);
+            return true;
+        }
+
+        final List<String> phoneNumberList = VCardEncodingUtils.splitPhoneNumbers(phoneNumber);
+        if (phoneNumberList.isEmpty()) {
+            return false;
+        }
+        for (String actualPhoneNumber : phoneNumberList) {
+            appendSplitPhoneNumber(type, label, actualPhoneNumber, isPrimary);
+        }
+
+        // TODO: TEL with SIP URI?
+        return true;
+    }
+
+    private void appendSplitPhoneNumber(final int type, final String label,
+            final String actualPhoneNumber, final boolean isPrimary) {
+        String formatted;
+        if (mProfile.normalizesPhoneNumbers) {
+            if (!mPhoneNumbers.addNormalized(actualPhoneNumber)) {
+                return;
+            }
+            formatted = VCardEncodingUtils.normalizePhoneNumber(actualPhoneNumber);
+            if (formatted.isEmpty()) {
+                return;
+            }
+            if (mProfile.isVersion40) {
+                formatted = "tel:" + formatted;
+            }
+            appendTelLine(type, label, formatted, isPrimary);
+            return;
+        }
+
+        // 'p' and 'w' are the standard characters for pause and wait
+        // (see RFC 3601)
+        // so use those when exporting phone numbers via vCard.
+        String numberWithControlSequence = actualPhoneNumber
+                .replace(PhoneNumberUtils.PAUSE, 'p')
+                .replace(PhoneNumberUtils.WAIT, 'w');
+        // TODO: remove this code and relevant test cases. vCard and any other
+        // codes using it shouldn't rely on the formatter here.
+        if (TextUtils.equals(numberWithControlSequence, actualPhoneNumber)) {
+            StringBuilder digitsOnlyBuilder = new StringBuilder();
+            final int length = actualPhoneNumber.length();
+            for (int i = 0; i < length; i++) {
+                final char ch = actualPhoneNumber.charAt(i);
+                if (Character.isDigit(ch) || ch == '+') {
+                    digitsOnlyBuilder.append(ch);
+                }
+            }
+            final int phoneFormat = mProfile.phoneNumberFormat;
+            formatted = VCardUtils.PhoneNumberUtilsPort.formatNumber(
+                    digitsOnlyBuilder.toString(), phoneFormat);
+        } else {
+            // Be conservative.
+            formatted = numberWithControlSequence;
+        }
+        if (!mPhoneNumbers.add(formatted)) {
+            return;
+        }
+
+        // In vCard 4.0, value type must be "a single URI value",
+        // not just a phone number. (Based on vCard 4.0 rev.13)
+        if (mProfile.isVersion40
+                && !TextUtils.isEmpty(formatted)
+                && !formatted.startsWith("tel:")) {
+            formatted = "tel:" + formatted;
+        }
+
+        appendTelLine(type, label, formatted, isPrimary);
     }
 
     public VCardBuilder appendEmails(final List<ContentValues> contentValuesList) {
@@ -908,7 +920,7 @@ public class VCardBuilder {
             }
         }
 
-        if (!emailAddressExists && mIsDoCoMo) {
+        if (!emailAddressExists && mProfile.isDoCoMo) {
             appendEmailLine(Email.TYPE_HOME, "", "", false);
         }
 
@@ -1004,7 +1016,7 @@ public class VCardBuilder {
                 break;
             }
             case Phone.TYPE_PAGER: {
-                if (mIsDoCoMo) {
+                if (mProfile.isDoCoMo) {
                     // Not sure about the reason, but previous implementation had
                     // used "VOICE" instead of "PAGER"
                     parameterList.add(VCardConstants.PARAM_TYPE_VOICE);
@@ -1051,7 +1063,7 @@ public class VCardBuilder {
             case Phone.TYPE_WORK_PAGER: {
                 parameterList.add(VCardConstants.PARAM_TYPE_WORK);
                 // See above.
-                if (mIsDoCoMo) {
+                if (mProfile.isDoCoMo) {
                     parameterList.add(VCardConstants.PARAM_TYPE_VOICE);
                 } else {
                     parameterList.add(VCardConstants.PARAM_TYPE_PAGER);
@@ -1068,7 +1080,7 @@ public class VCardBuilder {
                     parameterList.add(VCardConstants.PARAM_TYPE_VOICE);
                 } else if (VCardUtils.isMobilePhoneLabel(label)) {
                     parameterList.add(VCardConstants.PARAM_TYPE_CELL);
-                } else if (mIsV30OrV40) {
+                } else if (mProfile.isV30OrV40) {
                     // This label is appropriately encoded in appendTypeParameters.
                     parameterList.add(label);
                 } else {
@@ -1109,7 +1121,7 @@ public class VCardBuilder {
      * Appends phone type string which may not be available in some devices.
      */
     private void appendUncommonPhoneType(final StringBuilder builder, final Integer type) {
-        if (mIsDoCoMo) {
+        if (mProfile.isDoCoMo) {
             // The previous implementation for DoCoMo had been conservative
             // about miscellaneous types.
             builder.append(VCardConstants.PARAM_TYPE_VOICE);
@@ -1125,13 +1137,14 @@ public class VCardBuilder {
 
     public void appendLineWithCharsetAndQPDetection(final String propertyName,
             final List<String> parameterList, final String rawValue) {
-        final boolean needCharset =
-                !VCardUtils.containsOnlyPrintableAscii(rawValue);
-        final boolean reallyUseQuotedPrintable =
-                (mShouldUseQuotedPrintable &&
-                        !VCardUtils.containsOnlyNonCrLfPrintableAscii(rawValue));
-        appendLine(propertyName, parameterList,
-                rawValue, needCharset, reallyUseQuotedPrintable);
+        final StringBuilder escapedValue = mValueBuffer;
+        escapedValue.setLength(0);
+        final int flags = mValueScanner.escape(rawValue, escapedValue);
+        final boolean needCharset = (flags & VCardValueScanner.NEEDS_CHARSET) != 0;
+        final boolean reallyUseQuotedPrintable = mProfile.shouldUseQuotedPrintable &&
+                (flags & VCardValueScanner.NEEDS_QUOTED_PRINTABLE) != 0;
+        appendLine(propertyName, parameterList, rawValue, escapedValue,
+                needCharset, reallyUseQuotedPrintable);
     }
 
     /**
@@ -1150,6 +1163,16 @@ public class VCardBuilder {
     public void appendLine(final String propertyName, final List<String> parameterList,
             final String rawValue, final boolean needCharset,
             boolean reallyUseQuotedPrintable) {
+        appendLine(propertyName, parameterList, rawValue, null, needCharset,
+                reallyUseQuotedPrintable);
+    }
+
+    /**
+     * @param escapedValue rawValue already escaped, or null to escape it here
+     */
+    private void appendLine(final String propertyName, final List<String> parameterList,
+            final String rawValue, final CharSequence escapedValue, final boolean needCharset,
+            boolean reallyUseQuotedPrintable) {
         mBuilder.append(propertyName);
         if (parameterList != null && parameterList.size() > 0) {
             mBuilder.append(VCARD_PARAM_SEPARATOR);
@@ -1160,19 +1183,22 @@ public class VCardBuilder {
             mBuilder.append(mVCardCharsetParameter);
         }
 
-        final String encodedValue;
         if (reallyUseQuotedPrintable) {
             mBuilder.append(VCARD_PARAM_SEPARATOR);
             mBuilder.append(VCARD_PARAM_ENCODING_QP);
-            encodedValue = encodeQuotedPrintable(rawValue);
+            mBuilder.append(VCARD_DATA_SEPARATOR);
+            appendQuotedPrintable(mBuilder, rawValue);
         } else {
             // TODO: one line may be too huge, which may be invalid in vCard spec, though
             //       several (even well-known) applications do not care that violation.
-            encodedValue = escapeCharacters(rawValue);
+            mBuilder.append(VCARD_DATA_SEPARATOR);
+            if (escapedValue != null) {
+                mBuilder.append(escapedValue);
+            } else {
+                mValueScanner.escape(rawValue, mBuilder);
+            }
         }
 
-        mBuilder.append(VCARD_DATA_SEPARATOR);
-        mBuilder.append(encodedValue);
         mBuilder.append(VCARD_END_OF_LINE);
     }
 
@@ -1184,8 +1210,8 @@ public class VCardBuilder {
         // which would be recommended way in vcard 3.0 though not valid in vCard 2.1.
         boolean first = true;
         for (final String typeValue : types) {
-            if (VCardConfig.isVersion30(mVCardType) || VCardConfig.isVersion40(mVCardType)) {
-                final String encoded = (VCardConfig.isVersion40(mVCardType) ?
+            if (mProfile.isV30OrV40) {
+                final String encoded = (mProfile.isVersion40 ?
                         VCardUtils.toStringAsV40ParamValue(typeValue) :
                         VCardUtils.toStringAsV30ParamValue(typeValue));
                 if (TextUtils.isEmpty(encoded)) {
@@ -1221,14 +1247,8 @@ public class VCardBuilder {
 
     private void appendTypeParameter(final StringBuilder builder, final String type) {
         // Refrain from using appendType() so that "TYPE=" is not be appended when the
-        // device is DoCoMo's (just for safety).
-        //
-        // Note: In vCard 3.0, Type strings also can be like this: "TYPE=HOME,PREF"
-        if (VCardConfig.isVersion40(mVCardType) ||
-                ((VCardConfig.isVersion30(mVCardType) || mAppendTypeParamName) && !mIsDoCoMo)) {
-            builder.append(VCardConstants.PARAM_TYPE).append(VCARD_PARAM_EQUAL);
-        }
-        builder.append(type);
+        // device is DoCoMo's (just for safety). See VCardTypeProfile#typeParamPrefix.
+        builder.append(mProfile.typeParamPrefix).append(type);
     }
 
     /**
@@ -1256,12 +1276,33 @@ public class VCardBuilder {
         return false;
     }
 
+    /**
+     * @param valueFlags flags returned by {@link VCardValueScanner#escape}
+     */
+    private boolean shouldAppendCharsetParam(int valueFlags) {
+        return mShouldAppendCharsetParam && (valueFlags & VCardValueScanner.NEEDS_CHARSET) != 0;
+    }
+
     private String encodeQuotedPrintable(final String str) {
         if (TextUtils.isEmpty(str)) {
             return "";
         }
 
-        final StringBuilder builder = new StringBuilder();
+        final StringBuilder builder = new StringBuilder(str.length() * 9);
+        appendQuotedPrintable(builder, str);
+        return builder.toString();
+    }
+
+    /**
+     * Appends the Quoted-Printable encoding of the given string to the given builder. Every
+     * byte is encoded as "=XX" using {@link #QP_HEX_DIGITS}, which avoids a formatter and a
+     * temporary String per byte.
+     */
+    private void appendQuotedPrintable(final StringBuilder builder, final String str) {
+        if (TextUtils.isEmpty(str)) {
+            return;
+        }
+
         int index = 0;
         int lineCount = 0;
         byte[] strArray = null;
@@ -1273,8 +1314,13 @@ public class VCardBuilder {
                     + "Try default charset");
             strArray = str.getBytes();
         }
+        builder.ensureCapacity(builder.length() + strArray.length * 3
+                + strArray.length / 22 * 3);
         while (index < strArray.length) {
-            builder.append(String.format("=%02X", strArray[index]));
+            final int b = strArray[index] & 0xff;
+            builder.append('=')
+                    .append(QP_HEX_DIGITS[b >> 4])
+                    .append(QP_HEX_DIGITS[b & 0x0f]);
             index += 1;
             lineCount += 3;
 
@@ -1290,8 +1336,6 @@ public class VCardBuilder {
                 lineCount = 0;
             }
         }
-
-        return builder.toString();
     }
 
     /**
@@ -1300,79 +1344,58 @@ public class VCardBuilder {
      *
      * Note that Quoted-Printable string must not be input here.
      */
-    @SuppressWarnings("fallthrough")
     private String escapeCharacters(final String unescaped) {
         if (TextUtils.isEmpty(unescaped)) {
             return "";
         }
 
-        final StringBuilder tmpBuilder = new StringBuilder();
-        final int length = unescaped.length();
-        for (int i = 0; i < length; i++) {
-            final char ch = unescaped.charAt(i);
-            switch (ch) {
-                case ';': {
-                    tmpBuilder.append('\\');
-                    tmpBuilder.append(';');
-                    break;
-                }
-                case '\r': {
-                    if (i + 1 < length) {
-                        char nextChar = unescaped.charAt(i);
-                        if (nextChar == '\n') {
-                            break;
-                        } else {
-                            // fall through
-                        }
-                    } else {
-                        // fall through
-                    }
-                }
-                case '\n': {
-                    // In vCard 2.1, there's no specification about this, while
-                    // vCard 3.0 explicitly requires this should be encoded to "\n".
-                    tmpBuilder.append("\\n");
-                    break;
-                }
-                case '\\': {
-                    if (mIsV30OrV40) {
-                        tmpBuilder.append("\\\\");
-                        break;
-                    } else {
-                        // fall through
-                    }
-                }
-                case '<':
-                case '>': {
-                    if (mIsDoCoMo) {
-                        tmpBuilder.append('\\');
-                        tmpBuilder.append(ch);
-                    } else {
-                        tmpBuilder.append(ch);
-                    }
-                    break;
-                }
-                case ',': {
-                    if (mIsV30OrV40) {
-                        tmpBuilder.append("\\,");
-                    } else {
-                        tmpBuilder.append(ch);
-                    }
-                    break;
-                }
-                default: {
-                    tmpBuilder.append(ch);
-                    break;
-                }
-            }
-        }
+        final StringBuilder tmpBuilder = new StringBuilder(unescaped.length() + 8);
+        mValueScanner.escape(unescaped, tmpBuilder);
         return tmpBuilder.toString();
     }
 
     @Override
     public String toString() {
+        appendEndIfNeeded();
+        return mBuilder.toString();
+    }
+
+    /**
+     * Returns the finished vCard without copying it. The returned sequence is backed by the
+     * output buffer, so it is only valid until the next call to {@link #clear()}.
+     */
+    public CharSequence getVCard() {
+        appendEndIfNeeded();
+        return mBuilder;
+    }
+
+    /**
+     * Returns the finished vCard encoded as UTF-8, without creating an intermediate String.
+     */
+    public byte[] toUtf8Bytes() {
+        appendEndIfNeeded();
+        final byte[] bytes = new byte[VCardEncodingUtils.getUtf8Length(mBuilder)];
+        VCardEncodingUtils.encodeUtf8(mBuilder, bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * Writes the finished vCard to the given sink encoded as UTF-8. The encoding buffer is
+     * reused across vCards.
+     */
+    public void writeUtf8To(OutputStream out) throws IOException {
+        appendEndIfNeeded();
+        final int length = VCardEncodingUtils.getUtf8Length(mBuilder);
+        if (mUtf8Buffer == null || mUtf8Buffer.length < length) {
+            mUtf8Buffer = new byte[Math.max(length, mBuilder.capacity())];
+        }
+        VCardEncodingUtils.encodeUtf8(mBuilder, mUtf8Buffer, 0);
+        out.write(mUtf8Buffer, 0, length);
+    }
+
+    private void appendEndIfNeeded() {
         if (!mEndAppended) {
-            if (mIsDoCoMo) {
+            if (mProfile.isDoCoMo) {
                 appendLine(VCardConstants.PROPERTY_X_CLASS, VCARD_DATA_PUBLIC);
                 appendLine(VCardConstants.PROPERTY_X_REDUCTION, "");
                 appendLine(VCardConstants.PROPERTY_X_NO, "");
@@ -1381,6 +1404,5 @@ public class VCardBuilder {
             appendLine(VCardConstants.PROPERTY_END, VCARD_DATA_VCARD);
             mEndAppended = true;
         }
-        return mBuilder.toString();
     }
 }
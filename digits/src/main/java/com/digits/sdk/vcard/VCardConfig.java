@@ -237,6 +237,22 @@ public class VCardConfig {
      */
     public static final int FLAG_REFRAIN_PHONE_NUMBER_FORMATTING = 0x02000000;
 
+    /**
+     * <p>
+     * The flag indicating the vCard composer emits phone numbers in a canonical form instead of
+     * formatting them for display: the digits of the number, a leading '+' if the number
+     * has one, and 'p' and 'w' for pauses and waits. A number stored in international
+     * format is thus emitted in E.164 form, e.g. "+1 (415) 555-0100" becomes
+     * "+14155550100".
+     * </p>
+     * <p>
+     * This is much cheaper than the formatting, and intended for consumers which normalize
+     * phone numbers themselves. {@link #FLAG_REFRAIN_PHONE_NUMBER_FORMATTING} takes precedence
+     * over this flag.
+     * </p>
+     */
+    public static final int FLAG_NORMALIZE_PHONE_NUMBERS = 0x01000000;
+
     /**
      * <P>
      * The flag asking exporter to refrain image export.
@@ -461,6 +477,10 @@ public class VCardConfig {
         return ((vcardType & FLAG_REFRAIN_PHONE_NUMBER_FORMATTING) != 0);
     }
 
+    /* package */ static boolean normalizesPhoneNumbers(final int vcardType) {
+        return ((vcardType & FLAG_NORMALIZE_PHONE_NUMBERS) != 0);
+    }
+
     public static boolean needsToConvertPhoneticString(final int vcardType) {
         return ((vcardType & FLAG_CONVERT_PHONETIC_NAME_STRINGS) != 0);
     }
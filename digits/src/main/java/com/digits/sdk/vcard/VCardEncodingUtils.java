@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.digits.sdk.vcard;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The phone number and UTF-8 helpers of the vCard and the compact contact encodings. Unlike
+ * {@link VCardUtils}, this class uses no Android classes, so it also runs on a plain JVM.
+ */
+public final class VCardEncodingUtils {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // android.telephony.PhoneNumberUtils#PAUSE and #WAIT
+    private static final char PAUSE = ',';
+    private static final char WAIT = ';';
+
+    /**
+     * Reduces a phone number to the canonical form emitted with
+     * {@link VCardConfig#FLAG_NORMALIZE_PHONE_NUMBERS}: its digits, a leading '+' if the number
+     * starts with one, and 'p' and 'w' for pauses and waits. All other characters, such as
+     * separators and letters, are dropped. Digits of other scripts become ASCII digits.
+     *
+     * @return the normalized number, empty if it has no digits
+     */
+    public static String normalizePhoneNumber(final String phoneNumber) {
+        final int length = phoneNumber.length();
+        final char[] normalized = new char[length];
+        int count = 0;
+        boolean hasDigit = false;
+        for (int i = 0; i < length; i++) {
+            final char ch = phoneNumber.charAt(i);
+            if (ch >= '0' && ch <= '9') {
+                normalized[count++] = ch;
+                hasDigit = true;
+            } else if (ch == '+') {
+                if (count == 0) {
+                    normalized[count++] = ch;
+                }
+            } else if (ch == PAUSE) {
+                normalized[count++] = 'p';
+            } else if (ch == WAIT) {
+                normalized[count++] = 'w';
+            } else if (ch >= 0x80 && Character.isDigit(ch)) {
+                normalized[count++] = (char) ('0' + Character.digit(ch, 10));
+                hasDigit = true;
+            }
+        }
+        return hasDigit ? new String(normalized, 0, count) : "";
+    }
+
+    /**
+     * <p>
+     * Splits a given string expressing phone numbers into several strings, and remove
+     * unnecessary characters inside them. The size of a returned list becomes 1 when
+     * no split is needed.
+     * </p>
+     * <p>
+     * The given number "may" have several phone numbers when the contact entry is corrupted
+     * because of its original source.
+     * e.g. "111-222-3333 (Miami)\n444-555-6666 (Broward; 305-653-6796 (Miami)"
+     * </p>
+     * <p>
+     * This kind of "phone numbers" will not be created with Android vCard implementation,
+     * but we may encounter them if the source of the input data has already corrupted
+     * implementation.
+     * </p>
+     * <p>
+     * To handle this case, this method first splits its input into multiple parts
+     * (e.g. "111-222-3333 (Miami)", "444-555-6666 (Broward", and 305653-6796 (Miami)") and
+     * removes unnecessary strings like "(Miami)".
+     * </p>
+     * <p>
+     * Do not call this method when trimming is inappropriate for its receivers.
+     * </p>
+     */
+    public static List<String> splitPhoneNumbers(final String phoneNumber) {
+        final List<String> phoneList = new ArrayList<>();
+
+        final int length = phoneNumber.length();
+        // Start of the current part. A line break at the start of a part belongs to it.
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            if (phoneNumber.charAt(i) == '\n' && i > start) {
+                phoneList.add(phoneNumber.substring(start, i));
+                start = i + 1;
+            }
+        }
+        if (start < length) {
+            phoneList.add(phoneNumber.substring(start));
+        }
+        return phoneList;
+    }
+
+    /**
+     * Returns the {@link #hashPhoneNumber(String)} of {@link #normalizePhoneNumber(String)} of
+     * the given number, without creating the normalized string, so that numbers which differ
+     * only in formatting have the same hash. A number without digits is hashed as it is.
+     */
+    public static long hashNormalizedPhoneNumber(final String phoneNumber) {
+        long hash = FNV_OFFSET_BASIS;
+        boolean hasDigit = false;
+        boolean isFirst = true;
+        final int length = phoneNumber.length();
+        for (int i = 0; i < length; i++) {
+            final char ch = phoneNumber.charAt(i);
+            final char normalized;
+            if (ch >= '0' && ch <= '9') {
+                normalized = ch;
+                hasDigit = true;
+            } else if (ch == '+') {
+                if (!isFirst) {
+                    continue;
+                }
+                normalized = ch;
+            } else if (ch == PAUSE) {
+                normalized = 'p';
+            } else if (ch == WAIT) {
+                normalized = 'w';
+            } else if (ch >= 0x80 && Character.isDigit(ch)) {
+                normalized = (char) ('0' + Character.digit(ch, 10));
+                hasDigit = true;
+            } else {
+                continue;
+            }
+            isFirst = false;
+            // Normalized numbers are ASCII, one byte per char
+            hash = (hash ^ normalized) * FNV_PRIME;
+        }
+        return hasDigit ? hash : hashPhoneNumber(phoneNumber);
+    }
+
+    /**
+     * Returns a 64-bit FNV-1a hash of the chars of the given number exactly as they are.
+     */
+    public static long hashPhoneNumber(final String phoneNumber) {
+        long hash = FNV_OFFSET_BASIS;
+        final int length = phoneNumber.length();
+        for (int i = 0; i < length; i++) {
+            hash = (hash ^ phoneNumber.charAt(i)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the number of bytes {@link #encodeUtf8(CharSequence, byte[], int)} writes for
+     * the given text.
+     */
+    public static int getUtf8Length(final CharSequence text) {
+        final int length = text.length();
+        int byteLength = length;
+        for (int i = 0; i < length; i++) {
+            final char ch = text.charAt(i);
+            if (ch < 0x80) {
+                continue;
+            }
+            if (ch < 0x800) {
+                byteLength += 1;
+            } else if (Character.isHighSurrogate(ch) && i + 1 < length
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                // Four bytes for two chars
+                byteLength += 2;
+                i++;
+            } else if (isSurrogate(ch)) {
+                // Unpaired surrogates are replaced with '?', like String#getBytes() does.
+                continue;
+            } else {
+                byteLength += 2;
+            }
+        }
+        return byteLength;
+    }
+
+    /**
+     * Encodes the given text as UTF-8 without creating an intermediate String. The output is
+     * identical to {@code text.toString().getBytes("UTF-8")}.
+     *
+     * @return the offset after the last byte written
+     */
+    public static int encodeUtf8(final CharSequence text, final byte[] dest, int offset) {
+        final int length = text.length();
+        for (int i = 0; i < length; i++) {
+            final char ch = text.charAt(i);
+            if (ch < 0x80) {
+                dest[offset++] = (byte) ch;
+            } else if (ch < 0x800) {
+                dest[offset++] = (byte) (0xc0 | (ch >> 6));
+                dest[offset++] = (byte) (0x80 | (ch & 0x3f));
+            } else if (Character.isHighSurrogate(ch) && i + 1 < length
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(ch, text.charAt(++i));
+                dest[offset++] = (byte) (0xf0 | (codePoint >> 18));
+                dest[offset++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                dest[offset++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                dest[offset++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else if (isSurrogate(ch)) {
+                dest[offset++] = '?';
+            } else {
+                dest[offset++] = (byte) (0xe0 | (ch >> 12));
+                dest[offset++] = (byte) (0x80 | ((ch >> 6) & 0x3f));
+                dest[offset++] = (byte) (0x80 | (ch & 0x3f));
+            }
+        }
+        return offset;
+    }
+
+    // Character#isSurrogate() requires API level 19
+    private static boolean isSurrogate(final char ch) {
+        return ch >= Character.MIN_SURROGATE && ch <= Character.MAX_SURROGATE;
+    }
+
+    private VCardEncodingUtils() {
+    }
+}
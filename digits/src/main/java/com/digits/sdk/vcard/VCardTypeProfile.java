@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.vcard;
+
+import android.util.Log;
+import android.util.SparseArray;
+
+/**
+ * The encoding rules of a vCard type, derived once from its {@link VCardConfig} flags and
+ * shared by every {@link VCardBuilder} of that type, so that building a line does not decode
+ * the type again.
+ */
+final class VCardTypeProfile {
+    private static final SparseArray<VCardTypeProfile> sProfiles = new SparseArray<>();
+
+    final boolean isVersion30;
+    final boolean isVersion40;
+    final boolean isV30OrV40;
+    final boolean isDoCoMo;
+    final boolean shouldUseQuotedPrintable;
+    final boolean usesDefactProperty;
+    final boolean refrainsQPToNameProperties;
+    final boolean refrainsPhoneNumberFormatting;
+    final boolean normalizesPhoneNumbers;
+    final boolean needsToConvertPhoneticString;
+    final int nameOrderType;
+    final int phoneNumberFormat;
+
+    /** BEGIN and VERSION lines every vCard starts with */
+    final String header;
+    /** Written before each TYPE parameter value, either "TYPE=" or empty */
+    final String typeParamPrefix;
+    final VCardValueScanner valueScanner;
+
+    static VCardTypeProfile get(final int vcardType) {
+        synchronized (sProfiles) {
+            VCardTypeProfile profile = sProfiles.get(vcardType);
+            if (profile == null) {
+                profile = new VCardTypeProfile(vcardType);
+                sProfiles.put(vcardType, profile);
+            }
+            return profile;
+        }
+    }
+
+    private VCardTypeProfile(final int vcardType) {
+        isVersion30 = VCardConfig.isVersion30(vcardType);
+        isVersion40 = VCardConfig.isVersion40(vcardType);
+        isV30OrV40 = isVersion30 || isVersion40;
+        isDoCoMo = VCardConfig.isDoCoMo(vcardType);
+        shouldUseQuotedPrintable = VCardConfig.shouldUseQuotedPrintable(vcardType);
+        usesDefactProperty = VCardConfig.usesDefactProperty(vcardType);
+        refrainsQPToNameProperties = VCardConfig.shouldRefrainQPToNameProperties(vcardType);
+        refrainsPhoneNumberFormatting = VCardConfig.refrainPhoneNumberFormatting(vcardType);
+        normalizesPhoneNumbers = VCardConfig.normalizesPhoneNumbers(vcardType);
+        needsToConvertPhoneticString = VCardConfig.needsToConvertPhoneticString(vcardType);
+        nameOrderType = VCardConfig.getNameOrderType(vcardType);
+        phoneNumberFormat = VCardUtils.getPhoneNumberFormat(vcardType);
+
+        final String version;
+        if (isVersion40) {
+            version = VCardConstants.VERSION_V40;
+        } else if (isVersion30) {
+            version = VCardConstants.VERSION_V30;
+        } else {
+            if (!VCardConfig.isVersion21(vcardType)) {
+                Log.w(VCardConstants.LOG_TAG, "Unknown vCard version detected.");
+            }
+            version = VCardConstants.VERSION_V21;
+        }
+        header = VCardConstants.PROPERTY_BEGIN + ":VCARD" + VCardBuilder.VCARD_END_OF_LINE
+                + VCardConstants.PROPERTY_VERSION + ":" + version + VCardBuilder.VCARD_END_OF_LINE;
+
+        // "TYPE=" is not appended when the device is DoCoMo's (just for safety).
+        //
+        // Note: In vCard 3.0, Type strings also can be like this: "TYPE=HOME,PREF"
+        final boolean appendsTypeParamName = isVersion40 ||
+                (VCardConfig.appendTypeParamName(vcardType) && !isDoCoMo);
+        typeParamPrefix = appendsTypeParamName ? VCardConstants.PARAM_TYPE + "=" : "";
+
+        valueScanner = new VCardValueScanner(isV30OrV40, isDoCoMo);
+    }
+}
@@ -26,6 +26,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -454,20 +455,56 @@ public class VCardUtils {
         if (TextUtils.isEmpty(orgString)) {
             return null;
         }
-        final StringBuilder builder = new StringBuilder();
-        final int length = orgString.length();
-        for (int i = 0; i < length; i = orgString.offsetByCodePoints(i, 1)) {
-            // All Japanese character is able to be expressed by char.
-            // Do not need to use String#codepPointAt().
-            final char ch = orgString.charAt(i);
-            final String halfWidthText = JapaneseUtils.tryGetHalfWidthText(ch);
-            if (halfWidthText != null) {
-                builder.append(halfWidthText);
-            } else {
-                builder.append(ch);
+        final StringBuilder builder = new StringBuilder(orgString.length());
+        appendHalfWidthString(orgString, builder);
+        return builder.toString();
+    }
+
+    /**
+     * Appends the half-width version of the given string to the builder, like
+     * {@link #toHalfWidthString(String)} but without creating intermediate strings.
+     * All Japanese characters with a half-width version are in the BMP, so the string is
+     * converted char by char; surrogate pairs are appended as they are.
+     */
+    public static void appendHalfWidthString(final CharSequence orgString,
+                                             final StringBuilder builder) {
+        if (orgString != null) {
+            JapaneseUtils.appendHalfWidthText(orgString, builder);
+        }
+    }
+
+    /**
+     * Returns the structured name row of a contact that represents its name: the super primary
+     * row, else the first primary row with a name, else the first row with a name. This is the
+     * same choice {@link VCardBuilder#appendNameProperties(List)} makes.
+     *
+     * @return the chosen row, or null if no row has a name
+     */
+    public static ContactDataRow getPrimaryNameRow(final List<ContactDataRow> rows) {
+        ContactDataRow primaryRow = null;
+        ContactDataRow subprimaryRow = null;
+        for (ContactDataRow row : rows) {
+            if (row == null) {
+                continue;
+            }
+            if (row.isSuperPrimary) {
+                primaryRow = row;
+                break;
+            } else if (primaryRow == null) {
+                if (row.isPrimary && containsNonEmptyName(row)) {
+                    primaryRow = row;
+                } else if (subprimaryRow == null && containsNonEmptyName(row)) {
+                    subprimaryRow = row;
+                }
             }
         }
-        return builder.toString();
+
+        return primaryRow != null ? primaryRow : subprimaryRow;
+    }
+
+    private static boolean containsNonEmptyName(final ContactDataRow row) {
+        return !(TextUtils.isEmpty(row.familyName) && TextUtils.isEmpty(row.givenName) &&
+                TextUtils.isEmpty(row.displayName));
     }
 
     // TODO: utilities for vCard 4.0: datetime, timestamp, integer, float, and boolean
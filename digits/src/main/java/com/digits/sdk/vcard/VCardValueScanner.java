@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.vcard;
+
+/**
+ * Escapes vCard property values and classifies them in the same pass, so the builder does not
+ * have to scan a value once per check before escaping it.
+ *
+ * The classification is the same as
+ * {@link VCardUtils#containsOnlyPrintableAscii(String...)} and
+ * {@link VCardUtils#containsOnlyNonCrLfPrintableAscii(String...)}.
+ */
+class VCardValueScanner {
+    /**
+     * The value contains a character other than printable ASCII, CR and LF, so the CHARSET
+     * parameter may be needed.
+     */
+    static final int NEEDS_CHARSET = 1;
+    /**
+     * The value contains a character other than printable ASCII, so it has to be encoded as
+     * Quoted-Printable where the vCard version requires 7bit values.
+     */
+    static final int NEEDS_QUOTED_PRINTABLE = 2;
+
+    private static final int ASCII_FIRST = 0x20;
+    private static final int ASCII_LAST = 0x7E;
+
+    private final boolean mIsV30OrV40;
+    private final boolean mIsDoCoMo;
+
+    VCardValueScanner(boolean isV30OrV40, boolean isDoCoMo) {
+        mIsV30OrV40 = isV30OrV40;
+        mIsDoCoMo = isDoCoMo;
+    }
+
+    /**
+     * Appends the escaped value to the given builder. Escaping differs not only between
+     * vCard 2.1 and vCard 3.0 but also among devices.
+     *
+     * Note that Quoted-Printable strings must not be escaped.
+     *
+     * @param value the value to escape, may be null
+     * @return the {@link #NEEDS_CHARSET} and {@link #NEEDS_QUOTED_PRINTABLE} flags of the value
+     */
+    int escape(final String value, final StringBuilder builder) {
+        if (value == null) {
+            return 0;
+        }
+
+        int flags = 0;
+        final int length = value.length();
+        // Start of the run of characters copied as they are
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            final char ch = value.charAt(i);
+            if (ch >= ASCII_FIRST && ch <= ASCII_LAST) {
+                if (!needsEscape(ch)) {
+                    continue;
+                }
+            } else if (ch == '\r' || ch == '\n') {
+                flags |= NEEDS_QUOTED_PRINTABLE;
+            } else {
+                flags |= NEEDS_CHARSET | NEEDS_QUOTED_PRINTABLE;
+                continue;
+            }
+
+            builder.append(value, start, i);
+            start = i + 1;
+            switch (ch) {
+                case '\r':
+                    if (i + 1 < length && value.charAt(i + 1) == '\n') {
+                        // CRLF is escaped once, as the "\n" of the LF.
+                        break;
+                    }
+                    builder.append("\\n");
+                    break;
+                case '\n':
+                    // In vCard 2.1, there's no specification about this, while
+                    // vCard 3.0 explicitly requires this should be encoded to "\n".
+                    builder.append("\\n");
+                    break;
+                default:
+                    builder.append('\\').append(ch);
+                    break;
+            }
+        }
+        builder.append(value, start, length);
+        return flags;
+    }
+
+    /**
+     * @return whether the given printable ASCII character is escaped with a backslash
+     */
+    private boolean needsEscape(final char ch) {
+        switch (ch) {
+            case ';':
+                return true;
+            case ',':
+                return mIsV30OrV40;
+            case '\\':
+                return mIsV30OrV40 || mIsDoCoMo;
+            case '<':
+            case '>':
+                return mIsDoCoMo;
+            default:
+                return false;
+        }
+    }
+}
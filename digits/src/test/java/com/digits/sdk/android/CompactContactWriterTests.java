@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.android;
+
+import android.provider.ContactsContract.CommonDataKinds.Phone;
+
+import com.digits.sdk.vcard.ContactDataRow;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class CompactContactWriterTests {
+    private static final List<ContactDataRow> NO_ROWS = Collections.emptyList();
+
+    @Test
+    public void testWrite() throws Exception {
+        final ContactDataRow name = new ContactDataRow();
+        name.displayName = "Spruce Grouse";
+        name.givenName = "Spruce";
+        name.familyName = "Grouse";
+        final ContactDataRow mobile = createPhone("(555) 555-5555");
+        mobile.hasPhoneType = true;
+        mobile.phoneType = Phone.TYPE_MOBILE;
+        mobile.isPrimary = true;
+        final ContactDataRow custom = createPhone(" 1234 ");
+        custom.hasPhoneType = true;
+        custom.phoneType = Phone.TYPE_CUSTOM;
+        custom.phoneLabel = "Büro";
+
+        final byte[] record = new CompactContactWriter(false)
+                .write(Arrays.asList(name), Arrays.asList(mobile, custom))
+                .toByteArray();
+
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(CompactContactWriter.VERSION);
+        writeString(expected, "Spruce Grouse");
+        writeString(expected, "Spruce");
+        writeString(expected, "Grouse");
+        expected.write(2);
+        expected.write(CompactContactWriter.FLAG_HAS_TYPE | CompactContactWriter.FLAG_PRIMARY);
+        expected.write(Phone.TYPE_MOBILE);
+        writeString(expected, "(555) 555-5555");
+        expected.write(CompactContactWriter.FLAG_HAS_TYPE | CompactContactWriter.FLAG_HAS_LABEL);
+        expected.write(Phone.TYPE_CUSTOM);
+        writeString(expected, "Büro");
+        writeString(expected, "1234");
+        assertArrayEquals(expected.toByteArray(), record);
+    }
+
+    @Test
+    public void testWrite_skipsEmptyAndDuplicatePhones() throws Exception {
+        final byte[] record = new CompactContactWriter(true)
+                .write(NO_ROWS, Arrays.asList(createPhone("+1 (415) 555-0100"),
+                        createPhone("()"), createPhone("+14155550100"), createPhone(null)))
+                .toByteArray();
+
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(CompactContactWriter.VERSION);
+        expected.write(new byte[]{0, 0, 0, 1, 0});
+        writeString(expected, "+14155550100");
+        assertArrayEquals(expected.toByteArray(), record);
+    }
+
+    @Test
+    public void testWrite_keepsPhonesWithoutDigitsWhenNotNormalized() throws Exception {
+        final byte[] record = new CompactContactWriter(false)
+                .write(NO_ROWS, Arrays.asList(createPhone("*"), createPhone("#"),
+                        createPhone(" * ")))
+                .toByteArray();
+
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(CompactContactWriter.VERSION);
+        expected.write(new byte[]{0, 0, 0, 2, 0});
+        writeString(expected, "*");
+        expected.write(0);
+        writeString(expected, "#");
+        assertArrayEquals(expected.toByteArray(), record);
+    }
+
+    @Test
+    public void testWrite_splitsMultipleLines() throws Exception {
+        final ContactDataRow phone = createPhone("555-0100\n 555-0199\n555-0100");
+        phone.hasPhoneType = true;
+        phone.phoneType = Phone.TYPE_HOME;
+
+        final byte[] record = new CompactContactWriter(false)
+                .write(NO_ROWS, Arrays.asList(phone, createPhone("555-0199")))
+                .toByteArray();
+
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(CompactContactWriter.VERSION);
+        expected.write(new byte[]{0, 0, 0, 2});
+        expected.write(CompactContactWriter.FLAG_HAS_TYPE);
+        expected.write(Phone.TYPE_HOME);
+        writeString(expected, "555-0100");
+        expected.write(CompactContactWriter.FLAG_HAS_TYPE);
+        expected.write(Phone.TYPE_HOME);
+        writeString(expected, "555-0199");
+        assertArrayEquals(expected.toByteArray(), record);
+    }
+
+    @Test
+    public void testWrite_reusesBuffer() throws Exception {
+        final CompactContactWriter writer = new CompactContactWriter(false);
+        final StringBuilder longNumber = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            longNumber.append(i % 10);
+        }
+        final byte[] first = writer.write(NO_ROWS,
+                Arrays.asList(createPhone(longNumber.toString()))).toByteArray();
+
+        final byte[] second = writer.write(NO_ROWS, Arrays.asList(createPhone("1")))
+                .toByteArray();
+
+        assertArrayEquals(new byte[]{CompactContactWriter.VERSION, 0, 0, 0, 1, 0, 1, '1'},
+                second);
+        // 300 is written as a two byte varint
+        assertArrayEquals(new byte[]{(byte) 0xac, 0x02},
+                Arrays.copyOfRange(first, 6, 8));
+        assertArrayEquals(longNumber.toString().getBytes("UTF-8"),
+                Arrays.copyOfRange(first, 8, first.length));
+    }
+
+    private static ContactDataRow createPhone(String number) {
+        final ContactDataRow row = new ContactDataRow();
+        row.phoneNumber = number;
+        return row;
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) throws Exception {
+        final byte[] bytes = value.getBytes("UTF-8");
+        out.write(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.android;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CompactContactsBodyTests {
+    private static final byte[] RECORD = {1, 0, 0, 0, 1, 0, 1, '1'};
+
+    @Test
+    public void testCreate() {
+        final CompactContactsBody body = CompactContactsBody.create(createContacts(),
+                new ContactsUploadConfig.Builder().build());
+
+        assertNull(body.contentEncoding);
+        assertEquals(CompactContactsBody.MIME_TYPE, body.mimeType());
+        assertArrayEquals(new byte[]{2, 8, 1, 0, 0, 0, 1, 0, 1, '1', 0},
+                body.bytes);
+    }
+
+    @Test
+    public void testCreate_compressed() throws Exception {
+        final CompactContactsBody body = CompactContactsBody.create(createContacts(),
+                new ContactsUploadConfig.Builder()
+                        .withCompression(true)
+                        .withCompressionThreshold(0)
+                        .build());
+
+        assertEquals(ContactsUploadBody.GZIP, body.contentEncoding);
+        assertArrayEquals(CompactContactsBody.toBytes(createContacts()),
+                VcardsBodyTests.gunzip(body.bytes));
+    }
+
+    @Test
+    public void testToBytes_longRecord() {
+        final byte[] record = new byte[200];
+        final byte[] bytes = CompactContactsBody.toBytes(
+                Arrays.asList(new EncodedContact("1", record, 0)));
+
+        assertEquals(3 + record.length, bytes.length);
+        assertArrayEquals(new byte[]{1, (byte) 0xc8, 0x01}, Arrays.copyOf(bytes, 3));
+    }
+
+    private List<EncodedContact> createContacts() {
+        return Arrays.asList(new EncodedContact("1", RECORD, 0),
+                new EncodedContact("2", new byte[0], 0));
+    }
+}
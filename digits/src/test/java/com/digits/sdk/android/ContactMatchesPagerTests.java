@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.android;
+
+import com.twitter.sdk.android.core.TwitterException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import retrofit.RetrofitError;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ContactMatchesPagerTests {
+    private ApiInterface service;
+    private RecordingCallback callback;
+    private DigitsEventCollector digitsEventCollector;
+    private QueueExecutor executor;
+    private QueueExecutor callbackExecutor;
+
+    @Before
+    public void setUp() throws Exception {
+        service = mock(ApiInterface.class);
+        callback = new RecordingCallback();
+        digitsEventCollector = mock(DigitsEventCollector.class);
+        executor = new QueueExecutor();
+        callbackExecutor = new QueueExecutor();
+        when(service.usersAndUploadedBy((String) isNull(), anyInt()))
+                .thenReturn(MockApiInterface.createContacts("2", 1L));
+        when(service.usersAndUploadedBy("2", ContactMatchesPager.PAGE_SIZE))
+                .thenReturn(MockApiInterface.createContacts("3", 2L));
+        when(service.usersAndUploadedBy("3", ContactMatchesPager.PAGE_SIZE))
+                .thenReturn(MockApiInterface.createContacts(null, 3L));
+    }
+
+    @Test
+    public void testStart_prefetchesNextPage() {
+        final ContactMatchesPager pager = createPager(1);
+
+        pager.start();
+        executor.runNext();
+        // The second page is fetched before the first one is handed out.
+        executor.runNext();
+        assertEquals(0, executor.tasks.size());
+        verify(service).usersAndUploadedBy("2", ContactMatchesPager.PAGE_SIZE);
+        assertEquals(Collections.emptyList(), callback.events);
+
+        callbackExecutor.runNext();
+        assertEquals(1, executor.tasks.size());
+
+        runAll();
+        assertEquals(Arrays.asList("1", "2", "3", "complete"), callback.events);
+    }
+
+    @Test
+    public void testStart_noPrefetch() {
+        final ContactMatchesPager pager = createPager(0);
+
+        pager.start();
+        executor.runNext();
+
+        assertEquals(0, executor.tasks.size());
+        callbackExecutor.runNext();
+        assertEquals(1, executor.tasks.size());
+    }
+
+    @Test
+    public void testStart_singlePage() {
+        when(service.usersAndUploadedBy((String) isNull(), anyInt()))
+                .thenReturn(MockApiInterface.createContacts(null, 1L));
+        final ContactMatchesPager pager = createPager(1);
+
+        pager.start();
+        runAll();
+
+        verify(service, times(1)).usersAndUploadedBy(anyString(), anyInt());
+        assertEquals(Arrays.asList("1", "complete"), callback.events);
+        verify(digitsEventCollector).succeedFindMatches(any(ContactsLookupSuccessDetails.class));
+    }
+
+    @Test
+    public void testCancel() {
+        final ContactMatchesPager pager = createPager(1);
+        pager.start();
+        executor.runNext();
+
+        pager.cancel();
+        runAll();
+
+        assertTrue(pager.isCanceled());
+        assertEquals(Collections.emptyList(), callback.events);
+        verify(service, never()).usersAndUploadedBy("3", ContactMatchesPager.PAGE_SIZE);
+    }
+
+    @Test
+    public void testFailure() {
+        when(service.usersAndUploadedBy("2", ContactMatchesPager.PAGE_SIZE))
+                .thenThrow(RetrofitError.networkError("url", new IOException()));
+        final ContactMatchesPager pager = createPager(1);
+
+        pager.start();
+        runAll();
+
+        assertEquals(Arrays.asList("1", "failure"), callback.events);
+        verify(digitsEventCollector).failedFindMatches(any(ContactsLookupFailureDetails.class));
+    }
+
+    @Test
+    public void testDeliver_inOrderOnConcurrentExecutor() {
+        final ContactMatchesPager pager = createPager(2);
+
+        pager.start();
+        executor.runAll();
+        // Only one delivery is handed to the callback executor at a time.
+        assertEquals(1, callbackExecutor.tasks.size());
+        while (!executor.tasks.isEmpty() || !callbackExecutor.tasks.isEmpty()) {
+            executor.runAll();
+            // Run the most recent task first, like an executor with several threads might
+            while (!callbackExecutor.tasks.isEmpty()) {
+                callbackExecutor.tasks.remove(callbackExecutor.tasks.size() - 1).run();
+            }
+        }
+
+        assertEquals(Arrays.asList("1", "2", "3", "complete"), callback.events);
+    }
+
+    @Test
+    public void testFailure_unexpectedException() {
+        when(service.usersAndUploadedBy("2", ContactMatchesPager.PAGE_SIZE))
+                .thenThrow(new IllegalStateException());
+        final ContactMatchesPager pager = createPager(1);
+
+        pager.start();
+        runAll();
+
+        assertEquals(Arrays.asList("1", "failure"), callback.events);
+        verify(service, never()).usersAndUploadedBy("3", ContactMatchesPager.PAGE_SIZE);
+        verify(digitsEventCollector).failedFindMatches(any(ContactsLookupFailureDetails.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_negativePrefetchPages() {
+        createPager(-1);
+    }
+
+    private ContactMatchesPager createPager(int prefetchPages) {
+        return new ContactMatchesPager(service, prefetchPages, executor, callbackExecutor,
+                callback, digitsEventCollector);
+    }
+
+    private void runAll() {
+        while (!executor.tasks.isEmpty() || !callbackExecutor.tasks.isEmpty()) {
+            executor.runAll();
+            callbackExecutor.runAll();
+        }
+    }
+
+    static class RecordingCallback extends ContactMatchesCallback {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onMatches(List<DigitsUser> users) {
+            for (DigitsUser user : users) {
+                events.add(user.idStr);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            events.add("complete");
+        }
+
+        @Override
+        public void onFailure(TwitterException exception) {
+            events.add("failure");
+        }
+    }
+
+    static class QueueExecutor implements Executor {
+        final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runNext() {
+            tasks.remove(0).run();
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                runNext();
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.android;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import retrofit.client.Header;
+import retrofit.client.Response;
+import retrofit.mime.TypedByteArray;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ContactMatchesReaderTests {
+    private static final long LARGE_ID = 9007199254740993L;
+
+    @Test
+    public void testRead() throws Exception {
+        final ContactMatches matches = read("{\"users\":[{\"id\":1,\"id_str\":\"1\"},"
+                + "{\"id_str\":\"2\",\"id\":2}],\"next_cursor\":\"cursor\"}");
+
+        assertArrayEquals(new long[]{1L, 2L}, matches.getIds());
+        assertEquals("cursor", matches.getNextCursor());
+    }
+
+    @Test
+    public void testRead_largeId() throws Exception {
+        final ContactMatches matches =
+                read("{\"users\":[{\"id\":" + LARGE_ID + "},{\"id_str\":\"" + LARGE_ID + "\"}]}");
+
+        assertArrayEquals(new long[]{LARGE_ID, LARGE_ID}, matches.getIds());
+    }
+
+    @Test
+    public void testRead_manyUsers() throws Exception {
+        final Contacts contacts = new Contacts();
+        contacts.users = new ArrayList<>();
+        for (long id = 1; id <= 1000; id++) {
+            contacts.users.add(new DigitsUser(id, String.valueOf(id)));
+        }
+
+        final ContactMatches matches = read(new Gson().toJson(contacts));
+
+        assertEquals(1000, matches.size());
+        assertEquals(1L, matches.getId(0));
+        assertEquals(1000L, matches.getId(999));
+        assertNull(matches.getNextCursor());
+    }
+
+    @Test
+    public void testRead_unknownFields() throws Exception {
+        final ContactMatches matches = read("{\"extra\":{\"users\":[]},\"users\":"
+                + "[{\"id\":3,\"name\":\"x\",\"ids\":[1,2]},null],\"next_cursor\":null}");
+
+        assertArrayEquals(new long[]{3L}, matches.getIds());
+        assertNull(matches.getNextCursor());
+    }
+
+    @Test
+    public void testRead_noUsers() throws Exception {
+        assertEquals(0, read("{}").size());
+        assertEquals(0, read("{\"users\":null}").size());
+        assertEquals(0, read("null").size());
+    }
+
+    @Test
+    public void testRead_noBody() throws Exception {
+        final Response response = new Response("/", 200, "ok",
+                Collections.<Header>emptyList(), null);
+
+        assertEquals(0, ContactMatchesReader.read(response).size());
+    }
+
+    @Test(expected = IOException.class)
+    public void testRead_userWithoutId() throws Exception {
+        read("{\"users\":[{\"name\":\"x\"}]}");
+    }
+
+    @Test(expected = IOException.class)
+    public void testRead_invalidIdStr() throws Exception {
+        read("{\"users\":[{\"id_str\":\"x\"}]}");
+    }
+
+    private static ContactMatches read(String json) throws IOException {
+        return ContactMatchesReader.read(new Response("/", 200, "ok",
+                Collections.<Header>emptyList(),
+                new TypedByteArray("application/json", json.getBytes("UTF-8"))));
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.android;
+
+import com.twitter.sdk.android.core.Callback;
+import com.twitter.sdk.android.core.Result;
+import com.twitter.sdk.android.core.TwitterException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ContactMatchesRequestsTests {
+    private ContactMatchesRequests requests;
+    private Callback<Contacts> first;
+    private Callback<Contacts> second;
+    private Contacts contacts;
+
+    @Before
+    public void setUp() throws Exception {
+        requests = new ContactMatchesRequests();
+        first = mock(Callback.class);
+        second = mock(Callback.class);
+        contacts = new Contacts();
+        contacts.nextCursor = "cursor";
+        contacts.users = new ArrayList<>();
+        contacts.users.add(new DigitsUser(1L, "1"));
+    }
+
+    @Test
+    public void testJoin_samePage() {
+        final Callback<Contacts> request = requests.join("cursor", 20, null, first);
+
+        assertNotNull(request);
+        assertNull(requests.join("cursor", 20, null, second));
+    }
+
+    @Test
+    public void testJoin_otherPage() {
+        final Executor executor = mock(Executor.class);
+        requests.join("cursor", 20, null, first);
+
+        assertNotNull(requests.join("other", 20, null, second));
+        assertNotNull(requests.join(null, 20, null, second));
+        assertNotNull(requests.join("cursor", null, null, second));
+        assertNotNull(requests.join("cursor", 20, executor, second));
+    }
+
+    @Test
+    public void testSuccess() {
+        final ArgumentCaptor<Result> firstCaptor = ArgumentCaptor.forClass(Result.class);
+        final ArgumentCaptor<Result> secondCaptor = ArgumentCaptor.forClass(Result.class);
+        final Result<Contacts> result = new Result<>(contacts, null);
+        final Callback<Contacts> request = requests.join("cursor", 20, null, first);
+        requests.join("cursor", 20, null, second);
+
+        request.success(result);
+
+        verify(first).success(firstCaptor.capture());
+        verify(second).success(secondCaptor.capture());
+        assertSame(result, firstCaptor.getValue());
+        final Contacts shared = (Contacts) secondCaptor.getValue().data;
+        assertEquals("cursor", shared.nextCursor);
+        assertEquals(contacts.users, shared.users);
+        assertNotSame(contacts.users, shared.users);
+    }
+
+    @Test
+    public void testSuccess_completesRequest() {
+        final Callback<Contacts> request = requests.join("cursor", 20, null, first);
+
+        request.success(new Result<>(contacts, null));
+
+        assertNotNull(requests.join("cursor", 20, null, second));
+        verifyZeroInteractions(second);
+    }
+
+    @Test
+    public void testFailure() {
+        final TwitterException exception = new TwitterException("error");
+        final Callback<Contacts> request = requests.join("cursor", 20, null, first);
+        requests.join("cursor", 20, null, second);
+
+        request.failure(exception);
+
+        verify(first).failure(exception);
+        verify(second).failure(exception);
+        assertNotNull(requests.join("cursor", 20, null, first));
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.android;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ContactMatchesTests {
+    private final ContactMatches matches = new ContactMatches(new long[]{2L, 3L}, "cursor");
+
+    @Test
+    public void testGetIds() {
+        assertEquals(2, matches.size());
+        assertEquals(3L, matches.getId(1));
+        assertEquals("3", matches.getIdStr(1));
+        assertEquals("cursor", matches.getNextCursor());
+    }
+
+    @Test
+    public void testGetIds_copy() {
+        matches.getIds()[0] = 5L;
+
+        assertEquals(2L, matches.getId(0));
+    }
+
+    @Test
+    public void testGetUsers() {
+        final List<DigitsUser> users = matches.getUsers();
+
+        assertEquals(2, users.size());
+        assertEquals(2L, users.get(0).id);
+        assertEquals("2", users.get(0).idStr);
+        assertEquals("3", users.get(1).idStr);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testGetUsers_unmodifiable() {
+        matches.getUsers().add(new DigitsUser(4L, "4"));
+    }
+
+    @Test
+    public void testEmpty() {
+        final ContactMatches empty = new ContactMatches(new long[0], null);
+
+        assertEquals(0, empty.size());
+        assertEquals(0, empty.getUsers().size());
+        assertNull(empty.getNextCursor());
+    }
+}
@@ -22,6 +22,11 @@ import android.content.ComponentName;
 import android.content.Intent;
 import android.test.mock.MockContext;
 
+import com.twitter.sdk.android.core.Callback;
+import com.twitter.sdk.android.core.Result;
+import com.twitter.sdk.android.core.TwitterAuthToken;
+import com.twitter.sdk.android.core.TwitterException;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -29,10 +34,18 @@ import org.mockito.ArgumentCaptor;
 import org.robolectric.RobolectricGradleTestRunner;
 import org.robolectric.annotation.Config;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.Executor;
 
 import io.fabric.sdk.android.Fabric;
 
+import retrofit.RetrofitError;
+import retrofit.client.Header;
+import retrofit.client.Response;
+import retrofit.mime.TypedByteArray;
+
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
@@ -56,6 +69,8 @@ public class ContactsClientTests {
     private ContactsPreferenceManager prefManager;
     private ActivityClassManagerFactory activityClassManagerFactory;
     private ArgumentCaptor<Intent> intentArgumentCaptor;
+    private MatchedContactsLookup matchedContactsLookup;
+    private Executor executor;
 
     @Before
     public void setUp() throws Exception {
@@ -69,6 +84,8 @@ public class ContactsClientTests {
         activity = mock(Activity.class);
         intentArgumentCaptor = ArgumentCaptor.forClass(Intent.class);
         sandboxConfig = mock(SandboxConfig.class);
+        matchedContactsLookup = mock(MatchedContactsLookup.class);
+        executor = mock(Executor.class);
         when(digits.getContext()).thenReturn(context);
         when(context.getPackageName()).thenReturn(getClass().getPackage().toString());
         when(digits.getActivityClassManager()).thenReturn(new ActivityClassManagerImp());
@@ -80,9 +97,15 @@ public class ContactsClientTests {
         sdkService = mock(ApiInterface.class);
         apiClientManager = mock(DigitsApiClientManager.class);
         when(apiClientManager.getService()).thenReturn(sdkService);
+        final DigitsApiClient apiClient = mock(DigitsApiClient.class);
+        when(apiClientManager.getApiClient()).thenReturn(apiClient);
+        when(apiClient.getSession()).thenReturn(new DigitsSession(
+                new TwitterAuthToken(TestConstants.TOKEN, TestConstants.SECRET),
+                TestConstants.USER_ID));
 
         contactsClient = new ContactsClient(digits, apiClientManager, prefManager,
-                activityClassManagerFactory, sandboxConfig, digitsEventCollector);
+                activityClassManagerFactory, sandboxConfig, digitsEventCollector,
+                matchedContactsLookup, executor, executor);
 
         activityComponent = new ComponentName(context, ContactsActivity.class.getName());
         serviceComponent = new ComponentName(context, ContactsUploadService.class.getName());
@@ -224,6 +247,22 @@ public class ContactsClientTests {
         verify(digitsEventCollector).startDeleteContacts(any(ContactsDeletionStartDetails.class));
     }
 
+    @Test
+    public void testDeleteAllContacts_successClearsReadTimestamp() {
+        final ArgumentCaptor<ContactsClient.DeleteContactsCallbackWrapper> deleteCaptor =
+                ArgumentCaptor.forClass(ContactsClient.DeleteContactsCallbackWrapper.class);
+        contactsClient.deleteAllUploadedContacts(callback);
+        verify(sdkService).deleteAll(eq(""), deleteCaptor.capture());
+
+        deleteCaptor.getValue().success(null);
+
+        verify(prefManager).clearContactsReadTimestamp();
+        verify(matchedContactsLookup).clear();
+        verify(digitsEventCollector).succeedDeleteContacts(
+                any(ContactsDeletionSuccessDetails.class));
+        verify(callback).success(null);
+    }
+
     @Test
     public void testGetContactMatches() {
         final String cursor = "";
@@ -274,6 +313,250 @@ public class ContactsClientTests {
         verify(digitsEventCollector).startFindMatches(any(ContactsLookupStartDetails.class));
     }
 
+    @Test
+    public void testGetContactMatches_concurrentLookupsShareRequest() {
+        final ArgumentCaptor<Callback> requestCaptor = ArgumentCaptor.forClass(Callback.class);
+        final Callback<Contacts> otherCallback = mock(Callback.class);
+        final Contacts contacts = new Contacts();
+        contacts.users = new ArrayList<>();
+
+        contactsClient.lookupContactMatches("", 20, callback);
+        contactsClient.lookupContactMatches("", 20, otherCallback);
+
+        verify(sdkService).usersAndUploadedBy(eq(""), eq(20), requestCaptor.capture());
+        verify(digitsEventCollector, times(2))
+                .startFindMatches(any(ContactsLookupStartDetails.class));
+        requestCaptor.getValue().success(new Result<>(contacts, null));
+        verify(callback).success(any(Result.class));
+        verify(otherCallback).success(any(Result.class));
+
+        contactsClient.lookupContactMatches("", 20, callback);
+        verify(sdkService, times(2)).usersAndUploadedBy(eq(""), eq(20), any(Callback.class));
+    }
+
+    @Test
+    public void testGetContactMatches_requestThrows() {
+        final ArgumentCaptor<Runnable> runnableCaptor = ArgumentCaptor.forClass(Runnable.class);
+        final Callback<Contacts> otherCallback = mock(Callback.class);
+        doThrow(new IllegalStateException()).when(sdkService)
+                .usersAndUploadedBy(eq(""), eq(20), any(Callback.class));
+
+        contactsClient.lookupContactMatches("", 20, callback);
+        contactsClient.lookupContactMatches("", 20, otherCallback);
+        verify(executor).execute(runnableCaptor.capture());
+        runnableCaptor.getValue().run();
+
+        verify(callback).failure(any(TwitterException.class));
+        verify(otherCallback).failure(any(TwitterException.class));
+        verify(digitsEventCollector, times(2))
+                .failedFindMatches(any(ContactsLookupFailureDetails.class));
+
+        // The failed request is not in flight anymore.
+        contactsClient.lookupContactMatches("", 20, callback);
+        verify(sdkService, times(2)).usersAndUploadedBy(eq(""), eq(20), any(Callback.class));
+    }
+
+    @Test
+    public void testGetContactMatches_otherPageNotShared() {
+        contactsClient.lookupContactMatches("", 20, callback);
+        contactsClient.lookupContactMatches("", 30, callback);
+        contactsClient.lookupContactMatches("cursor", 20, callback);
+
+        verify(sdkService).usersAndUploadedBy(eq(""), eq(20), any(Callback.class));
+        verify(sdkService).usersAndUploadedBy(eq(""), eq(30), any(Callback.class));
+        verify(sdkService).usersAndUploadedBy(eq("cursor"), eq(20), any(Callback.class));
+    }
+
+    @Test
+    public void testGetContactMatches_callbackExecutor() {
+        final ApiInterface workerService = mock(ApiInterface.class);
+        final Executor callbackExecutor = mock(Executor.class);
+        when(apiClientManager.getService(callbackExecutor)).thenReturn(workerService);
+
+        contactsClient.lookupContactMatches("", 20, callbackExecutor, callback);
+
+        verify(workerService).usersAndUploadedBy(eq(""), eq(20), callbackCaptor.capture());
+        assertNotNull(callbackCaptor.getValue());
+        verifyZeroInteractions(sdkService);
+        verify(digitsEventCollector).startFindMatches(any(ContactsLookupStartDetails.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetContactMatches_nullCallbackExecutor() {
+        contactsClient.lookupContactMatches("", 20, null, callback);
+    }
+
+    @Test
+    public void testGetContactMatches_callbackExecutorSandbox() {
+        when(sandboxConfig.isMode(SandboxConfig.Mode.DEFAULT)).thenReturn(true);
+        final Executor callbackExecutor = mock(Executor.class);
+        final ArgumentCaptor<Runnable> deliveryCaptor = ArgumentCaptor.forClass(Runnable.class);
+
+        contactsClient.lookupContactMatches("", 20, callbackExecutor, callback);
+
+        verify(callbackExecutor).execute(deliveryCaptor.capture());
+        verifyZeroInteractions(callback);
+        deliveryCaptor.getValue().run();
+        verify(callback).success(any(Result.class));
+    }
+
+    @Test
+    public void testLookupCompactContactMatches() {
+        final Callback<ContactMatches> compactCallback = mock(Callback.class);
+        final ArgumentCaptor<Runnable> runnableCaptor = ArgumentCaptor.forClass(Runnable.class);
+        final ArgumentCaptor<Result> resultCaptor = ArgumentCaptor.forClass(Result.class);
+        when(sdkService.streamUsersAndUploadedBy("", 20)).thenReturn(
+                new MockApiInterface().streamUsersAndUploadedBy(null, 20));
+
+        contactsClient.lookupCompactContactMatches("", 20, compactCallback);
+        verify(digitsEventCollector).startFindMatches(any(ContactsLookupStartDetails.class));
+        verify(executor).execute(runnableCaptor.capture());
+        runnableCaptor.getValue().run();
+        verify(executor, times(2)).execute(runnableCaptor.capture());
+        runnableCaptor.getValue().run();
+
+        verify(compactCallback).success(resultCaptor.capture());
+        final ContactMatches matches = (ContactMatches) resultCaptor.getValue().data;
+        assertEquals(1, matches.size());
+        assertEquals("cursor", matches.getNextCursor());
+        verify(digitsEventCollector).succeedFindMatches(any(ContactsLookupSuccessDetails.class));
+    }
+
+    @Test
+    public void testLookupCompactContactMatches_countOutOfRange() {
+        final ArgumentCaptor<Runnable> runnableCaptor = ArgumentCaptor.forClass(Runnable.class);
+
+        contactsClient.lookupCompactContactMatches("", 101, mock(Callback.class));
+        verify(executor).execute(runnableCaptor.capture());
+        runnableCaptor.getValue().run();
+
+        verify(sdkService).streamUsersAndUploadedBy("", null);
+    }
+
+    @Test
+    public void testLookupCompactContactMatches_failure() {
+        final Callback<ContactMatches> compactCallback = mock(Callback.class);
+        final ArgumentCaptor<Runnable> runnableCaptor = ArgumentCaptor.forClass(Runnable.class);
+        when(sdkService.streamUsersAndUploadedBy("", 20)).thenThrow(
+                RetrofitError.networkError("", new IOException()));
+
+        contactsClient.lookupCompactContactMatches("", 20, compactCallback);
+        verify(executor).execute(runnableCaptor.capture());
+        runnableCaptor.getValue().run();
+        verify(executor, times(2)).execute(runnableCaptor.capture());
+        runnableCaptor.getValue().run();
+
+        verify(compactCallback).failure(any(TwitterException.class));
+        verify(digitsEventCollector).failedFindMatches(any(ContactsLookupFailureDetails.class));
+    }
+
+    @Test
+    public void testLookupCompactContactMatches_malformedBody() throws Exception {
+        final Callback<ContactMatches> compactCallback = mock(Callback.class);
+        final ArgumentCaptor<Runnable> runnableCaptor = ArgumentCaptor.forClass(Runnable.class);
+        when(sdkService.streamUsersAndUploadedBy("", 20)).thenReturn(new Response("/", 200, "ok",
+                Collections.<Header>emptyList(), new TypedByteArray("application/json",
+                "{\"users\":[1]}".getBytes("UTF-8"))));
+
+        contactsClient.lookupCompactContactMatches("", 20, compactCallback);
+        verify(executor).execute(runnableCaptor.capture());
+        runnableCaptor.getValue().run();
+        verify(executor, times(2)).execute(runnableCaptor.capture());
+        runnableCaptor.getValue().run();
+
+        verify(compactCallback).failure(any(TwitterException.class));
+        verify(digitsEventCollector).failedFindMatches(any(ContactsLookupFailureDetails.class));
+    }
+
+    @Test
+    public void testLookupCompactContactMatches_sandbox() {
+        when(sandboxConfig.isMode(SandboxConfig.Mode.DEFAULT)).thenReturn(true);
+        when(sandboxConfig.getMock()).thenReturn(new MockApiInterface());
+        final Callback<ContactMatches> compactCallback = mock(Callback.class);
+        final ArgumentCaptor<Runnable> runnableCaptor = ArgumentCaptor.forClass(Runnable.class);
+
+        contactsClient.lookupCompactContactMatches(null, 20, compactCallback);
+        verify(executor).execute(runnableCaptor.capture());
+        runnableCaptor.getValue().run();
+        verify(executor, times(2)).execute(runnableCaptor.capture());
+        runnableCaptor.getValue().run();
+
+        verify(apiClientManager, never()).getService();
+        verify(compactCallback).success(any(Result.class));
+    }
+
+    @Test
+    public void testLookupStoredContactMatches() {
+        contactsClient.lookupStoredContactMatches(callback);
+
+        verify(matchedContactsLookup).lookup(eq(sdkService), eq(TestConstants.USER_ID),
+                eq(ContactsClient.DEFAULT_MATCHES_MAX_AGE_MILLIS), callbackCaptor.capture());
+        assertNotNull(callbackCaptor.getValue());
+        verify(digitsEventCollector).startFindMatches(any(ContactsLookupStartDetails.class));
+    }
+
+    @Test
+    public void testLookupStoredContactMatches_maxAge() {
+        contactsClient.lookupStoredContactMatches(1000L, callback);
+
+        verify(matchedContactsLookup).lookup(eq(sdkService), eq(TestConstants.USER_ID),
+                eq(1000L), callbackCaptor.capture());
+    }
+
+    @Test
+    public void testLookupStoredContactMatches_sandbox() {
+        when(sandboxConfig.isMode(SandboxConfig.Mode.DEFAULT)).thenReturn(true);
+
+        contactsClient.lookupStoredContactMatches(callback);
+
+        verifyZeroInteractions(matchedContactsLookup);
+        verify(callback).success(any(Result.class));
+    }
+
+    @Test
+    public void testLookupAllContactMatches() {
+        final ContactMatchesPager pager =
+                contactsClient.lookupAllContactMatches(mock(ContactMatchesCallback.class));
+
+        assertNotNull(pager);
+        verify(executor).execute(any(Runnable.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLookupAllContactMatches_negativePrefetchPages() {
+        contactsClient.lookupAllContactMatches(-1, mock(ContactMatchesCallback.class));
+    }
+
+    @Test
+    public void testLookupAllContactMatches_callbackExecutor() {
+        final Executor callbackExecutor = mock(Executor.class);
+        final ArgumentCaptor<Runnable> fetchCaptor = ArgumentCaptor.forClass(Runnable.class);
+        when(sdkService.usersAndUploadedBy(null, ContactMatchesPager.PAGE_SIZE))
+                .thenReturn(new Contacts());
+        contactsClient.lookupAllContactMatches(0, callbackExecutor,
+                mock(ContactMatchesCallback.class));
+        verify(executor).execute(fetchCaptor.capture());
+
+        fetchCaptor.getValue().run();
+
+        verify(callbackExecutor).execute(any(Runnable.class));
+    }
+
+    @Test
+    public void testLookupAllContactMatches_sandbox() {
+        when(sandboxConfig.isMode(SandboxConfig.Mode.DEFAULT)).thenReturn(true);
+        when(sandboxConfig.getMock()).thenReturn(sdkService);
+        final ArgumentCaptor<Runnable> fetchCaptor = ArgumentCaptor.forClass(Runnable.class);
+        contactsClient.lookupAllContactMatches(mock(ContactMatchesCallback.class));
+        verify(executor).execute(fetchCaptor.capture());
+
+        fetchCaptor.getValue().run();
+
+        verify(sandboxConfig).getMock();
+        verify(apiClientManager, never()).getService();
+        verify(sdkService).usersAndUploadedBy(null, ContactMatchesPager.PAGE_SIZE);
+    }
+
     @Test
     public void testUploadContacts() {
         final Vcards vCards = new Vcards(new ArrayList<String>());
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.android;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ContactsFingerprintIndexTests {
+    private static final String CARD_A = "BEGIN:VCARD\r\nVERSION:3.0\r\nN:A;;;;\r\nEND:VCARD\r\n";
+    private static final String CARD_B = "BEGIN:VCARD\r\nVERSION:3.0\r\nN:B;;;;\r\nEND:VCARD\r\n";
+
+    private ContactsFingerprintIndex index;
+
+    @Before
+    public void setUp() throws Exception {
+        index = new ContactsFingerprintIndex(RuntimeEnvironment.application);
+        index.clear();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        index.clear();
+    }
+
+    @Test
+    public void testFingerprint() {
+        assertEquals(ContactsFingerprintIndex.fingerprint(CARD_A),
+                ContactsFingerprintIndex.fingerprint(new StringBuilder(CARD_A)));
+        assertNotEquals(ContactsFingerprintIndex.fingerprint(CARD_A),
+                ContactsFingerprintIndex.fingerprint(CARD_B));
+        assertNotEquals(ContactsFingerprintIndex.fingerprint("\u0100"),
+                ContactsFingerprintIndex.fingerprint("\u0001"));
+    }
+
+    @Test
+    public void testMarkUploaded() {
+        final EncodedContact contact = new EncodedContact("1", CARD_A);
+        assertFalse(index.isUploaded(contact));
+
+        index.markUploaded(Collections.singletonList(contact));
+
+        assertTrue(index.isUploaded(contact));
+        assertTrue(index.isUploaded(new EncodedContact("1", CARD_A)));
+        assertFalse(index.isUploaded(new EncodedContact("1", CARD_B)));
+        assertFalse(index.isUploaded(new EncodedContact("2", CARD_A)));
+    }
+
+    @Test
+    public void testMarkRejected() {
+        final EncodedContact contact = new EncodedContact("1", CARD_A);
+        index.markUploaded(Collections.singletonList(contact));
+
+        index.markRejected(Collections.singletonList(contact));
+
+        assertTrue(index.isRejected(contact));
+        assertFalse(index.isUploaded(contact));
+        assertFalse(index.isRejected(new EncodedContact("1", CARD_B)));
+
+        index.markUploaded(Collections.singletonList(contact));
+
+        assertFalse(index.isRejected(contact));
+        assertTrue(index.isUploaded(contact));
+    }
+
+    @Test
+    public void testRetain() {
+        final EncodedContact first = new EncodedContact("1", CARD_A);
+        final EncodedContact second = new EncodedContact("2", CARD_B);
+        index.markUploaded(Arrays.asList(first, second));
+
+        index.retain(Collections.singleton("2"));
+
+        assertEquals(1, index.size());
+        assertFalse(index.isUploaded(first));
+        assertTrue(index.isUploaded(second));
+    }
+
+    @Test
+    public void testSaveAndLoad() {
+        final EncodedContact first = new EncodedContact("1", CARD_A);
+        final EncodedContact second = new EncodedContact("2", CARD_B);
+        index.markUploaded(Collections.singletonList(first));
+        index.markRejected(Collections.singletonList(second));
+        index.save();
+
+        final ContactsFingerprintIndex loaded =
+                new ContactsFingerprintIndex(RuntimeEnvironment.application);
+        loaded.load();
+
+        assertEquals(1, loaded.size());
+        assertTrue(loaded.isUploaded(first));
+        assertTrue(loaded.isRejected(second));
+    }
+
+    @Test
+    public void testClear() {
+        index.markUploaded(Collections.singletonList(new EncodedContact("1", CARD_A)));
+        index.save();
+        assertTrue(index.getFile().exists());
+
+        index.clear();
+
+        assertEquals(0, index.size());
+        assertFalse(index.getFile().exists());
+    }
+}
@@ -22,6 +22,8 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.MatrixCursor;
 import android.net.Uri;
+import android.provider.ContactsContract;
+import android.provider.ContactsContract.CommonDataKinds.Phone;
 import android.test.mock.MockContext;
 
 import org.junit.Before;
@@ -35,8 +37,9 @@ import java.util.List;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.mockito.Matchers.any;
-import static org.mockito.Matchers.isNull;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -84,6 +87,12 @@ public class ContactsHelperTests {
         return vCards;
     }
 
+    static ArrayList<EncodedContact> createContactList() {
+        final ArrayList<EncodedContact> contacts = new ArrayList<>();
+        contacts.add(new EncodedContact(PHONE_ROW[3], SAMPLE_CARD));
+        return contacts;
+    }
+
     @Test
     public void testGetContactsCursor() {
         final ContactsHelper contactsHelper = new ContactsHelper(context);
@@ -91,17 +100,116 @@ public class ContactsHelperTests {
 
         verify(context).getContentResolver();
         verify(contentResolver).query(any(Uri.class), any(String[].class), any(String.class),
-                any(String[].class), isNull(String.class));
+                any(String[].class), eq(ContactsContract.Data.LOOKUP_KEY));
         assertArrayEquals(COLUMNS, cursor.getColumnNames());
     }
 
     @Test
-    public void testCreateContactList() {
+    public void testCreateContactList() throws Exception {
         final ContactsHelper contactsHelper = new ContactsHelper(context);
 
-        final List<String> cards = contactsHelper.createContactList(cursor);
+        final List<EncodedContact> contacts = contactsHelper.createContactList(cursor);
+
+        assertEquals(1, contacts.size());
+        assertEquals(PHONE_ROW[3], contacts.get(0).lookupKey);
+        assertEquals(SAMPLE_CARD, new String(contacts.get(0).data, "UTF-8"));
+        assertEquals(ContactsFingerprintIndex.fingerprint(SAMPLE_CARD),
+                contacts.get(0).fingerprint);
+    }
+
+    @Test
+    public void testCreateContactList_groupsRowsByLookupKey() throws Exception {
+        final ContactsHelper contactsHelper = new ContactsHelper(context);
+        final MatrixCursor sortedCursor = new MatrixCursor(COLUMNS);
+        sortedCursor.addRow(PHONE_ROW);
+        sortedCursor.addRow(NAME_ROW);
+        sortedCursor.addRow(new String[]{"name only", "name", "only", "2",
+                "vnd.android.cursor.item/name", ""});
+        sortedCursor.addRow(new String[]{"(555)555-1234", "2", "", "3",
+                "vnd.android.cursor.item/phone_v2", "0"});
+
+        final List<EncodedContact> contacts = contactsHelper.createContactList(sortedCursor);
+
+        assertEquals(2, contacts.size());
+        assertEquals("1", contacts.get(0).lookupKey);
+        assertEquals(SAMPLE_CARD, new String(contacts.get(0).data, "UTF-8"));
+        assertEquals("3", contacts.get(1).lookupKey);
+        assertEquals("BEGIN:VCARD\r\nVERSION:3.0\r\nN:\r\nFN:\r\n" +
+                "TEL;TYPE=CELL:555-555-1234\r\nEND:VCARD\r\n",
+                new String(contacts.get(1).data, "UTF-8"));
+    }
+
+    @Test
+    public void testCreateContactList_normalizesPhoneNumbers() throws Exception {
+        final ContactsHelper contactsHelper = new ContactsHelper(context,
+                new ContactsUploadConfig.Builder().withPhoneNumberNormalization(true).build());
+
+        final List<EncodedContact> contacts = contactsHelper.createContactList(cursor);
 
-        assertEquals(1, cards.size());
-        assertArrayEquals(createCardList().toArray(), cards.toArray());
+        assertEquals(1, contacts.size());
+        assertEquals(SAMPLE_CARD.replace("555-555-5555", "5555555555"),
+                new String(contacts.get(0).data, "UTF-8"));
+    }
+
+    @Test
+    public void testCreateContactList_compactFormat() {
+        final ContactsHelper contactsHelper = new ContactsHelper(context,
+                new ContactsUploadConfig.Builder().withCompactFormat(true).build());
+
+        final List<EncodedContact> contacts = contactsHelper.createContactList(cursor);
+
+        assertEquals(1, contacts.size());
+        assertEquals(PHONE_ROW[3], contacts.get(0).lookupKey);
+        assertArrayEquals(new byte[]{CompactContactWriter.VERSION,
+                10, 'n', 'e', 'n', 'e', ' ', 'g', 'o', 'o', 's', 'e',
+                4, 'n', 'e', 'n', 'e',
+                5, 'g', 'o', 'o', 's', 'e',
+                1, CompactContactWriter.FLAG_HAS_TYPE, Phone.TYPE_MOBILE,
+                13, '(', '5', '5', '5', ')', '5', '5', '5', '-', '5', '5', '5', '5'},
+                contacts.get(0).data);
+        assertEquals(ContactsFingerprintIndex.fingerprint(contacts.get(0).data),
+                contacts.get(0).fingerprint);
+    }
+
+    @Test
+    public void testCreateContactList_encodingThreads() {
+        final MatrixCursor largeCursor = new MatrixCursor(COLUMNS);
+        for (int i = 0; i < 100; i++) {
+            final String lookupKey = String.format("%03d", i);
+            largeCursor.addRow(new String[]{"(555)555-0" + lookupKey, "2", "", lookupKey,
+                    "vnd.android.cursor.item/phone_v2", "0"});
+        }
+        final List<EncodedContact> expected = new ContactsHelper(context)
+                .createContactList(largeCursor);
+        largeCursor.moveToPosition(-1);
+
+        final List<EncodedContact> contacts = new ContactsHelper(context,
+                new ContactsUploadConfig.Builder().withEncodingThreads(3).build())
+                .createContactList(largeCursor);
+
+        assertEquals(100, contacts.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).lookupKey, contacts.get(i).lookupKey);
+            assertArrayEquals(expected.get(i).data, contacts.get(i).data);
+        }
+    }
+
+    @Test
+    public void testReadContacts_stoppedByConsumer() throws Exception {
+        final ContactsHelper contactsHelper = new ContactsHelper(context);
+        final List<EncodedContact> contacts = new ArrayList<>();
+
+        final boolean completed = contactsHelper.readContacts(cursor,
+                new ContactsHelper.ContactsConsumer() {
+                    @Override
+                    public boolean onContact(EncodedContact contact) {
+                        contacts.add(contact);
+                        return false;
+                    }
+                });
+
+        assertFalse(completed);
+        assertEquals(1, contacts.size());
+        assertEquals(SAMPLE_CARD, new String(contacts.get(0).data, "UTF-8"));
     }
 }
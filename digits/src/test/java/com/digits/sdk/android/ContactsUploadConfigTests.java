@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.digits.sdk.android;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ContactsUploadConfigTests {
+
+    @Test
+    public void testContactsUploadConfigBuilder_defaults() {
+        final ContactsUploadConfig config = new ContactsUploadConfig.Builder().build();
+
+        assertFalse(config.isCompressionEnabled);
+        assertEquals(ContactsUploadConfig.DEFAULT_COMPRESSION_THRESHOLD_BYTES,
+                config.compressionThresholdBytes);
+        assertEquals(ContactsUploadConfig.DEFAULT_CONCURRENCY, config.concurrency);
+        assertEquals(ContactsUploadConfig.DEFAULT_MAX_QUEUED_PAGES, config.maxQueuedPages);
+        assertEquals(ContactsUploadConfig.DEFAULT_PAGE_TIMEOUT_MILLIS, config.pageTimeoutMillis);
+        assertEquals(ContactsUploadConfig.DEFAULT_MAX_RETRIES, config.maxRetries);
+        assertFalse(config.normalizesPhoneNumbers);
+        assertFalse(config.isCompactFormatEnabled);
+        assertTrue(config.encodingThreads >= 1);
+        assertTrue(config.encodingThreads <= ContactsUploadConfig.MAX_DEFAULT_ENCODING_THREADS);
+    }
+
+    @Test
+    public void testContactsUploadConfigBuilder_encodingThreads() {
+        final ContactsUploadConfig config = new ContactsUploadConfig.Builder()
+                .withEncodingThreads(8)
+                .build();
+
+        assertEquals(8, config.encodingThreads);
+    }
+
+    @Test
+    public void testContactsUploadConfigBuilder_invalidEncodingThreads() {
+        final ContactsUploadConfig.Builder builder = new ContactsUploadConfig.Builder()
+                .withEncodingThreads(0);
+        try {
+            builder.build();
+            fail();
+        } catch (IllegalArgumentException ex) {
+            assertEquals("Encoding threads must be at least 1", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testContactsUploadConfigBuilder_compactFormat() {
+        final ContactsUploadConfig config = new ContactsUploadConfig.Builder()
+                .withCompactFormat(true)
+                .build();
+
+        assertTrue(config.isCompactFormatEnabled);
+    }
+
+    @Test
+    public void testContactsUploadConfigBuilder_phoneNumberNormalization() {
+        final ContactsUploadConfig config = new ContactsUploadConfig.Builder()
+                .withPhoneNumberNormalization(true)
+                .build();
+
+        assertTrue(config.normalizesPhoneNumbers);
+    }
+
+    @Test
+    public void testContactsUploadConfigBuilder_scheduling() {
+        final ContactsUploadConfig config = new ContactsUploadConfig.Builder()
+                .withConcurrency(4)
+                .withMaxQueuedPages(0)
+                .withPageTimeout(1000)
+                .withMaxRetries(0)
+                .build();
+
+        assertEquals(4, config.concurrency);
+        assertEquals(0, config.maxQueuedPages);
+        assertEquals(1000, config.pageTimeoutMillis);
+        assertEquals(0, config.maxRetries);
+    }
+
+    @Test
+    public void testContactsUploadConfigBuilder_invalidConcurrency() {
+        final ContactsUploadConfig.Builder builder = new ContactsUploadConfig.Builder()
+                .withConcurrency(0);
+        try {
+            builder.build();
+            fail();
+        } catch (IllegalArgumentException ex) {
+            assertEquals("Concurrency must be at least 1", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testContactsUploadConfigBuilder_negativeMaxQueuedPages() {
+        final ContactsUploadConfig.Builder builder = new ContactsUploadConfig.Builder()
+                .withMaxQueuedPages(-1);
+        try {
+            builder.build();
+            fail();
+        } catch (IllegalArgumentException ex) {
+            assertEquals("Max queued pages must not be negative", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testContactsUploadConfigBuilder_negativeMaxRetries() {
+        final ContactsUploadConfig.Builder builder = new ContactsUploadConfig.Builder()
+                .withMaxRetries(-1);
+        try {
+            builder.build();
+            fail();
+        } catch (IllegalArgumentException ex) {
+            assertEquals("Max retries must not be negative", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testContactsUploadConfigBuilder_invalidPageTimeout() {
+        final ContactsUploadConfig.Builder builder = new ContactsUploadConfig.Builder()
+                .withPageTimeout(0);
+        try {
+            builder.build();
+            fail();
+        } catch (IllegalArgumentException ex) {
+            assertEquals("Page timeout must be positive", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testContactsUploadConfigBuilder_compression() {
+        final ContactsUploadConfig config = new ContactsUploadConfig.Builder()
+                .withCompression(true)
+                .withCompressionThreshold(10)
+                .build();
+
+        assertTrue(config.isCompressionEnabled);
+        assertEquals(10, config.compressionThresholdBytes);
+    }
+
+    @Test
+    public void testContactsUploadConfigBuilder_negativeCompressionThreshold() {
+        final ContactsUploadConfig.Builder builder = new ContactsUploadConfig.Builder()
+                .withCompressionThreshold(-1);
+        try {
+            builder.build();
+            fail();
+        } catch (IllegalArgumentException ex) {
+            assertEquals("Compression threshold must not be negative", ex.getMessage());
+        }
+    }
+}
@@ -17,6 +17,8 @@
 
 package com.digits.sdk.android;
 
+import android.os.Parcel;
+
 import com.google.gson.Gson;
 
 import org.junit.Test;
@@ -185,6 +187,51 @@ public class ContactsUploadFailureResultTests {
                 ContactsUploadFailureResult.summarize(exceptions));
     }
 
+    @Test
+    public void testSummarize_authStatus() throws Exception {
+        final List<Exception> exceptions = new ArrayList<>();
+        exceptions.add(createError(403, 0, ""));
+        assertEquals(ContactsUploadFailureResult.Summary.BAD_AUTHENTICATION,
+                ContactsUploadFailureResult.summarize(exceptions));
+    }
+
+    @Test
+    public void testSummarize_clientStatus() throws Exception {
+        final List<Exception> exceptions = new ArrayList<>();
+        exceptions.add(createError(404, 0, ""));
+        assertEquals(ContactsUploadFailureResult.Summary.BAD_REQUEST,
+                ContactsUploadFailureResult.summarize(exceptions));
+    }
+
+    @Test
+    public void testSummarize_rateStatus() throws Exception {
+        final List<Exception> exceptions = new ArrayList<>();
+        exceptions.add(createError(429, 0, ""));
+        assertEquals(ContactsUploadFailureResult.Summary.RATE_LIMIT,
+                ContactsUploadFailureResult.summarize(exceptions));
+    }
+
+    @Test
+    public void testSummarize_gatewayStatus() throws Exception {
+        final List<Exception> exceptions = new ArrayList<>();
+        exceptions.add(createError(504, 0, ""));
+        assertEquals(ContactsUploadFailureResult.Summary.SERVER_UNAVAILABLE,
+                ContactsUploadFailureResult.summarize(exceptions));
+    }
+
+    @Test
+    public void testParcelable() {
+        final ContactsUploadFailureResult result = new ContactsUploadFailureResult(
+                ContactsUploadFailureResult.Summary.NETWORK, 3);
+        final Parcel parcel = Parcel.obtain();
+        result.writeToParcel(parcel, 0);
+        parcel.setDataPosition(0);
+        final ContactsUploadFailureResult parceledResult = ContactsUploadFailureResult
+                .CREATOR.createFromParcel(parcel);
+        assertEquals(result.summary, parceledResult.summary);
+        assertEquals(result.retryCount, parceledResult.retryCount);
+    }
+
     @Test
     public void testSummarize_network() throws Exception {
         final RetrofitError retrofitError = mock(RetrofitError.class);
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.android;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ContactsUploadJournalTests {
+    private static final String CARD_A = "BEGIN:VCARD\r\nVERSION:3.0\r\nN:A;;;;\r\nEND:VCARD\r\n";
+    private static final String CARD_B = "BEGIN:VCARD\r\nVERSION:3.0\r\nN:B;;;;\r\nEND:VCARD\r\n";
+
+    private static final List<EncodedContact> NONE = Collections.emptyList();
+
+    private ContactsUploadJournal journal;
+    private ContactsFingerprintIndex index;
+    private EncodedContact first;
+    private EncodedContact second;
+
+    @Before
+    public void setUp() throws Exception {
+        journal = new ContactsUploadJournal(RuntimeEnvironment.application);
+        journal.clear();
+        index = new ContactsFingerprintIndex(RuntimeEnvironment.application);
+        index.clear();
+        first = new EncodedContact("1", CARD_A);
+        second = new EncodedContact("2", CARD_B);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        journal.clear();
+        index.clear();
+    }
+
+    @Test
+    public void testResume() {
+        assertEquals(0, journal.resume(1, index));
+        journal.append(Collections.singletonList(first), NONE);
+        journal.append(Collections.singletonList(second), NONE);
+        journal.close();
+
+        assertEquals(2, journal.resume(1, index));
+
+        assertTrue(index.isUploaded(first));
+        assertTrue(index.isUploaded(second));
+    }
+
+    @Test
+    public void testResume_rejected() {
+        journal.resume(1, index);
+        journal.append(Collections.singletonList(first), Collections.singletonList(second));
+        journal.close();
+
+        assertEquals(2, journal.resume(1, index));
+
+        assertTrue(index.isUploaded(first));
+        assertFalse(index.isUploaded(second));
+        assertTrue(index.isRejected(second));
+    }
+
+    @Test
+    public void testResume_otherGeneration() {
+        journal.resume(1, index);
+        journal.append(Arrays.asList(first, second), NONE);
+        journal.close();
+
+        assertEquals(0, journal.resume(2, index));
+        journal.close();
+
+        assertFalse(index.isUploaded(first));
+        assertEquals(0, journal.resume(2, index));
+    }
+
+    @Test
+    public void testResume_tornRecord() throws Exception {
+        journal.resume(1, index);
+        journal.append(Collections.singletonList(first), NONE);
+        journal.close();
+        final FileOutputStream out = new FileOutputStream(journal.getFile(), true);
+        out.write(new byte[]{0, 0, 0, 42, 1, 2, 3});
+        out.close();
+
+        assertEquals(1, journal.resume(1, index));
+        journal.append(Collections.singletonList(second), NONE);
+        journal.close();
+
+        assertEquals(2, journal.resume(1, index));
+        assertTrue(index.isUploaded(first));
+        assertTrue(index.isUploaded(second));
+    }
+
+    @Test
+    public void testAppend_closed() {
+        journal.append(Collections.singletonList(first), NONE);
+
+        assertFalse(journal.getFile().exists());
+    }
+
+    @Test
+    public void testClear() {
+        journal.resume(1, index);
+        journal.append(Collections.singletonList(first), NONE);
+        assertTrue(journal.getFile().exists());
+
+        journal.clear();
+
+        assertFalse(journal.getFile().exists());
+        assertEquals(0, journal.resume(1, index));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.digits.sdk.android;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ContactsUploadPagePlannerTests {
+    private ContactsUploadPagePlanner planner;
+
+    @Before
+    public void setUp() throws Exception {
+        planner = new ContactsUploadPagePlanner(10000);
+    }
+
+    @Test
+    public void testIsFull() {
+        assertFalse(planner.isFull(1, 100));
+        assertTrue(planner.isFull(1, 10000));
+        assertTrue(planner.isFull(ContactsUploadPagePlanner.MAX_PAGE_SIZE, 100));
+    }
+
+    @Test
+    public void testOnPageUploaded_fastNetwork() {
+        planner.onPageUploaded(10000, 1000);
+
+        // Growth is limited to twice the current budget.
+        assertEquals(20000, planner.getPageBytes());
+    }
+
+    @Test
+    public void testOnPageUploaded_slowNetwork() {
+        planner.onPageUploaded(10000, 10000);
+
+        assertEquals(3000, planner.getPageBytes());
+    }
+
+    @Test
+    public void testOnPageUploaded_bounds() {
+        planner.onPageUploaded(1000, 60000);
+        assertEquals(ContactsUploadPagePlanner.MIN_PAGE_BYTES, planner.getPageBytes());
+
+        for (int i = 0; i < 20; i++) {
+            planner.onPageUploaded(planner.getPageBytes(), 0);
+        }
+        assertEquals(ContactsUploadPagePlanner.MAX_PAGE_BYTES, planner.getPageBytes());
+    }
+
+    @Test
+    public void testOnPageFailed() {
+        planner.onPageFailed();
+        assertEquals(5000, planner.getPageBytes());
+
+        for (int i = 0; i < 10; i++) {
+            planner.onPageFailed();
+        }
+        assertEquals(ContactsUploadPagePlanner.MIN_PAGE_BYTES, planner.getPageBytes());
+    }
+}
@@ -24,7 +24,10 @@ import org.junit.runner.RunWith;
 import org.robolectric.RobolectricGradleTestRunner;
 import org.robolectric.annotation.Config;
 
+import java.util.Collections;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(RobolectricGradleTestRunner.class)
 @Config(constants = BuildConfig.class, sdk = 21)
@@ -39,5 +42,26 @@ public class ContactsUploadResultTests {
                 .CREATOR.createFromParcel(parcel);
         assertEquals(result.successCount, parceledResult.successCount);
         assertEquals(result.totalCount, parceledResult.totalCount);
+        assertEquals(0, parceledResult.rejectedCount);
+        assertTrue(parceledResult.rejectedContacts.isEmpty());
+    }
+
+    @Test
+    public void testParcelable_rejectedContacts() {
+        final ContactsUploadResult result = new ContactsUploadResult(1, 3, 2,
+                Collections.singletonList(
+                        new ContactsUploadResult.RejectedContact("key", 214, "Bad vCard")));
+        final Parcel parcel = Parcel.obtain();
+        result.writeToParcel(parcel, 0);
+        parcel.setDataPosition(0);
+        final ContactsUploadResult parceledResult = ContactsUploadResult
+                .CREATOR.createFromParcel(parcel);
+        assertEquals(2, parceledResult.rejectedCount);
+        assertEquals(1, parceledResult.rejectedContacts.size());
+        final ContactsUploadResult.RejectedContact rejected =
+                parceledResult.rejectedContacts.get(0);
+        assertEquals("key", rejected.lookupKey);
+        assertEquals(214, rejected.errorCode);
+        assertEquals("Bad vCard", rejected.errorMessage);
     }
 }
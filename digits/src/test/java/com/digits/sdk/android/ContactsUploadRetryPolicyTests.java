@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.digits.sdk.android;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import retrofit.RetrofitError;
+import retrofit.client.Header;
+import retrofit.client.Response;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ContactsUploadRetryPolicyTests {
+    private Random random;
+    private ContactsUploadRetryPolicy policy;
+
+    @Before
+    public void setUp() throws Exception {
+        random = mock(Random.class);
+        when(random.nextDouble()).thenReturn(0.5);
+        policy = new ContactsUploadRetryPolicy(3, 1000, 3000, random);
+    }
+
+    @Test
+    public void testClassify() {
+        assertEquals(ContactsUploadRetryPolicy.ErrorType.NETWORK,
+                ContactsUploadRetryPolicy.classify(createNetworkError()));
+        assertEquals(ContactsUploadRetryPolicy.ErrorType.TRANSIENT,
+                ContactsUploadRetryPolicy.classify(createHttpError(429)));
+        assertEquals(ContactsUploadRetryPolicy.ErrorType.TRANSIENT,
+                ContactsUploadRetryPolicy.classify(createHttpError(503)));
+        assertEquals(ContactsUploadRetryPolicy.ErrorType.AUTH,
+                ContactsUploadRetryPolicy.classify(createHttpError(401)));
+        assertEquals(ContactsUploadRetryPolicy.ErrorType.CLIENT,
+                ContactsUploadRetryPolicy.classify(createHttpError(413)));
+
+        final RetrofitError conversionError = mock(RetrofitError.class);
+        when(conversionError.getKind()).thenReturn(RetrofitError.Kind.CONVERSION);
+        assertEquals(ContactsUploadRetryPolicy.ErrorType.UNEXPECTED,
+                ContactsUploadRetryPolicy.classify(conversionError));
+    }
+
+    @Test
+    public void testGetRetryDelayMillis_backoff() {
+        final RetrofitError error = createNetworkError();
+
+        assertEquals(500, policy.getRetryDelayMillis(error, 0));
+        assertEquals(1000, policy.getRetryDelayMillis(error, 1));
+        // Capped at the max delay
+        assertEquals(1500, policy.getRetryDelayMillis(error, 2));
+        assertEquals(-1, policy.getRetryDelayMillis(error, 3));
+    }
+
+    @Test
+    public void testGetRetryDelayMillis_jitter() {
+        policy = new ContactsUploadRetryPolicy(3, 1000, 3000, new Random());
+
+        for (int i = 0; i < 100; i++) {
+            final long delay = policy.getRetryDelayMillis(createHttpError(500), 1);
+            assertTrue(delay >= 0 && delay < 2000);
+        }
+    }
+
+    @Test
+    public void testGetRetryDelayMillis_notRetryable() {
+        assertEquals(-1, policy.getRetryDelayMillis(createHttpError(400), 0));
+        assertEquals(-1, policy.getRetryDelayMillis(createHttpError(403), 0));
+    }
+
+    @Test
+    public void testGetRetryDelayMillis_retryAfter() {
+        assertEquals(2000, policy.getRetryDelayMillis(createHttpError(429, "2"), 0));
+        assertEquals(-1, policy.getRetryDelayMillis(createHttpError(429, "3600"), 0));
+    }
+
+    @Test
+    public void testGetRetryAfterMillis() {
+        final long now = 784111777000L;
+
+        assertEquals(120000, ContactsUploadRetryPolicy.getRetryAfterMillis(
+                createResponse(503, "120"), now));
+        assertEquals(3000, ContactsUploadRetryPolicy.getRetryAfterMillis(
+                createResponse(503, "Sun, 06 Nov 1994 08:49:40 GMT"), now));
+        assertEquals(0, ContactsUploadRetryPolicy.getRetryAfterMillis(
+                createResponse(503, "Sun, 06 Nov 1994 08:49:30 GMT"), now));
+        assertEquals(-1, ContactsUploadRetryPolicy.getRetryAfterMillis(
+                createResponse(503, "soon"), now));
+        assertEquals(-1, ContactsUploadRetryPolicy.getRetryAfterMillis(
+                createResponse(503, null), now));
+    }
+
+    private RetrofitError createNetworkError() {
+        final RetrofitError error = mock(RetrofitError.class);
+        when(error.getKind()).thenReturn(RetrofitError.Kind.NETWORK);
+        return error;
+    }
+
+    private RetrofitError createHttpError(int status) {
+        return createHttpError(status, null);
+    }
+
+    private RetrofitError createHttpError(int status, String retryAfter) {
+        final RetrofitError error = mock(RetrofitError.class);
+        final Response response = createResponse(status, retryAfter);
+        when(error.getKind()).thenReturn(RetrofitError.Kind.HTTP);
+        when(error.getResponse()).thenReturn(response);
+        return error;
+    }
+
+    // Response is final, which isn't mockable by Mockito, so this fn creates a stub.
+    private Response createResponse(int status, String retryAfter) {
+        final List<Header> headers = new ArrayList<>();
+        if (retryAfter != null) {
+            headers.add(new Header(ContactsUploadRetryPolicy.RETRY_AFTER_HEADER, retryAfter));
+        }
+        return new Response("url", status, "reason", headers, null);
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.digits.sdk.android;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ContactsUploadSchedulerTests {
+    private static final long PAGE_TIMEOUT_MILLIS = 200;
+
+    private ContactsUploadScheduler scheduler;
+
+    @Before
+    public void setUp() throws Exception {
+        scheduler = new ContactsUploadScheduler(2, 1, PAGE_TIMEOUT_MILLIS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testAwaitCompletion() {
+        final AtomicInteger pages = new AtomicInteger(0);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(scheduler.submit(new Runnable() {
+                @Override
+                public void run() {
+                    pages.incrementAndGet();
+                }
+            }));
+        }
+
+        assertTrue(scheduler.awaitCompletion());
+        assertEquals(10, pages.get());
+    }
+
+    @Test
+    public void testAwaitCompletion_pageTimeout() {
+        final AtomicInteger pages = new AtomicInteger(0);
+        scheduler.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(PAGE_TIMEOUT_MILLIS * 10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        scheduler.submit(new Runnable() {
+            @Override
+            public void run() {
+                pages.incrementAndGet();
+            }
+        });
+
+        assertFalse(scheduler.awaitCompletion());
+        assertEquals(1, pages.get());
+    }
+
+    @Test
+    public void testAwaitCompletion_pageFinishesAfterDeadline() {
+        final AtomicBoolean finished = new AtomicBoolean();
+        scheduler.submit(new Runnable() {
+            @Override
+            public void run() {
+                // Like a blocking socket call, which does not stop when interrupted.
+                final long end = System.nanoTime()
+                        + TimeUnit.MILLISECONDS.toNanos(PAGE_TIMEOUT_MILLIS * 3);
+                while (System.nanoTime() < end) {
+                    Thread.interrupted();
+                }
+                finished.set(true);
+            }
+        });
+
+        assertFalse(scheduler.awaitCompletion());
+        assertTrue(finished.get());
+    }
+
+    @Test
+    public void testAwaitCompletion_pageFailure() {
+        scheduler.submit(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException();
+            }
+        });
+
+        assertFalse(scheduler.awaitCompletion());
+    }
+
+    @Test
+    public void testSubmit_blocksWhileQueueIsFull() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final Runnable blockedPage = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        // Two running pages and one queued page fill every slot.
+        for (int i = 0; i < 3; i++) {
+            assertTrue(scheduler.submit(blockedPage));
+        }
+
+        final CountDownLatch submitted = new CountDownLatch(1);
+        final Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                scheduler.submit(blockedPage);
+                submitted.countDown();
+            }
+        });
+        producer.start();
+
+        assertFalse(submitted.await(PAGE_TIMEOUT_MILLIS / 4, TimeUnit.MILLISECONDS));
+        release.countDown();
+        assertTrue(submitted.await(PAGE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        assertTrue(scheduler.awaitCompletion());
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        scheduler.shutdown();
+        scheduler = new ContactsUploadScheduler(1, 1, TimeUnit.MINUTES.toMillis(1));
+        scheduler.submit(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+            }
+        });
+        started.await();
+
+        scheduler.cancel();
+
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+        assertTrue(scheduler.submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }));
+        assertTrue(scheduler.awaitCompletion());
+    }
+
+    @Test
+    public void testShutdown() {
+        scheduler.shutdown();
+
+        assertFalse(scheduler.submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }));
+    }
+}
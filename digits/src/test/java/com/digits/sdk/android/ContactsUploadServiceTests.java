@@ -21,6 +21,7 @@ import android.content.Intent;
 import android.database.Cursor;
 
 import com.google.gson.Gson;
+import com.twitter.sdk.android.core.TwitterAuthToken;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -31,29 +32,36 @@ import org.mockito.stubbing.Answer;
 import org.robolectric.RobolectricGradleTestRunner;
 import org.robolectric.annotation.Config;
 
+import java.io.InterruptedIOException;
 import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Locale;
-import java.util.concurrent.TimeUnit;
+import java.util.Random;
 
 import io.fabric.sdk.android.Logger;
-import io.fabric.sdk.android.services.concurrency.internal.RetryThreadPoolExecutor;
 import retrofit.RetrofitError;
 import retrofit.client.Header;
 import retrofit.client.Response;
 import retrofit.mime.TypedByteArray;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anySetOf;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -63,12 +71,16 @@ import static org.mockito.Mockito.when;
 public class ContactsUploadServiceTests {
     private Cursor cursor;
     private ContactsHelper helper;
-    private RetryThreadPoolExecutor executor;
+    private ContactsUploadScheduler scheduler;
+    private ContactsUploadRetryPolicy retryPolicy;
     private ApiInterface sdkService;
     private DigitsApiClientManager clientManager;
     private DigitsApiClient apiClient;
     private ContactsPreferenceManager perfManager;
-    private ArrayList<String> cradList;
+    private ContactsFingerprintIndex fingerprintIndex;
+    private ContactsUploadJournal journal;
+    private ContactsUploadConfig uploadConfig;
+    private ArrayList<EncodedContact> cradList;
     private ContactsUploadService service;
     private Logger logger;
     private ArgumentCaptor<Intent> intentCaptor;
@@ -77,8 +89,12 @@ public class ContactsUploadServiceTests {
 
     @Before
     public void setUp() throws Exception {
-        executor = mock(RetryThreadPoolExecutor.class);
+        scheduler = mock(ContactsUploadScheduler.class);
+        retryPolicy = new ContactsUploadRetryPolicy(2, 0, 0, new Random());
         perfManager = mock(MockContactsPreferenceManager.class);
+        fingerprintIndex = mock(ContactsFingerprintIndex.class);
+        journal = mock(ContactsUploadJournal.class);
+        uploadConfig = new ContactsUploadConfig.Builder().build();
         sdkService = mock(ApiInterface.class);
         digitsEventCollector = mock(DigitsEventCollector.class);
         apiClient = mock(DigitsApiClient.class);
@@ -87,34 +103,27 @@ public class ContactsUploadServiceTests {
         when(apiClient.getService()).thenReturn(sdkService);
         logger = mock(Logger.class);
         cursor = ContactsHelperTests.createCursor();
-        cradList = ContactsHelperTests.createCardList();
+        cradList = ContactsHelperTests.createContactList();
         intentCaptor = ArgumentCaptor.forClass(Intent.class);
         helper = mock(ContactsHelper.class);
         when(helper.getContactsCursor()).thenReturn(cursor);
-        when(helper.createContactList(cursor)).thenReturn(cradList);
+        stubReadContacts(cradList);
 
-        service = spy(new ContactsUploadService(clientManager, helper, perfManager, executor,
-                logger, Locale.JAPANESE, digitsEventCollector));
+        service = spy(new ContactsUploadService(clientManager, helper, perfManager,
+                fingerprintIndex, journal, uploadConfig, scheduler, retryPolicy, logger, Locale.JAPANESE, digitsEventCollector));
     }
 
     @Test
     public void testOnHandleIntent() throws Exception {
-        when(executor.awaitTermination(anyLong(), any(TimeUnit.class))).thenReturn(true);
-        doAnswer(new Answer() {
-            @Override
-            public Object answer(InvocationOnMock invocationOnMock) throws Throwable {
-                ((Runnable) invocationOnMock.getArguments()[0]).run();
-                return null;
-            }
-        }).when(executor).scheduleWithRetry(any(Runnable.class));
+        when(scheduler.awaitCompletion()).thenReturn(true);
+        runSubmittedPages();
 
         service.onHandleIntent(null);
 
         verify(helper).getContactsCursor();
-        verify(helper).createContactList(cursor);
-        verify(executor).scheduleWithRetry(any(Runnable.class));
-        verify(executor).shutdown();
-        verify(executor).awaitTermination(anyLong(), any(TimeUnit.class));
+        verify(helper).readContacts(eq(cursor), any(ContactsHelper.ContactsConsumer.class));
+        verify(scheduler).submit(any(Runnable.class));
+        verify(scheduler).awaitCompletion();
 
         verify(service).sendBroadcast(intentCaptor.capture());
         assertEquals(ContactsUploadService.UPLOAD_COMPLETE, intentCaptor.getValue().getAction());
@@ -132,16 +141,158 @@ public class ContactsUploadServiceTests {
 
     }
 
+    @Test
+    public void testOnHandleIntent_uploadsAllContactsWithoutPreviousUpload() throws Exception {
+        when(perfManager.getContactsReadTimestamp()).thenReturn(0L);
+        when(scheduler.awaitCompletion()).thenReturn(true);
+        runSubmittedPages();
+
+        service.onHandleIntent(null);
+
+        verify(fingerprintIndex).clear();
+        verify(sdkService).upload(any(String.class), any(VcardsBody.class));
+        verify(fingerprintIndex).markUploaded(cradList);
+        verify(fingerprintIndex).retain(Collections.singleton(cradList.get(0).lookupKey));
+        verify(fingerprintIndex).save();
+    }
+
+    @Test
+    public void testOnHandleIntent_resetsUploadForAnotherUser() throws Exception {
+        when(apiClient.getSession()).thenReturn(createSession(2L));
+        when(perfManager.getContactsUploadUserId()).thenReturn(1L);
+        // The reset clears the read timestamp
+        when(perfManager.getContactsReadTimestamp()).thenReturn(0L);
+        when(fingerprintIndex.isUploaded(cradList.get(0))).thenReturn(true);
+        when(scheduler.awaitCompletion()).thenReturn(true);
+
+        service.onHandleIntent(null);
+
+        verify(perfManager).resetContactsUpload(2L);
+        verify(fingerprintIndex).clear();
+        verify(fingerprintIndex, never()).load();
+    }
+
+    @Test
+    public void testOnHandleIntent_keepsUploadOfSameUser() throws Exception {
+        when(apiClient.getSession()).thenReturn(createSession(2L));
+        when(perfManager.getContactsUploadUserId()).thenReturn(2L);
+        when(perfManager.getContactsReadTimestamp()).thenReturn(1L);
+        when(scheduler.awaitCompletion()).thenReturn(true);
+
+        service.onHandleIntent(null);
+
+        verify(perfManager, never()).resetContactsUpload(anyLong());
+        verify(fingerprintIndex).load();
+        verify(fingerprintIndex, never()).clear();
+    }
+
+    @Test
+    public void testOnHandleIntent_journalsUploadedPages() throws Exception {
+        when(perfManager.getContactsUploadGeneration()).thenReturn(3);
+        when(scheduler.awaitCompletion()).thenReturn(true);
+        runSubmittedPages();
+
+        service.onHandleIntent(null);
+
+        verify(journal).resume(3, fingerprintIndex);
+        verify(journal).append(cradList, Collections.<EncodedContact>emptyList());
+        verify(journal).clear();
+        verify(journal).close();
+    }
+
+    @Test
+    public void testOnHandleIntent_keepsJournalOnFailure() throws Exception {
+        when(scheduler.awaitCompletion()).thenReturn(true);
+        runSubmittedPages();
+        final RetrofitError retrofitError = mock(RetrofitError.class);
+        when(retrofitError.getKind()).thenReturn(RetrofitError.Kind.NETWORK);
+        when(sdkService.upload(any(String.class), any(VcardsBody.class))).thenThrow(retrofitError);
+
+        service.onHandleIntent(null);
+
+        verify(journal).resume(0, fingerprintIndex);
+        verify(journal, never()).append(anyListOf(EncodedContact.class),
+                anyListOf(EncodedContact.class));
+        verify(journal, never()).clear();
+        verify(journal).close();
+    }
+
+    @Test
+    public void testOnHandleIntent_skipsUnchangedContacts() throws Exception {
+        when(perfManager.getContactsReadTimestamp()).thenReturn(1L);
+        when(fingerprintIndex.isUploaded(cradList.get(0))).thenReturn(true);
+        when(scheduler.awaitCompletion()).thenReturn(true);
+
+        service.onHandleIntent(null);
+
+        verify(fingerprintIndex).load();
+        verify(scheduler, never()).submit(any(Runnable.class));
+        verify(fingerprintIndex).retain(Collections.singleton(cradList.get(0).lookupKey));
+        verify(fingerprintIndex).save();
+
+        verify(service).sendBroadcast(intentCaptor.capture());
+        assertEquals(ContactsUploadService.UPLOAD_COMPLETE, intentCaptor.getValue().getAction());
+        final ContactsUploadResult result = intentCaptor.getValue()
+                .getParcelableExtra(ContactsUploadService.UPLOAD_COMPLETE_EXTRA);
+        assertEquals(cradList.size(), result.successCount);
+        assertEquals(cradList.size(), result.totalCount);
+    }
+
+    @Test
+    public void testUpload_compressed() throws Exception {
+        service = spy(new ContactsUploadService(clientManager, helper, perfManager,
+                fingerprintIndex, journal, new ContactsUploadConfig.Builder()
+                .withCompression(true)
+                .withCompressionThreshold(0)
+                .build(), scheduler, retryPolicy, logger, Locale.JAPANESE, digitsEventCollector));
+        stubReadContacts(ContactsHelperTests.createContactList());
+        when(scheduler.awaitCompletion()).thenReturn(true);
+        runSubmittedPages();
+
+        service.onHandleIntent(null);
+
+        final ArgumentCaptor<VcardsBody> bodyCaptor = ArgumentCaptor.forClass(VcardsBody.class);
+        verify(sdkService).upload(eq(VcardsBody.GZIP), bodyCaptor.capture());
+        assertEquals(VcardsBody.GZIP, bodyCaptor.getValue().contentEncoding);
+    }
+
+    @Test
+    public void testUpload_compressionDisabled() throws Exception {
+        stubReadContacts(ContactsHelperTests.createContactList());
+        when(scheduler.awaitCompletion()).thenReturn(true);
+        runSubmittedPages();
+
+        service.onHandleIntent(null);
+
+        final ArgumentCaptor<VcardsBody> bodyCaptor = ArgumentCaptor.forClass(VcardsBody.class);
+        verify(sdkService).upload(eq((String) null), bodyCaptor.capture());
+        assertEquals(ContactsHelperTests.createCardList(), parse(bodyCaptor.getValue()).vcards);
+    }
+
+    @Test
+    public void testUpload_compactFormat() throws Exception {
+        service = spy(new ContactsUploadService(clientManager, helper, perfManager,
+                fingerprintIndex, journal, new ContactsUploadConfig.Builder()
+                .withCompactFormat(true)
+                .build(), scheduler, retryPolicy, logger, Locale.JAPANESE, digitsEventCollector));
+        final List<EncodedContact> contacts = ContactsHelperTests.createContactList();
+        stubReadContacts(contacts);
+        when(scheduler.awaitCompletion()).thenReturn(true);
+        runSubmittedPages();
+
+        service.onHandleIntent(null);
+
+        final ArgumentCaptor<CompactContactsBody> bodyCaptor =
+                ArgumentCaptor.forClass(CompactContactsBody.class);
+        verify(sdkService).uploadCompact(eq((String) null), bodyCaptor.capture());
+        verify(sdkService, never()).upload(any(String.class), any(VcardsBody.class));
+        assertArrayEquals(CompactContactsBody.toBytes(contacts), bodyCaptor.getValue().bytes);
+    }
+
     @Test
     public void testOnHandleIntent_rateLimit() throws Exception {
-        when(executor.awaitTermination(anyLong(), any(TimeUnit.class))).thenReturn(true);
-        doAnswer(new Answer() {
-            @Override
-            public Object answer(InvocationOnMock invocationOnMock) throws Throwable {
-                ((Runnable) invocationOnMock.getArguments()[0]).run();
-                return null;
-            }
-        }).when(executor).scheduleWithRetry(any(Runnable.class));
+        when(scheduler.awaitCompletion()).thenReturn(true);
+        runSubmittedPages();
         final RetrofitError retrofitError = mock(RetrofitError.class);
         final int errorCode = 88;
         final int httpStatus = 429;
@@ -154,7 +305,7 @@ public class ContactsUploadServiceTests {
         when(retrofitError.getResponse()).thenReturn(response);
         when(retrofitError.getKind()).thenReturn(RetrofitError.Kind.HTTP);
         when(retrofitError.getStackTrace()).thenReturn(new StackTraceElement[0]);
-        when(sdkService.upload(any(Vcards.class))).thenThrow(retrofitError);
+        when(sdkService.upload(any(String.class), any(VcardsBody.class))).thenThrow(retrofitError);
 
         service.onHandleIntent(null);
 
@@ -163,25 +314,21 @@ public class ContactsUploadServiceTests {
         assertEquals(captor.getValue(), String.format(Locale.JAPANESE,
                 ContactsUploadService.RETROFIT_ERROR_LOG_FORMAT, httpStatus, apiError.code,
                 apiError.message));
+        verify(sdkService, times(3)).upload(any(String.class), any(VcardsBody.class));
 
         verify(service).sendBroadcast(intentCaptor.capture());
         final ContactsUploadFailureResult result = intentCaptor.getValue()
                 .getParcelableExtra(ContactsUploadService.UPLOAD_FAILED_EXTRA);
         assertEquals(ContactsUploadFailureResult.Summary.RATE_LIMIT, result.summary);
+        assertEquals(2, result.retryCount);
         verify(digitsEventCollector).failedContactsUpload(any(ContactsUploadFailureDetails.class));
 
     }
 
     @Test
     public void testOnHandleIntent_nullApiError() throws Exception {
-        when(executor.awaitTermination(anyLong(), any(TimeUnit.class))).thenReturn(true);
-        doAnswer(new Answer() {
-            @Override
-            public Object answer(InvocationOnMock invocationOnMock) throws Throwable {
-                ((Runnable) invocationOnMock.getArguments()[0]).run();
-                return null;
-            }
-        }).when(executor).scheduleWithRetry(any(Runnable.class));
+        when(scheduler.awaitCompletion()).thenReturn(true);
+        runSubmittedPages();
         final RetrofitError retrofitError = mock(RetrofitError.class);
         final int status = 401;
         final String body = "{}";
@@ -191,7 +338,7 @@ public class ContactsUploadServiceTests {
         when(retrofitError.getKind()).thenReturn(RetrofitError.Kind.CONVERSION);
         when(retrofitError.getStackTrace()).thenReturn(new StackTraceElement[0]);
         when(retrofitError.toString()).thenReturn(exceptionString);
-        when(sdkService.upload(any(Vcards.class))).thenThrow(retrofitError);
+        when(sdkService.upload(any(String.class), any(VcardsBody.class))).thenThrow(retrofitError);
 
         service.onHandleIntent(null);
 
@@ -208,6 +355,117 @@ public class ContactsUploadServiceTests {
 
     }
 
+    @Test
+    public void testOnHandleIntent_rejectedContacts() throws Exception {
+        final List<EncodedContact> contacts = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            contacts.add(new EncodedContact(String.valueOf(i), "vcard" + i));
+        }
+        stubReadContacts(contacts);
+        when(scheduler.awaitCompletion()).thenReturn(true);
+        runSubmittedPages();
+        final List<UploadError> errors = new ArrayList<>();
+        errors.add(new UploadError(214, "Bad vCard", 1));
+        when(sdkService.upload(any(String.class), any(VcardsBody.class)))
+                .thenReturn(new UploadResponse(errors));
+
+        service.onHandleIntent(null);
+
+        verify(fingerprintIndex).markUploaded(Arrays.asList(contacts.get(0), contacts.get(2)));
+        verify(fingerprintIndex).markRejected(Collections.singletonList(contacts.get(1)));
+        verify(journal).append(Arrays.asList(contacts.get(0), contacts.get(2)),
+                Collections.singletonList(contacts.get(1)));
+
+        verify(service).sendBroadcast(intentCaptor.capture());
+        final ContactsUploadResult result = intentCaptor.getValue()
+                .getParcelableExtra(ContactsUploadService.UPLOAD_COMPLETE_EXTRA);
+        assertEquals(2, result.successCount);
+        assertEquals(3, result.totalCount);
+        assertEquals(1, result.rejectedCount);
+        assertEquals("1", result.rejectedContacts.get(0).lookupKey);
+        assertEquals(214, result.rejectedContacts.get(0).errorCode);
+        verify(perfManager).setContactsUploaded(2);
+    }
+
+    @Test
+    public void testOnHandleIntent_skipsRejectedContacts() throws Exception {
+        when(fingerprintIndex.isRejected(cradList.get(0))).thenReturn(true);
+        when(scheduler.awaitCompletion()).thenReturn(true);
+
+        service.onHandleIntent(null);
+
+        verify(scheduler, never()).submit(any(Runnable.class));
+        verify(service).sendBroadcast(intentCaptor.capture());
+        assertEquals(ContactsUploadService.UPLOAD_FAILED, intentCaptor.getValue().getAction());
+        final ContactsUploadFailureResult result = intentCaptor.getValue()
+                .getParcelableExtra(ContactsUploadService.UPLOAD_FAILED_EXTRA);
+        assertEquals(ContactsUploadFailureResult.Summary.BAD_REQUEST, result.summary);
+    }
+
+    @Test
+    public void testOnHandleIntent_retriesTransientError() throws Exception {
+        when(scheduler.awaitCompletion()).thenReturn(true);
+        runSubmittedPages();
+        final RetrofitError retrofitError = mock(RetrofitError.class);
+        when(retrofitError.getResponse()).thenReturn(createResponse(503, "{}"));
+        when(retrofitError.getKind()).thenReturn(RetrofitError.Kind.HTTP);
+        when(sdkService.upload(any(String.class), any(VcardsBody.class))).thenThrow(retrofitError)
+                .thenReturn(new UploadResponse(new ArrayList<UploadError>()));
+
+        service.onHandleIntent(null);
+
+        verify(sdkService, times(2)).upload(any(String.class), any(VcardsBody.class));
+        verify(service).sendBroadcast(intentCaptor.capture());
+        assertEquals(ContactsUploadService.UPLOAD_COMPLETE, intentCaptor.getValue().getAction());
+        final ContactsUploadResult result = intentCaptor.getValue()
+                .getParcelableExtra(ContactsUploadService.UPLOAD_COMPLETE_EXTRA);
+        assertEquals(cradList.size(), result.successCount);
+    }
+
+    @Test
+    public void testOnHandleIntent_timesOnlySuccessfulAttempt() throws Exception {
+        final Random random = mock(Random.class);
+        when(random.nextDouble()).thenReturn(0.99);
+        service = spy(new ContactsUploadService(clientManager, helper, perfManager,
+                fingerprintIndex, journal, uploadConfig, scheduler,
+                new ContactsUploadRetryPolicy(1, 500, 500, random), logger, Locale.JAPANESE,
+                digitsEventCollector));
+        when(scheduler.awaitCompletion()).thenReturn(true);
+        runSubmittedPages();
+        final RetrofitError retrofitError = mock(RetrofitError.class);
+        when(retrofitError.getResponse()).thenReturn(createResponse(503, "{}"));
+        when(retrofitError.getKind()).thenReturn(RetrofitError.Kind.HTTP);
+        when(sdkService.upload(any(String.class), any(VcardsBody.class))).thenThrow(retrofitError)
+                .thenReturn(new UploadResponse(new ArrayList<UploadError>()));
+        final ArgumentCaptor<Long> elapsedCaptor = ArgumentCaptor.forClass(Long.class);
+
+        service.onHandleIntent(null);
+
+        verify(service).onPageTimed(anyLong(), elapsedCaptor.capture());
+        // The wait of about 495 ms before the retry is not part of the page duration.
+        assertTrue(elapsedCaptor.getValue() < 400);
+    }
+
+    @Test
+    public void testOnHandleIntent_doesNotRetryClientError() throws Exception {
+        when(scheduler.awaitCompletion()).thenReturn(true);
+        runSubmittedPages();
+        final RetrofitError retrofitError = mock(RetrofitError.class);
+        when(retrofitError.getResponse()).thenReturn(createResponse(404, "{}"));
+        when(retrofitError.getKind()).thenReturn(RetrofitError.Kind.HTTP);
+        when(retrofitError.getStackTrace()).thenReturn(new StackTraceElement[0]);
+        when(sdkService.upload(any(String.class), any(VcardsBody.class))).thenThrow(retrofitError);
+
+        service.onHandleIntent(null);
+
+        verify(sdkService).upload(any(String.class), any(VcardsBody.class));
+        verify(service).sendBroadcast(intentCaptor.capture());
+        final ContactsUploadFailureResult result = intentCaptor.getValue()
+                .getParcelableExtra(ContactsUploadService.UPLOAD_FAILED_EXTRA);
+        assertEquals(ContactsUploadFailureResult.Summary.BAD_REQUEST, result.summary);
+        assertEquals(0, result.retryCount);
+    }
+
     @Test
     public void testOnHandleIntent_exception() throws Exception {
         final Exception exception = new NullPointerException("trolololo");
@@ -250,16 +508,15 @@ public class ContactsUploadServiceTests {
 
     @Test
     public void testOnHandleIntent_uploadTimeout() throws Exception {
-        when(executor.awaitTermination(anyLong(), any(TimeUnit.class))).thenReturn(false);
+        when(scheduler.submit(any(Runnable.class))).thenReturn(true);
+        when(scheduler.awaitCompletion()).thenReturn(false);
 
         service.onHandleIntent(null);
 
         verify(helper).getContactsCursor();
-        verify(helper).createContactList(cursor);
-        verify(executor).scheduleWithRetry(any(Runnable.class));
-        verify(executor).shutdown();
-        verify(executor).awaitTermination(anyLong(), any(TimeUnit.class));
-        verify(executor).shutdownNow();
+        verify(helper).readContacts(eq(cursor), any(ContactsHelper.ContactsConsumer.class));
+        verify(scheduler).submit(any(Runnable.class));
+        verify(scheduler).awaitCompletion();
 
         verify(service).sendBroadcast(intentCaptor.capture());
         assertEquals(ContactsUploadService.UPLOAD_FAILED, intentCaptor.getValue().getAction());
@@ -268,16 +525,65 @@ public class ContactsUploadServiceTests {
         assertEquals(ContactsUploadFailureResult.Summary.UNEXPECTED, result.summary);
 
         verify(perfManager).setContactImportPermissionGranted();
+        verify(perfManager).getContactsReadTimestamp();
+        verify(perfManager).getContactsUploadGeneration();
         verifyNoMoreInteractions(perfManager);
         verify(digitsEventCollector).failedContactsUpload(any(ContactsUploadFailureDetails.class));
     }
 
     @Test
-    public void testGetNumberOfPages() {
-        assertEquals(1, service.getNumberOfPages(100));
-        assertEquals(1, service.getNumberOfPages(50));
-        assertEquals(2, service.getNumberOfPages(101));
-        assertEquals(2, service.getNumberOfPages(199));
+    public void testOnHandleIntent_pageTimedOut() throws Exception {
+        when(scheduler.awaitCompletion()).thenReturn(false);
+        runSubmittedPages();
+        when(sdkService.upload(any(String.class), any(VcardsBody.class)))
+                .thenAnswer(new Answer<UploadResponse>() {
+                    @Override
+                    public UploadResponse answer(InvocationOnMock invocation) {
+                        // The page deadline interrupts the attempt.
+                        Thread.currentThread().interrupt();
+                        throw RetrofitError.networkError("url", new InterruptedIOException());
+                    }
+                });
+
+        try {
+            service.onHandleIntent(null);
+        } finally {
+            Thread.interrupted();
+        }
+
+        verify(sdkService).upload(any(String.class), any(VcardsBody.class));
+        verify(service).onPageTimed(anyLong(), anyLong());
+        verify(service).sendBroadcast(intentCaptor.capture());
+        final ContactsUploadFailureResult result = intentCaptor.getValue()
+                .getParcelableExtra(ContactsUploadService.UPLOAD_FAILED_EXTRA);
+        assertEquals(ContactsUploadFailureResult.Summary.NETWORK, result.summary);
+        assertEquals(1, result.retryCount);
+    }
+
+    @Test
+    public void testOnHandleIntent_uploadsPages() throws Exception {
+        final List<EncodedContact> contacts = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            contacts.add(new EncodedContact(String.valueOf(i), "vcard" + i));
+        }
+        stubReadContacts(contacts);
+        when(scheduler.awaitCompletion()).thenReturn(true);
+        runSubmittedPages();
+
+        service.onHandleIntent(null);
+
+        final ArgumentCaptor<VcardsBody> bodyCaptor = ArgumentCaptor.forClass(VcardsBody.class);
+        verify(sdkService, times(3)).upload(any(String.class), bodyCaptor.capture());
+        assertEquals(100, parse(bodyCaptor.getAllValues().get(0)).vcards.size());
+        assertEquals(100, parse(bodyCaptor.getAllValues().get(1)).vcards.size());
+        assertEquals(50, parse(bodyCaptor.getAllValues().get(2)).vcards.size());
+        assertEquals("vcard249", parse(bodyCaptor.getAllValues().get(2)).vcards.get(49));
+
+        verify(service).sendBroadcast(intentCaptor.capture());
+        final ContactsUploadResult result = intentCaptor.getValue()
+                .getParcelableExtra(ContactsUploadService.UPLOAD_COMPLETE_EXTRA);
+        assertEquals(250, result.successCount);
+        assertEquals(250, result.totalCount);
     }
 
     @Test
@@ -313,24 +619,17 @@ public class ContactsUploadServiceTests {
     @Test
     public void testUploadEventCounts() throws Exception {
         final TestDigitsEventCollector collector = new TestDigitsEventCollector(null, null, null);
-        service = spy(new ContactsUploadService(clientManager, helper, perfManager, executor,
-                logger, Locale.JAPANESE, collector));
-        when(executor.awaitTermination(anyLong(), any(TimeUnit.class))).thenReturn(true);
-        doAnswer(new Answer() {
-            @Override
-            public Object answer(InvocationOnMock invocationOnMock) throws Throwable {
-                ((Runnable) invocationOnMock.getArguments()[0]).run();
-                return null;
-            }
-        }).when(executor).scheduleWithRetry(any(Runnable.class));
+        service = spy(new ContactsUploadService(clientManager, helper, perfManager,
+                fingerprintIndex, journal, uploadConfig, scheduler, retryPolicy, logger, Locale.JAPANESE, collector));
+        when(scheduler.awaitCompletion()).thenReturn(true);
+        runSubmittedPages();
 
         service.onHandleIntent(null);
 
         verify(helper).getContactsCursor();
-        verify(helper).createContactList(cursor);
-        verify(executor).scheduleWithRetry(any(Runnable.class));
-        verify(executor).shutdown();
-        verify(executor).awaitTermination(anyLong(), any(TimeUnit.class));
+        verify(helper).readContacts(eq(cursor), any(ContactsHelper.ContactsConsumer.class));
+        verify(scheduler).submit(any(Runnable.class));
+        verify(scheduler).awaitCompletion();
 
         verify(service).sendBroadcast(intentCaptor.capture());
         assertEquals(ContactsUploadService.UPLOAD_COMPLETE, intentCaptor.getValue().getAction());
@@ -351,10 +650,77 @@ public class ContactsUploadServiceTests {
         assertEquals(details.totalContacts, 1);
     }
 
+    @Test
+    public void testOnHandleIntent_submitRejected() throws Exception {
+        when(scheduler.submit(any(Runnable.class))).thenReturn(false);
+        when(scheduler.awaitCompletion()).thenReturn(true);
+
+        service.onHandleIntent(null);
+
+        verify(scheduler).awaitCompletion();
+        verify(fingerprintIndex, never()).retain(anySetOf(String.class));
+        verify(fingerprintIndex).save();
+
+        verify(service).sendBroadcast(intentCaptor.capture());
+        assertEquals(ContactsUploadService.UPLOAD_FAILED, intentCaptor.getValue().getAction());
+    }
+
+    @Test
+    public void testOnHandleIntent_exceptionCancelsPages() throws Exception {
+        when(helper.getContactsCursor()).thenThrow(new NullPointerException());
+
+        service.onHandleIntent(null);
+
+        verify(scheduler).cancel();
+    }
+
+    @Test
+    public void testOnDestroy() {
+        service.onCreate();
+        service.onDestroy();
+
+        verify(scheduler).shutdown();
+    }
+
+    private Vcards parse(VcardsBody body) throws UnsupportedEncodingException {
+        return new Gson().fromJson(new String(body.bytes, "UTF-8"), Vcards.class);
+    }
+
+    private void runSubmittedPages() {
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocationOnMock) throws Throwable {
+                ((Runnable) invocationOnMock.getArguments()[0]).run();
+                return true;
+            }
+        }).when(scheduler).submit(any(Runnable.class));
+    }
+
+    private void stubReadContacts(final List<EncodedContact> contacts) {
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocationOnMock) throws Throwable {
+                final ContactsHelper.ContactsConsumer consumer =
+                        (ContactsHelper.ContactsConsumer) invocationOnMock.getArguments()[1];
+                for (EncodedContact contact : contacts) {
+                    if (!consumer.onContact(contact)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }).when(helper).readContacts(eq(cursor), any(ContactsHelper.ContactsConsumer.class));
+    }
+
     String toJson(UploadResponse response) {
         return new Gson().toJson(response);
     }
 
+    private static DigitsSession createSession(long userId) {
+        return new DigitsSession(new TwitterAuthToken(TestConstants.TOKEN, TestConstants.SECRET),
+                userId);
+    }
+
     class TestDigitsEventCollector extends DigitsEventCollector {
         List<Object> events;
 
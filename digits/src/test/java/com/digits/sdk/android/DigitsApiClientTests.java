@@ -26,10 +26,13 @@ import org.junit.runner.RunWith;
 import org.robolectric.RobolectricGradleTestRunner;
 import org.robolectric.annotation.Config;
 
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 
 import javax.net.ssl.SSLSocketFactory;
 
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 
@@ -65,5 +68,46 @@ public class DigitsApiClientTests {
         final ApiInterface newSdkService = digitsApiClient.getService();
         assertTrue(sdkService == newSdkService);
     }
+
+    @Test
+    public void testGetSdkService_callbackExecutor() throws Exception {
+        final Executor callbackExecutor = mock(Executor.class);
+        final ApiInterface workerService = digitsApiClient.getService(callbackExecutor);
+
+        assertSame(workerService, digitsApiClient.getService(callbackExecutor));
+        assertNotSame(digitsApiClient.getService(), workerService);
+        assertNotSame(workerService, digitsApiClient.getService(mock(Executor.class)));
+    }
+
+    @Test
+    public void testGetSdkService_alternatingCallbackExecutors() throws Exception {
+        final Executor first = mock(Executor.class);
+        final Executor second = mock(Executor.class);
+        final ApiInterface firstService = digitsApiClient.getService(first);
+        final ApiInterface secondService = digitsApiClient.getService(second);
+
+        assertSame(firstService, digitsApiClient.getService(first));
+        assertSame(secondService, digitsApiClient.getService(second));
+    }
+
+    @Test
+    public void testGetSdkService_evictsLeastRecentlyUsedExecutor() throws Exception {
+        final Executor first = mock(Executor.class);
+        final ApiInterface firstService = digitsApiClient.getService(first);
+        final Executor recent = mock(Executor.class);
+        final ApiInterface recentService = digitsApiClient.getService(recent);
+        for (int i = 0; i < DigitsApiClient.MAX_WORKER_SERVICES - 1; i++) {
+            digitsApiClient.getService(mock(Executor.class));
+            digitsApiClient.getService(recent);
+        }
+
+        assertSame(recentService, digitsApiClient.getService(recent));
+        assertNotSame(firstService, digitsApiClient.getService(first));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetSdkService_nullCallbackExecutor() throws Exception {
+        digitsApiClient.getService(null);
+    }
 }
 
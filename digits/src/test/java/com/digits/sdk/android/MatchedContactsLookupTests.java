@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.android;
+
+import com.twitter.sdk.android.core.Callback;
+import com.twitter.sdk.android.core.Result;
+import com.twitter.sdk.android.core.TwitterException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import retrofit.RetrofitError;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class MatchedContactsLookupTests {
+    private static final long MAX_AGE = Long.MAX_VALUE;
+    private static final long USER_ID = 7L;
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private MatchedContactsStore store;
+    private ContactsPreferenceManager prefManager;
+    private ApiInterface service;
+    private MatchedContactsLookup lookup;
+
+    @Before
+    public void setUp() throws Exception {
+        store = new MatchedContactsStore(RuntimeEnvironment.application);
+        store.clear();
+        prefManager = mock(ContactsPreferenceManager.class);
+        service = mock(ApiInterface.class);
+        when(service.usersAndUploadedBy((String) isNull(), anyInt()))
+                .thenReturn(MockApiInterface.createContacts("next", 1L));
+        when(service.usersAndUploadedBy(eq("next"), anyInt()))
+                .thenReturn(MockApiInterface.createContacts(null, 2L));
+        lookup = new MatchedContactsLookup(store, prefManager, DIRECT_EXECUTOR,
+                DIRECT_EXECUTOR);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        store.clear();
+    }
+
+    @Test
+    public void testLookup_noStoredMatches() {
+        final RecordingCallback callback = new RecordingCallback();
+
+        lookup.lookup(service, USER_ID, MAX_AGE, callback);
+
+        verify(service).usersAndUploadedBy(null, MatchedContactsLookup.PAGE_SIZE);
+        verify(service).usersAndUploadedBy("next", MatchedContactsLookup.PAGE_SIZE);
+        assertEquals(1, callback.results.size());
+        assertEquals(2, callback.results.get(0).users.size());
+    }
+
+    @Test
+    public void testLookup_freshMatches() {
+        lookup.lookup(service, USER_ID, MAX_AGE, new RecordingCallback());
+        final RecordingCallback callback = new RecordingCallback();
+
+        lookup.lookup(service, USER_ID, MAX_AGE, callback);
+
+        verify(service, times(1)).usersAndUploadedBy((String) isNull(), anyInt());
+        assertEquals(1, callback.results.size());
+        assertEquals(2, callback.results.get(0).users.size());
+    }
+
+    @Test
+    public void testLookup_staleMatches() {
+        lookup.lookup(service, USER_ID, MAX_AGE, new RecordingCallback());
+        when(service.usersAndUploadedBy(eq("next"), anyInt()))
+                .thenReturn(MockApiInterface.createContacts(null, 3L));
+        final RecordingCallback callback = new RecordingCallback();
+
+        lookup.lookup(service, USER_ID, 0, callback);
+
+        // The stored matches are delivered, and refreshed for the next lookup.
+        assertEquals(1, callback.results.size());
+        assertEquals(2L, callback.results.get(0).users.get(1).id);
+        verify(service, times(2)).usersAndUploadedBy((String) isNull(), anyInt());
+        assertEquals(3L, store.getContacts(USER_ID).users.get(1).id);
+    }
+
+    @Test
+    public void testLookup_contactsUploaded() {
+        lookup.lookup(service, USER_ID, MAX_AGE, new RecordingCallback());
+        when(prefManager.getContactsReadTimestamp()).thenReturn(1L);
+
+        lookup.lookup(service, USER_ID, MAX_AGE, new RecordingCallback());
+
+        verify(service, times(2)).usersAndUploadedBy((String) isNull(), anyInt());
+    }
+
+    @Test
+    public void testLookup_failure() {
+        when(service.usersAndUploadedBy((String) isNull(), anyInt()))
+                .thenThrow(RetrofitError.networkError("url", new IOException()));
+        final RecordingCallback callback = new RecordingCallback();
+
+        lookup.lookup(service, USER_ID, MAX_AGE, callback);
+
+        assertEquals(0, callback.results.size());
+        assertNotNull(callback.exception);
+    }
+
+    @Test
+    public void testLookup_unexpectedFailure() {
+        when(service.usersAndUploadedBy((String) isNull(), anyInt()))
+                .thenThrow(new IllegalStateException())
+                .thenReturn(MockApiInterface.createContacts(null, 1L));
+        final RecordingCallback callback = new RecordingCallback();
+        final RecordingCallback retryCallback = new RecordingCallback();
+
+        lookup.lookup(service, USER_ID, MAX_AGE, callback);
+        lookup.lookup(service, USER_ID, MAX_AGE, retryCallback);
+
+        assertNotNull(callback.exception);
+        // The failed refresh is not in progress anymore.
+        verify(service, times(2)).usersAndUploadedBy((String) isNull(), anyInt());
+        assertEquals(1, retryCallback.results.size());
+    }
+
+    @Test
+    public void testLookup_repeatedCursor() {
+        when(service.usersAndUploadedBy(eq("next"), anyInt()))
+                .thenReturn(MockApiInterface.createContacts("next", 2L));
+        final RecordingCallback callback = new RecordingCallback();
+
+        lookup.lookup(service, USER_ID, MAX_AGE, callback);
+
+        verify(service, times(1)).usersAndUploadedBy(eq("next"), anyInt());
+        assertEquals(1, callback.results.size());
+        assertEquals(2, callback.results.get(0).users.size());
+    }
+
+    @Test
+    public void testLookup_refreshInProgress() {
+        final List<Runnable> tasks = new ArrayList<>();
+        lookup = new MatchedContactsLookup(store, prefManager, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        }, DIRECT_EXECUTOR);
+        final RecordingCallback first = new RecordingCallback();
+        final RecordingCallback second = new RecordingCallback();
+        when(service.usersAndUploadedBy((String) isNull(), anyInt()))
+                .thenAnswer(new Answer<Contacts>() {
+                    @Override
+                    public Contacts answer(InvocationOnMock invocation) {
+                        // Second lookup while the first one fetches the matches
+                        tasks.get(1).run();
+                        return MockApiInterface.createContacts(null, 1L);
+                    }
+                });
+
+        lookup.lookup(service, USER_ID, MAX_AGE, first);
+        lookup.lookup(service, USER_ID, MAX_AGE, second);
+        tasks.get(0).run();
+
+        verify(service, times(1)).usersAndUploadedBy((String) isNull(), anyInt());
+        assertEquals(1, first.results.size());
+        assertEquals(1, second.results.size());
+    }
+
+    @Test
+    public void testLookup_otherUser() {
+        lookup.lookup(service, USER_ID, MAX_AGE, new RecordingCallback());
+        final RecordingCallback callback = new RecordingCallback();
+
+        lookup.lookup(service, USER_ID + 1, MAX_AGE, callback);
+
+        // The matches of the previous user are neither delivered nor kept.
+        verify(service, times(2)).usersAndUploadedBy((String) isNull(), anyInt());
+        assertEquals(1, callback.results.size());
+        assertNull(store.getContacts(USER_ID));
+    }
+
+    @Test
+    public void testLookup_clearedWhileRefreshing() {
+        when(service.usersAndUploadedBy((String) isNull(), anyInt()))
+                .thenAnswer(new Answer<Contacts>() {
+                    @Override
+                    public Contacts answer(InvocationOnMock invocation) {
+                        lookup.clear();
+                        return MockApiInterface.createContacts(null, 1L);
+                    }
+                });
+        final RecordingCallback callback = new RecordingCallback();
+
+        lookup.lookup(service, USER_ID, MAX_AGE, callback);
+
+        assertEquals(1, callback.results.size());
+        assertEquals(1L, callback.results.get(0).users.get(0).id);
+        store.load(USER_ID);
+        assertNull(store.getContacts(USER_ID));
+    }
+
+    @Test
+    public void testClear() {
+        lookup.lookup(service, USER_ID, MAX_AGE, new RecordingCallback());
+
+        lookup.clear();
+        lookup.lookup(service, USER_ID, MAX_AGE, new RecordingCallback());
+
+        verify(service, times(2)).usersAndUploadedBy((String) isNull(), anyInt());
+    }
+
+    static class RecordingCallback extends Callback<Contacts> {
+        final List<Contacts> results = new ArrayList<>();
+        TwitterException exception;
+
+        @Override
+        public void success(Result<Contacts> result) {
+            results.add(result.data);
+        }
+
+        @Override
+        public void failure(TwitterException exception) {
+            this.exception = exception;
+        }
+    }
+}
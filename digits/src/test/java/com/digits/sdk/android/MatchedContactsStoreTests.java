@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.android;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class MatchedContactsStoreTests {
+    private static final long NOW = 1000000L;
+    private static final long READ_TIMESTAMP = 42L;
+    private static final long MAX_AGE = 100L;
+    private static final long USER_ID = 7L;
+    private static final long OTHER_USER_ID = 8L;
+
+    private MatchedContactsStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        store = new MatchedContactsStore(RuntimeEnvironment.application);
+        store.clear();
+        store.load(USER_ID);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        store.clear();
+    }
+
+    @Test
+    public void testLoad_empty() {
+        final MatchedContactsStore other = new MatchedContactsStore(RuntimeEnvironment.application);
+        other.load(USER_ID);
+
+        assertNull(other.getContacts(USER_ID));
+        assertFalse(other.isFresh(USER_ID, NOW, MAX_AGE, READ_TIMESTAMP));
+    }
+
+    @Test
+    public void testUpdate_mergesPages() {
+        update(MockApiInterface.createContacts("cursor", 1L),
+                MockApiInterface.createContacts(null, 2L));
+
+        final Contacts contacts = store.getContacts(USER_ID);
+        assertEquals(2, contacts.users.size());
+        assertEquals(1L, contacts.users.get(0).id);
+        assertEquals("2", contacts.users.get(1).idStr);
+        assertNull(contacts.nextCursor);
+    }
+
+    @Test
+    public void testLoad_persisted() {
+        update(MockApiInterface.createContacts(null, 3L));
+
+        final MatchedContactsStore other = new MatchedContactsStore(RuntimeEnvironment.application);
+        other.load(USER_ID);
+
+        assertEquals(1, other.getContacts(USER_ID).users.size());
+        assertEquals(3L, other.getContacts(USER_ID).users.get(0).id);
+        assertTrue(other.isFresh(USER_ID, NOW, MAX_AGE, READ_TIMESTAMP));
+    }
+
+    @Test
+    public void testLoad_corrupt() throws Exception {
+        final FileOutputStream out = new FileOutputStream(store.getFile(USER_ID));
+        out.write(new byte[]{0, 0, 0, 1, 2, 3});
+        out.close();
+
+        final MatchedContactsStore other = new MatchedContactsStore(RuntimeEnvironment.application);
+        other.load(USER_ID);
+
+        assertNull(other.getContacts(USER_ID));
+    }
+
+    @Test
+    public void testIsFresh() {
+        update(MockApiInterface.createContacts(null, 3L));
+
+        assertTrue(store.isFresh(USER_ID, NOW + MAX_AGE - 1, MAX_AGE, READ_TIMESTAMP));
+        assertFalse(store.isFresh(USER_ID, NOW + MAX_AGE, MAX_AGE, READ_TIMESTAMP));
+        assertFalse(store.isFresh(USER_ID, NOW - 1, MAX_AGE, READ_TIMESTAMP));
+    }
+
+    @Test
+    public void testIsFresh_contactsUploaded() {
+        update(MockApiInterface.createContacts(null, 3L));
+
+        assertFalse(store.isFresh(USER_ID, NOW, MAX_AGE, READ_TIMESTAMP + 1));
+    }
+
+    @Test
+    public void testGetContacts_copy() {
+        update(MockApiInterface.createContacts(null, 3L));
+
+        store.getContacts(USER_ID).users.clear();
+
+        assertEquals(1, store.getContacts(USER_ID).users.size());
+    }
+
+    @Test
+    public void testLoad_otherUser() {
+        update(MockApiInterface.createContacts(null, 3L));
+
+        store.load(OTHER_USER_ID);
+
+        assertNull(store.getContacts(OTHER_USER_ID));
+        assertNull(store.getContacts(USER_ID));
+        assertFalse(store.isFresh(USER_ID, NOW, MAX_AGE, READ_TIMESTAMP));
+        assertFalse(store.getFile(USER_ID).exists());
+    }
+
+    @Test
+    public void testUpdate_afterClear() {
+        final long generation = store.getGeneration();
+        store.clear();
+        store.load(USER_ID);
+
+        assertFalse(store.update(Collections.singletonList(
+                MockApiInterface.createContacts(null, 3L)), USER_ID, generation, NOW,
+                READ_TIMESTAMP));
+
+        assertNull(store.getContacts(USER_ID));
+        assertFalse(store.getFile(USER_ID).exists());
+    }
+
+    @Test
+    public void testUpdate_afterUserSwitch() {
+        final long generation = store.getGeneration();
+        store.load(OTHER_USER_ID);
+
+        assertFalse(store.update(Collections.singletonList(
+                MockApiInterface.createContacts(null, 3L)), USER_ID, generation, NOW,
+                READ_TIMESTAMP));
+
+        assertNull(store.getContacts(USER_ID));
+        assertNull(store.getContacts(OTHER_USER_ID));
+    }
+
+    @Test
+    public void testClear() {
+        update(MockApiInterface.createContacts(null, 3L));
+
+        store.clear();
+
+        assertNull(store.getContacts(USER_ID));
+        assertFalse(store.getFile(USER_ID).exists());
+    }
+
+    private void update(Contacts... pages) {
+        assertTrue(store.update(Arrays.asList(pages), USER_ID, store.getGeneration(), NOW,
+                READ_TIMESTAMP));
+    }
+}
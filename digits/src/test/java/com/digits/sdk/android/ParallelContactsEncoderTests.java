@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.android;
+
+import com.digits.sdk.vcard.ContactDataRow;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ParallelContactsEncoderTests {
+    private static final int COUNT = ParallelContactsEncoder.BATCH_SIZE * 10 + 3;
+    private static final List<ContactDataRow> NO_NAMES = Collections.emptyList();
+
+    private final ContactEncoder expectedEncoder = new ContactEncoder(false, false);
+
+    @Test
+    public void testFinish_deliversInOrder() {
+        final RecordingConsumer consumer = new RecordingConsumer(Integer.MAX_VALUE);
+        final ParallelContactsEncoder encoder = new ParallelContactsEncoder(3, false, false,
+                consumer);
+        try {
+            for (int i = 0; i < COUNT; i++) {
+                assertTrue(encoder.add(String.valueOf(i), NO_NAMES, createPhones(i)));
+            }
+            assertTrue(encoder.finish());
+        } finally {
+            encoder.close();
+        }
+
+        assertEquals(COUNT, consumer.contacts.size());
+        for (int i = 0; i < COUNT; i++) {
+            final EncodedContact expected = expectedEncoder.encode(String.valueOf(i), NO_NAMES,
+                    createPhones(i));
+            final EncodedContact contact = consumer.contacts.get(i);
+            assertEquals(expected.lookupKey, contact.lookupKey);
+            assertArrayEquals(expected.data, contact.data);
+            assertEquals(expected.fingerprint, contact.fingerprint);
+        }
+    }
+
+    @Test
+    public void testAdd_copiesRows() {
+        final RecordingConsumer consumer = new RecordingConsumer(Integer.MAX_VALUE);
+        final ParallelContactsEncoder encoder = new ParallelContactsEncoder(2, false, false,
+                consumer);
+        final List<ContactDataRow> phones = createPhones(1);
+        try {
+            encoder.add("1", NO_NAMES, phones);
+            phones.get(0).phoneNumber = "2";
+            encoder.finish();
+        } finally {
+            encoder.close();
+        }
+
+        assertArrayEquals(expectedEncoder.encode("1", NO_NAMES, createPhones(1)).data,
+                consumer.contacts.get(0).data);
+    }
+
+    @Test
+    public void testAdd_stoppedByConsumer() {
+        final RecordingConsumer consumer = new RecordingConsumer(10);
+        final ParallelContactsEncoder encoder = new ParallelContactsEncoder(2, false, false,
+                consumer);
+        boolean proceed = true;
+        try {
+            for (int i = 0; i < COUNT && proceed; i++) {
+                proceed = encoder.add(String.valueOf(i), NO_NAMES, createPhones(i));
+            }
+            proceed = proceed && encoder.finish();
+        } finally {
+            encoder.close();
+        }
+
+        assertFalse(proceed);
+        assertEquals(10, consumer.contacts.size());
+    }
+
+    @Test
+    public void testAdd_singleThread() {
+        final RecordingConsumer consumer = new RecordingConsumer(Integer.MAX_VALUE);
+        final ParallelContactsEncoder encoder = new ParallelContactsEncoder(1, false, false,
+                consumer);
+
+        assertTrue(encoder.add("1", NO_NAMES, createPhones(1)));
+
+        assertEquals(1, consumer.contacts.size());
+        assertTrue(encoder.finish());
+        encoder.close();
+    }
+
+    private static List<ContactDataRow> createPhones(int i) {
+        final ContactDataRow row = new ContactDataRow();
+        row.phoneNumber = "555" + i;
+        final List<ContactDataRow> rows = new ArrayList<>();
+        rows.add(row);
+        return rows;
+    }
+
+    private static class RecordingConsumer implements ContactsHelper.ContactsConsumer {
+        final List<EncodedContact> contacts = new ArrayList<>();
+        final int limit;
+
+        RecordingConsumer(int limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public boolean onContact(EncodedContact contact) {
+            contacts.add(contact);
+            return contacts.size() < limit;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.digits.sdk.android;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class VcardsBodyTests {
+    private static final String JSON =
+            "{\"vcards\":[\"BEGIN:VCARD\\r\\nVERSION:3.0\\r\\nEND:VCARD\\r\\n\"]}";
+
+    @Test
+    public void testCreate_compressionDisabled() throws Exception {
+        final VcardsBody body = VcardsBody.create(createContacts(),
+                new ContactsUploadConfig.Builder().withCompressionThreshold(0).build());
+
+        assertNull(body.contentEncoding);
+        assertEquals(VcardsBody.MIME_TYPE, body.mimeType());
+        assertEquals(JSON, new String(body.bytes, "UTF-8"));
+    }
+
+    @Test
+    public void testCreate_belowThreshold() throws Exception {
+        final VcardsBody body = VcardsBody.create(createContacts(),
+                new ContactsUploadConfig.Builder()
+                        .withCompression(true)
+                        .withCompressionThreshold(JSON.length() + 1)
+                        .build());
+
+        assertNull(body.contentEncoding);
+        assertEquals(JSON, new String(body.bytes, "UTF-8"));
+    }
+
+    @Test
+    public void testCreate_compressed() throws Exception {
+        final VcardsBody body = VcardsBody.create(createContacts(),
+                new ContactsUploadConfig.Builder()
+                        .withCompression(true)
+                        .withCompressionThreshold(JSON.length())
+                        .build());
+
+        assertEquals(VcardsBody.GZIP, body.contentEncoding);
+        assertEquals(body.bytes.length, body.length());
+        assertEquals(JSON, new String(gunzip(body.bytes), "UTF-8"));
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        body.writeTo(out);
+        assertArrayEquals(body.bytes, out.toByteArray());
+    }
+
+    @Test
+    public void testGzip_repetitiveVcards() throws Exception {
+        final StringBuilder vcards = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            vcards.append(ContactsHelperTests.createCardList().get(0));
+        }
+        final byte[] data = vcards.toString().getBytes("UTF-8");
+
+        final byte[] compressed = VcardsBody.gzip(data);
+
+        assertTrue(compressed.length * 5 < data.length);
+        assertArrayEquals(data, gunzip(compressed));
+    }
+
+    @Test
+    public void testToJson() throws Exception {
+        final String vcard = "N:\"\\\t\u0001\u00e9\u65e5\ud83d\ude00";
+        final List<EncodedContact> contacts = Arrays.asList(new EncodedContact("1", vcard),
+                new EncodedContact("2", ""));
+
+        final String json = new String(VcardsBody.toJson(contacts), "UTF-8");
+
+        assertEquals("{\"vcards\":[\"N:\\\"\\\\\\t\\u0001\u00e9\u65e5\ud83d\ude00\",\"\"]}",
+                json);
+        assertEquals(Arrays.asList(vcard, ""), new Gson().fromJson(json, Vcards.class).vcards);
+    }
+
+    @Test
+    public void testToJson_empty() throws Exception {
+        assertEquals("{\"vcards\":[]}", new String(VcardsBody.toJson(
+                Collections.<EncodedContact>emptyList()), "UTF-8"));
+    }
+
+    private List<EncodedContact> createContacts() {
+        return Collections.singletonList(
+                new EncodedContact("1", "BEGIN:VCARD\r\nVERSION:3.0\r\nEND:VCARD\r\n"));
+    }
+
+    static byte[] gunzip(byte[] data) throws IOException {
+        final GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(data));
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+}
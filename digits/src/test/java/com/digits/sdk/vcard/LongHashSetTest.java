@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.vcard;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LongHashSetTest {
+    private final LongHashSet set = new LongHashSet();
+
+    @Test
+    public void testAdd() {
+        assertTrue(set.add(42));
+        assertFalse(set.add(42));
+        assertTrue(set.add(-42));
+        assertEquals(2, set.size());
+    }
+
+    @Test
+    public void testAdd_zero() {
+        assertTrue(set.add(0));
+        assertFalse(set.add(0));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    public void testAdd_grows() {
+        for (long i = 0; i < 1000; i++) {
+            assertTrue(set.add(i << 32));
+        }
+        for (long i = 0; i < 1000; i++) {
+            assertFalse(set.add(i << 32));
+        }
+        assertEquals(1000, set.size());
+    }
+
+    @Test
+    public void testClear() {
+        set.add(0);
+        set.add(7);
+        set.clear();
+
+        assertEquals(0, set.size());
+        assertTrue(set.add(0));
+        assertTrue(set.add(7));
+    }
+}
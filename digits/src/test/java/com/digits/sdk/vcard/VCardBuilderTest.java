@@ -29,9 +29,12 @@ import org.junit.runner.RunWith;
 import org.robolectric.RobolectricGradleTestRunner;
 import org.robolectric.annotation.Config;
 
+import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -48,9 +51,16 @@ public class VCardBuilderTest {
             "TYPE=PREF:support@digits.com\r\nEND:VCARD\r\n";
     private static final String PHONE_CARD = "BEGIN:VCARD\r\nVERSION:3.0\r\nTEL;" +
             "TYPE=HOME:1-231-234-567\r\nEND:VCARD\r\n";
+    private static final ContactDataRow NAME_ROW = new ContactDataRow();
     private static final String NAME_CARD = "BEGIN:VCARD\r\nVERSION:3.0\r\nN:Grouse;Spruce;;;" +
             "\r\nFN:Spruce Grouse\r\nEND:VCARD\r\n";
 
+    static {
+        NAME_ROW.displayName = "Spruce Grouse";
+        NAME_ROW.givenName = "Spruce";
+        NAME_ROW.familyName = "Grouse";
+    }
+
     @Test
     public void testVCardNameFieldFromDisplayName() {
         final ArrayList<ContentValues> contentList = new ArrayList<>();
@@ -152,4 +162,219 @@ public class VCardBuilderTest {
 
         assertEquals(NAME_CARD, card);
     }
+
+    @Test
+    public void testAppendPhoneRows() {
+        final VCardBuilder builder = new VCardBuilder(VCardConfig.VCARD_TYPE_V30_GENERIC,
+                VCardConfig.DEFAULT_EXPORT_CHARSET);
+        final ContactDataRow row = new ContactDataRow();
+        final List<ContactDataRow> rows = new ArrayList<>();
+
+        row.phoneNumber = "(123) 123-4567";
+        rows.add(row);
+
+        final String card = builder.appendPhoneRows(rows, null).toString();
+
+        assertEquals(PHONE_CARD, card);
+    }
+
+    @Test
+    public void testAppendPhoneRows_duplicateFormatting() {
+        final VCardBuilder builder = new VCardBuilder(VCardConfig.VCARD_TYPE_V30_GENERIC,
+                VCardConfig.DEFAULT_EXPORT_CHARSET);
+        final ContactDataRow formatted = new ContactDataRow();
+        final ContactDataRow plain = new ContactDataRow();
+        formatted.phoneNumber = "(123) 123-4567";
+        plain.phoneNumber = "123.123.4567";
+
+        final String card = builder.appendPhoneRows(Arrays.asList(formatted, plain), null)
+                .toString();
+
+        assertEquals(PHONE_CARD, card);
+    }
+
+    @Test
+    public void testAppendPhoneRows_vanityNumbers() {
+        final VCardBuilder builder = new VCardBuilder(VCardConfig.VCARD_TYPE_V30_GENERIC
+                | VCardConfig.FLAG_REFRAIN_PHONE_NUMBER_FORMATTING,
+                VCardConfig.DEFAULT_EXPORT_CHARSET);
+        final ContactDataRow flowers = new ContactDataRow();
+        final ContactDataRow flowerz = new ContactDataRow();
+        flowers.phoneNumber = "1-800-FLOWERS";
+        flowerz.phoneNumber = "1-800-FLOWERZ";
+
+        final String card = builder.appendPhoneRows(Arrays.asList(flowers, flowerz), null)
+                .toString();
+
+        assertEquals("BEGIN:VCARD\r\nVERSION:3.0\r\nTEL;TYPE=HOME:1-800-FLOWERS\r\n" +
+                "TEL;TYPE=HOME:1-800-FLOWERZ\r\nEND:VCARD\r\n", card);
+    }
+
+    @Test
+    public void testAppendPhoneRows_multipleLines() {
+        final VCardBuilder builder = new VCardBuilder(VCardConfig.VCARD_TYPE_V30_GENERIC
+                | VCardConfig.FLAG_NORMALIZE_PHONE_NUMBERS, VCardConfig.DEFAULT_EXPORT_CHARSET);
+        final ContactDataRow row = new ContactDataRow();
+        row.phoneNumber = "(123) 123-4567\n555 0100\n123-123-4567";
+
+        final String card = builder.appendPhoneRows(Arrays.asList(row), null).toString();
+
+        assertEquals("BEGIN:VCARD\r\nVERSION:3.0\r\nTEL;TYPE=HOME:1231234567\r\n" +
+                "TEL;TYPE=HOME:5550100\r\nEND:VCARD\r\n", card);
+    }
+
+    @Test
+    public void testAppendPhoneRows_normalized() {
+        final VCardBuilder builder = new VCardBuilder(VCardConfig.VCARD_TYPE_V30_GENERIC
+                | VCardConfig.FLAG_NORMALIZE_PHONE_NUMBERS, VCardConfig.DEFAULT_EXPORT_CHARSET);
+        final ContactDataRow international = new ContactDataRow();
+        final ContactDataRow extension = new ContactDataRow();
+        final ContactDataRow noDigits = new ContactDataRow();
+        international.phoneNumber = "+1 (415) 555-0100";
+        extension.phoneNumber = "(123) 123-4567,89;0";
+        noDigits.phoneNumber = "()-";
+
+        final String card = builder.appendPhoneRows(
+                Arrays.asList(international, extension, noDigits), null).toString();
+
+        assertEquals("BEGIN:VCARD\r\nVERSION:3.0\r\nTEL;TYPE=HOME:+14155550100\r\n" +
+                "TEL;TYPE=HOME:1231234567p89w0\r\nEND:VCARD\r\n", card);
+    }
+
+    @Test
+    public void testAppendPhoneRows_normalizedV40() {
+        final VCardBuilder builder = new VCardBuilder(VCardConfig.VCARD_TYPE_V40_GENERIC
+                | VCardConfig.FLAG_NORMALIZE_PHONE_NUMBERS, VCardConfig.DEFAULT_EXPORT_CHARSET);
+        final ContactDataRow row = new ContactDataRow();
+        row.phoneNumber = "+1 (415) 555-0100";
+
+        final String card = builder.appendPhoneRows(Arrays.asList(row), null).toString();
+
+        assertTrue(card.contains(":tel:+14155550100\r\n"));
+    }
+
+    @Test
+    public void testAppendNameRows() {
+        final VCardBuilder builder = new VCardBuilder(VCardConfig.VCARD_TYPE_V30_GENERIC,
+                VCardConfig.DEFAULT_EXPORT_CHARSET);
+        final ContactDataRow empty = new ContactDataRow();
+        final ContactDataRow row = new ContactDataRow();
+        final List<ContactDataRow> rows = new ArrayList<>();
+
+        row.displayName = "Spruce Grouse";
+        row.givenName = "Spruce";
+        row.familyName = "Grouse";
+        rows.add(empty);
+        rows.add(row);
+
+        final String card = builder.appendNameRows(rows).toString();
+
+        assertEquals(NAME_CARD, card);
+    }
+
+    @Test
+    public void testAppendNameRows_noName() {
+        final VCardBuilder builder = new VCardBuilder(VCardConfig.VCARD_TYPE_V30_GENERIC,
+                VCardConfig.DEFAULT_EXPORT_CHARSET);
+
+        final String card = builder.appendNameRows(new ArrayList<ContactDataRow>()).toString();
+
+        assertEquals("BEGIN:VCARD\r\nVERSION:3.0\r\nN:\r\nFN:\r\nEND:VCARD\r\n", card);
+    }
+
+    @Test
+    public void testClear_reusesBuffer() {
+        final VCardBuilder builder = new VCardBuilder(VCardConfig.VCARD_TYPE_V30_GENERIC,
+                VCardConfig.DEFAULT_EXPORT_CHARSET);
+        final ContactDataRow row = new ContactDataRow();
+        row.phoneNumber = "(123) 123-4567";
+
+        assertEquals(PHONE_CARD, builder.appendPhoneRows(Arrays.asList(row), null).toString());
+        builder.clear();
+
+        assertEquals(NAME_CARD, builder.appendNameRows(Arrays.asList(NAME_ROW)).toString());
+    }
+
+    @Test
+    public void testToUtf8Bytes() throws Exception {
+        final VCardBuilder builder = new VCardBuilder(VCardConfig.VCARD_TYPE_V30_GENERIC,
+                VCardConfig.DEFAULT_EXPORT_CHARSET);
+        final ContactDataRow row = new ContactDataRow();
+        row.displayName = "\u65e5\u672c \ud83d\ude00";
+        builder.appendNameRows(Arrays.asList(row));
+
+        final String card = builder.getVCard().toString();
+
+        assertArrayEquals(card.getBytes("UTF-8"), builder.toUtf8Bytes());
+        assertEquals(card, builder.toString());
+    }
+
+    @Test
+    public void testWriteUtf8To() throws Exception {
+        final VCardBuilder builder = new VCardBuilder(VCardConfig.VCARD_TYPE_V30_GENERIC,
+                VCardConfig.DEFAULT_EXPORT_CHARSET);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        builder.appendNameRows(Arrays.asList(NAME_ROW)).writeUtf8To(out);
+        builder.clear();
+        builder.writeUtf8To(out);
+
+        assertEquals(NAME_CARD + "BEGIN:VCARD\r\nVERSION:3.0\r\nEND:VCARD\r\n",
+                out.toString("UTF-8"));
+    }
+
+    @Test
+    public void testEncodeUtf8() throws Exception {
+        final String text = "a\u00e9\u65e5\ud83d\ude00\ud83d-\ude00";
+        final byte[] expected = text.getBytes("UTF-8");
+        final byte[] actual = new byte[VCardEncodingUtils.getUtf8Length(text) + 1];
+
+        assertEquals(expected.length, VCardEncodingUtils.getUtf8Length(text));
+        assertEquals(expected.length + 1, VCardEncodingUtils.encodeUtf8(text, actual, 1));
+        assertArrayEquals(expected, Arrays.copyOfRange(actual, 1, actual.length));
+    }
+
+    @Test
+    public void testAppendLine_quotedPrintable() throws Exception {
+        final String[] values = {"\u0928\u0947",
+                "\u041f\u0451\u0442\u0440 \u0418\u0432\u0430\u043d\u043e\u0432",
+                "\u5c71\u7530\u592a\u90ce\u5c71\u7530\u592a\u90ce\u5c71\u7530\u592a\u90ce",
+                "a=b\r\n\u00ff\ud83d\ude00"};
+
+        for (String value : values) {
+            final VCardBuilder builder = new VCardBuilder(VCardConfig.VCARD_TYPE_V21_GENERIC,
+                    VCardConfig.DEFAULT_EXPORT_CHARSET);
+            builder.appendLine("X-TEST", value, false, true);
+
+            final String expected = "X-TEST;ENCODING=QUOTED-PRINTABLE:"
+                    + formatQuotedPrintable(value.getBytes("UTF-8")) + "\r\n";
+            assertTrue(builder.toString().contains(expected));
+        }
+    }
+
+    // The former String.format() based encoding, which the output must stay identical to
+    private static String formatQuotedPrintable(byte[] bytes) {
+        final StringBuilder builder = new StringBuilder();
+        int lineCount = 0;
+        for (byte b : bytes) {
+            builder.append(String.format("=%02X", b));
+            lineCount += 3;
+            if (lineCount >= 67) {
+                builder.append("=\r\n");
+                lineCount = 0;
+            }
+        }
+        return builder.toString();
+    }
+
+    @Test
+    public void testAppendLine_escapesCrLfOnce() {
+        final VCardBuilder builder = new VCardBuilder(VCardConfig.VCARD_TYPE_V30_GENERIC,
+                VCardConfig.DEFAULT_EXPORT_CHARSET);
+
+        builder.appendLine("NOTE", "a\r\nb\rc");
+
+        assertEquals("BEGIN:VCARD\r\nVERSION:3.0\r\nNOTE:a\\nb\\nc\r\nEND:VCARD\r\n",
+                builder.toString());
+    }
 }
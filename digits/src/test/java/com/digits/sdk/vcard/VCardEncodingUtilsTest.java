@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.vcard;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class VCardEncodingUtilsTest {
+
+    @Test
+    public void testNormalizePhoneNumber() {
+        assertEquals("+14155550100", VCardEncodingUtils.normalizePhoneNumber("+1 (415) 555-0100"));
+        assertEquals("5555555555", VCardEncodingUtils.normalizePhoneNumber("555.555.5555"));
+    }
+
+    @Test
+    public void testNormalizePhoneNumber_pauseAndWait() {
+        assertEquals("123p45w6", VCardEncodingUtils.normalizePhoneNumber("123,45;6"));
+    }
+
+    @Test
+    public void testNormalizePhoneNumber_plusOnlyLeading() {
+        assertEquals("+4930123", VCardEncodingUtils.normalizePhoneNumber(" +49 30+123"));
+        assertEquals("12", VCardEncodingUtils.normalizePhoneNumber("1+2"));
+    }
+
+    @Test
+    public void testNormalizePhoneNumber_nonAsciiDigits() {
+        assertEquals("0123", VCardEncodingUtils.normalizePhoneNumber("٠١٢٣"));
+        assertEquals("12", VCardEncodingUtils.normalizePhoneNumber("１２"));
+    }
+
+    @Test
+    public void testNormalizePhoneNumber_noDigits() {
+        assertEquals("", VCardEncodingUtils.normalizePhoneNumber("+,;-()"));
+        assertEquals("", VCardEncodingUtils.normalizePhoneNumber(""));
+    }
+
+    @Test
+    public void testHashNormalizedPhoneNumber() {
+        assertEquals(VCardEncodingUtils.hashNormalizedPhoneNumber("+14155550100"),
+                VCardEncodingUtils.hashNormalizedPhoneNumber("+1 (415) 555-0100"));
+        assertNotEquals(VCardEncodingUtils.hashNormalizedPhoneNumber("+14155550100"),
+                VCardEncodingUtils.hashNormalizedPhoneNumber("14155550100"));
+        assertNotEquals(VCardEncodingUtils.hashNormalizedPhoneNumber("123,4"),
+                VCardEncodingUtils.hashNormalizedPhoneNumber("123;4"));
+    }
+
+    @Test
+    public void testHashPhoneNumber() {
+        assertEquals(VCardEncodingUtils.hashPhoneNumber("+14155550100"),
+                VCardEncodingUtils.hashNormalizedPhoneNumber("+1 (415) 555-0100"));
+        assertNotEquals(VCardEncodingUtils.hashPhoneNumber("1-800-FLOWERS"),
+                VCardEncodingUtils.hashPhoneNumber("1-800-FLOWERZ"));
+    }
+
+    @Test
+    public void testHashNormalizedPhoneNumber_noDigits() {
+        assertNotEquals(VCardEncodingUtils.hashNormalizedPhoneNumber("*"),
+                VCardEncodingUtils.hashNormalizedPhoneNumber("#"));
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.vcard;
+
+import com.digits.sdk.android.BuildConfig;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class VCardTypeProfileTest {
+
+    @Test
+    public void testGet_cached() {
+        assertSame(VCardTypeProfile.get(VCardConfig.VCARD_TYPE_V30_GENERIC),
+                VCardTypeProfile.get(VCardConfig.VCARD_TYPE_V30_GENERIC));
+    }
+
+    @Test
+    public void testGet_v30() {
+        final VCardTypeProfile profile = VCardTypeProfile.get(VCardConfig.VCARD_TYPE_V30_GENERIC);
+
+        assertTrue(profile.isVersion30);
+        assertTrue(profile.isV30OrV40);
+        assertFalse(profile.shouldUseQuotedPrintable);
+        assertEquals("BEGIN:VCARD\r\nVERSION:3.0\r\n", profile.header);
+        assertEquals("TYPE=", profile.typeParamPrefix);
+    }
+
+    @Test
+    public void testGet_v21() {
+        final VCardTypeProfile profile = VCardTypeProfile.get(VCardConfig.VCARD_TYPE_V21_GENERIC);
+
+        assertFalse(profile.isV30OrV40);
+        assertTrue(profile.shouldUseQuotedPrintable);
+        assertEquals("BEGIN:VCARD\r\nVERSION:2.1\r\n", profile.header);
+        assertEquals("", profile.typeParamPrefix);
+        assertEquals("TYPE=", VCardTypeProfile.get(VCardConfig.VCARD_TYPE_V21_GENERIC
+                | VCardConfig.FLAG_APPEND_TYPE_PARAM).typeParamPrefix);
+    }
+
+    @Test
+    public void testGet_doCoMo() {
+        final VCardTypeProfile profile = VCardTypeProfile.get(VCardConfig.VCARD_TYPE_DOCOMO);
+
+        assertTrue(profile.isDoCoMo);
+        assertEquals("", profile.typeParamPrefix);
+    }
+}
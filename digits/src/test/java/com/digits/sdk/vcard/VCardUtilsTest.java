@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.vcard;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class VCardUtilsTest {
+
+    @Test
+    public void testToHalfWidthString() {
+        assertEquals("\uFF76\uFF9E\uFF6F\uFF7A\uFF73\u3000ABC", VCardUtils.toHalfWidthString(
+                "\u304C\u3063\u3053\u3046\u3000\uFF21\uFF22\uFF23"));
+        assertEquals("\uFF83\uFF9E\uFF70\uFF80", VCardUtils.toHalfWidthString(
+                "\u30C7\u30FC\u30BF"));
+    }
+
+    @Test
+    public void testAppendHalfWidthString() {
+        final StringBuilder builder = new StringBuilder("x");
+
+        VCardUtils.appendHalfWidthString("a\u30A2b\u5C71\uD83D\uDE00\uFF11", builder);
+        VCardUtils.appendHalfWidthString(null, builder);
+
+        assertEquals("xa\uFF71b\u5C71\uD83D\uDE001", builder.toString());
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2015 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.digits.sdk.vcard;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class VCardValueScannerTest {
+    private static final int NEEDS_BOTH =
+            VCardValueScanner.NEEDS_CHARSET | VCardValueScanner.NEEDS_QUOTED_PRINTABLE;
+
+    private final VCardValueScanner v21Scanner = new VCardValueScanner(false, false);
+    private final VCardValueScanner v30Scanner = new VCardValueScanner(true, false);
+    private final VCardValueScanner doCoMoScanner = new VCardValueScanner(false, true);
+
+    @Test
+    public void testEscape_v30() {
+        assertEscaped(v30Scanner, "a\\;b\\,c\\\\d<e>", "a;b,c\\d<e>", 0);
+    }
+
+    @Test
+    public void testEscape_v21() {
+        assertEscaped(v21Scanner, "a\\;b,c\\d<e>", "a;b,c\\d<e>", 0);
+    }
+
+    @Test
+    public void testEscape_doCoMo() {
+        assertEscaped(doCoMoScanner, "a\\;b,c\\\\d\\<e\\>", "a;b,c\\d<e>", 0);
+    }
+
+    @Test
+    public void testEscape_lineBreaks() {
+        assertEscaped(v30Scanner, "a\\nb\\nc\\nd\\n", "a\r\nb\nc\rd\r",
+                VCardValueScanner.NEEDS_QUOTED_PRINTABLE);
+    }
+
+    @Test
+    public void testEscape_nonAscii() {
+        assertEscaped(v30Scanner, "山\\;田 😀", "山;田 😀",
+                NEEDS_BOTH);
+        assertEscaped(v30Scanner, "\t", "\t", NEEDS_BOTH);
+    }
+
+    @Test
+    public void testEscape_matchesVCardUtils() {
+        final String[] values = {"", "Spruce Grouse", "a\r\nb", "é", "\u007f", "~"};
+        for (String value : values) {
+            final int flags = v30Scanner.escape(value, new StringBuilder());
+
+            assertEquals(!VCardUtils.containsOnlyPrintableAscii(value),
+                    (flags & VCardValueScanner.NEEDS_CHARSET) != 0);
+            assertEquals(!VCardUtils.containsOnlyNonCrLfPrintableAscii(value),
+                    (flags & VCardValueScanner.NEEDS_QUOTED_PRINTABLE) != 0);
+        }
+    }
+
+    @Test
+    public void testEscape_null() {
+        assertEscaped(v30Scanner, "", null, 0);
+    }
+
+    private void assertEscaped(VCardValueScanner scanner, String expected, String value,
+                               int expectedFlags) {
+        final StringBuilder builder = new StringBuilder("x");
+
+        assertEquals(expectedFlags, scanner.escape(value, builder));
+        assertEquals("x" + expected, builder.toString());
+    }
+}